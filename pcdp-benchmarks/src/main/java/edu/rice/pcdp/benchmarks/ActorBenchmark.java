@@ -0,0 +1,65 @@
+package edu.rice.pcdp.benchmarks;
+
+import edu.rice.pcdp.Actor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forasyncChunked;
+
+/**
+ * Measures the cost of Actor.send and message processing.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public class ActorBenchmark extends PCDPBenchmark {
+
+    /**
+     * fanOut messages sent to a single actor from a single task.
+     *
+     * @return Number of messages processed
+     */
+    @Benchmark
+    public long sendSingleProducer() {
+        final CountingActor actor = new CountingActor();
+        final int n = fanOut;
+        finish(() -> {
+            for (int i = 0; i < n; i++) {
+                actor.send(actor);
+            }
+        });
+        return actor.count;
+    }
+
+    /**
+     * fanOut messages sent to a single actor from tasks spread across all
+     * workers.
+     *
+     * @return Number of messages processed
+     */
+    @Benchmark
+    public long sendManyProducers() {
+        final CountingActor actor = new CountingActor();
+        finish(() -> {
+            forasyncChunked(0, fanOut - 1, (i) -> {
+                actor.send(actor);
+            });
+        });
+        return actor.count;
+    }
+
+    /**
+     * An actor that counts the messages it receives.
+     */
+    private static final class CountingActor extends Actor {
+        /**
+         * Number of processed messages.
+         */
+        private long count;
+
+        @Override
+        public void process(final Object msg) {
+            count++;
+        }
+    }
+}
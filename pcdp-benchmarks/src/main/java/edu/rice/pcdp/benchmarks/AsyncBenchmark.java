@@ -0,0 +1,64 @@
+package edu.rice.pcdp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+
+/**
+ * Measures the cost of spawning and completing PCDP.async tasks.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public class AsyncBenchmark extends PCDPBenchmark {
+
+    /**
+     * Sink written by every task so that the bodies are not dead code.
+     */
+    private final AtomicLong sink = new AtomicLong();
+
+    /**
+     * fanOut empty asyncs spawned serially from a single finish.
+     */
+    @Benchmark
+    public void asyncFlat() {
+        final int n = fanOut;
+        finish(() -> {
+            for (int i = 0; i < n; i++) {
+                async(() -> {
+                    sink.lazySet(1);
+                });
+            }
+        });
+    }
+
+    /**
+     * fanOut asyncs spawned recursively as a binary tree, so that spawning is
+     * itself performed in parallel.
+     */
+    @Benchmark
+    public void asyncTree() {
+        final int n = fanOut;
+        finish(() -> {
+            spawnTree(0, n);
+        });
+    }
+
+    /**
+     * Recursively spawn one async per element of [lo, hi).
+     *
+     * @param lo Inclusive lower bound
+     * @param hi Exclusive upper bound
+     */
+    private void spawnTree(final int lo, final int hi) {
+        if (hi - lo <= 1) {
+            sink.lazySet(lo);
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        async(() -> spawnTree(lo, mid));
+        spawnTree(mid, hi);
+    }
+}
@@ -0,0 +1,42 @@
+package edu.rice.pcdp.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks JAR. Accepts the usual JMH command line
+ * options, and always enables the GC profiler so that bytes allocated per
+ * operation are reported next to the timing results.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Default constructor.
+     */
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Run the selected PCDP benchmarks.
+     *
+     * @param args JMH command line options
+     * @throws RunnerException An error occurs running the benchmarks
+     * @throws CommandLineOptionException The command line is malformed
+     */
+    public static void main(final String[] args)
+            throws RunnerException, CommandLineOptionException {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        final Options options = new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
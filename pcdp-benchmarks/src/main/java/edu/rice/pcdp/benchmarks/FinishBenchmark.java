@@ -0,0 +1,85 @@
+package edu.rice.pcdp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forasync;
+
+/**
+ * Measures the cost of entering and leaving PCDP.finish scopes.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public class FinishBenchmark extends PCDPBenchmark {
+
+    /**
+     * Sink written by every task so that the bodies are not dead code.
+     */
+    private final AtomicLong sink = new AtomicLong();
+
+    /**
+     * A single top-level finish, submitted from outside the runtime.
+     */
+    @Benchmark
+    public void finishTopLevel() {
+        finish(() -> {
+            sink.lazySet(1);
+        });
+    }
+
+    /**
+     * fanOut empty finish scopes executed back-to-back inside a task.
+     */
+    @Benchmark
+    public void finishNestedEmpty() {
+        final int n = fanOut;
+        finish(() -> {
+            for (int i = 0; i < n; i++) {
+                finish(() -> {
+                    sink.lazySet(1);
+                });
+            }
+        });
+    }
+
+    /**
+     * fanOut finish scopes executed back-to-back inside a task, each waiting on
+     * a single async.
+     */
+    @Benchmark
+    public void finishNestedWithAsync() {
+        final int n = fanOut;
+        finish(() -> {
+            for (int i = 0; i < n; i++) {
+                finish(() -> {
+                    async(() -> {
+                        sink.lazySet(1);
+                    });
+                });
+            }
+        });
+    }
+
+    /**
+     * A single finish scope waiting on workers * fanOut asyncs, spawned
+     * concurrently by one task per worker so that all workers register with
+     * the finish at the same time.
+     */
+    @Benchmark
+    public void finishWideFanOut() {
+        final int n = fanOut;
+        final int spawners = workers;
+        finish(() -> {
+            forasync(0, spawners - 1, (w) -> {
+                for (int i = 0; i < n; i++) {
+                    async(() -> {
+                        sink.lazySet(1);
+                    });
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package edu.rice.pcdp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import static edu.rice.pcdp.PCDP.forall;
+import static edu.rice.pcdp.PCDP.forallChunked;
+import static edu.rice.pcdp.PCDP.forallPhased;
+import static edu.rice.pcdp.PCDP.forallReduceLong;
+
+/**
+ * Measures the cost of PCDP's parallel loop constructs. Each operation is a
+ * single loop of fanOut iterations, or for the iterative benchmarks STEPS
+ * time steps over fanOut elements.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public class ForallBenchmark extends PCDPBenchmark {
+
+    /**
+     * Number of time steps performed by the iterative benchmarks.
+     */
+    private static final int STEPS = 16;
+
+    /**
+     * Array written by each loop iteration.
+     */
+    private int[] data;
+
+    /**
+     * Allocate the output array for this trial.
+     */
+    @Setup(Level.Trial)
+    public void setUpData() {
+        data = new int[fanOut];
+    }
+
+    /**
+     * A forall with one iteration per index.
+     *
+     * @return The output array, to defeat dead-code elimination
+     */
+    @Benchmark
+    public int[] forallPerIteration() {
+        final int[] arr = data;
+        forall(0, arr.length - 1, (i) -> {
+            arr[i] = i;
+        });
+        return arr;
+    }
+
+    /**
+     * A forallChunked with a runtime-selected chunk size.
+     *
+     * @return The output array, to defeat dead-code elimination
+     */
+    @Benchmark
+    public int[] forallChunkedDefault() {
+        final int[] arr = data;
+        forallChunked(0, arr.length - 1, (i) -> {
+            arr[i] = i;
+        });
+        return arr;
+    }
+
+    /**
+     * An iterative kernel running one forallChunked per time step.
+     *
+     * @return The output array, to defeat dead-code elimination
+     */
+    @Benchmark
+    public int[] forallChunkedSteps() {
+        final int[] arr = data;
+        for (int step = 0; step < STEPS; step++) {
+            final int s = step;
+            forallChunked(0, arr.length - 1, (i) -> {
+                arr[i] += s;
+            });
+        }
+        return arr;
+    }
+
+    /**
+     * The same iterative kernel as a single forallPhased, with one persistent
+     * task per worker and a barrier between time steps.
+     *
+     * @return The output array, to defeat dead-code elimination
+     */
+    @Benchmark
+    public int[] forallPhasedSteps() {
+        final int[] arr = data;
+        forallPhased(0, arr.length - 1, STEPS, (step, i) -> {
+            arr[i] += step;
+        });
+        return arr;
+    }
+
+    /**
+     * A sum over the output array with forallReduceLong.
+     *
+     * @return The sum, to defeat dead-code elimination
+     */
+    @Benchmark
+    public long forallReduceSum() {
+        final int[] arr = data;
+        return forallReduceLong(0, arr.length - 1, 0L, (i) -> arr[i],
+                (a, b) -> a + b);
+    }
+}
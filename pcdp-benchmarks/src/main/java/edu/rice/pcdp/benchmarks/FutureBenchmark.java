@@ -0,0 +1,76 @@
+package edu.rice.pcdp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.future;
+
+/**
+ * Measures the cost of creating PCDP futures and retrieving their values.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public class FutureBenchmark extends PCDPBenchmark {
+
+    /**
+     * fanOut futures are created, then each one is waited on.
+     *
+     * @return Sum of all future values
+     */
+    @Benchmark
+    public long futureCreateThenGet() {
+        final int n = fanOut;
+        final long[] result = new long[1];
+        finish(() -> {
+            @SuppressWarnings("unchecked")
+            final Future<Integer>[] futures = new Future[n];
+            for (int i = 0; i < n; i++) {
+                final int value = i;
+                futures[i] = future(() -> value);
+            }
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += getQuietly(futures[i]);
+            }
+            result[0] = sum;
+        });
+        return result[0];
+    }
+
+    /**
+     * fanOut futures are created and immediately waited on, one at a time.
+     *
+     * @return Sum of all future values
+     */
+    @Benchmark
+    public long futureCreateAndGet() {
+        final int n = fanOut;
+        final long[] result = new long[1];
+        finish(() -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                final int value = i;
+                sum += getQuietly(future(() -> value));
+            }
+            result[0] = sum;
+        });
+        return result[0];
+    }
+
+    /**
+     * Wait on a future, converting checked exceptions to unchecked ones.
+     *
+     * @param f Future to wait on
+     * @return The value of f
+     */
+    private static int getQuietly(final Future<Integer> f) {
+        try {
+            return f.get();
+        } catch (final InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package edu.rice.pcdp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forasyncChunked;
+import static edu.rice.pcdp.PCDP.isolated;
+import static edu.rice.pcdp.PCDP.isolatedRead;
+
+/**
+ * Measures the cost of global and object-based isolation. Each operation runs
+ * fanOut isolated sections spread across the workers.
+ * <p>
+ * The implementation of global isolation is fixed when the runtime is
+ * created, so it is compared across JMH runs, e.g. by passing
+ * -jvmArgsAppend -Dpcdp.isolationMode=combining.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public class IsolatedBenchmark extends PCDPBenchmark {
+
+    /**
+     * Counter protected by isolation.
+     */
+    private final long[] counter = new long[1];
+
+    /**
+     * A second object used for two-object isolation.
+     */
+    private final long[] otherCounter = new long[1];
+
+    /**
+     * A third object used for isolation on more than two objects.
+     */
+    private final long[] thirdCounter = new long[1];
+
+    /**
+     * Shared state updated as a whole by global isolated sections.
+     */
+    private final long[] histogram = new long[64];
+
+    /**
+     * Global isolated sections.
+     *
+     * @return Counter value, to defeat dead-code elimination
+     */
+    @Benchmark
+    public long isolatedGlobal() {
+        finish(() -> {
+            forasyncChunked(0, fanOut - 1, (i) -> {
+                isolated(() -> {
+                    counter[0]++;
+                });
+            });
+        });
+        return counter[0];
+    }
+
+    /**
+     * Global isolated sections that each update a few cache lines of shared
+     * state, so that they contend and their data moves between cores unless
+     * they are combined.
+     *
+     * @return Histogram value, to defeat dead-code elimination
+     */
+    @Benchmark
+    public long isolatedGlobalContended() {
+        finish(() -> {
+            forasyncChunked(0, fanOut - 1, (i) -> {
+                isolated(() -> {
+                    for (int j = 0; j < histogram.length; j += 8) {
+                        histogram[(i + j) % histogram.length]++;
+                    }
+                });
+            });
+        });
+        return histogram[0];
+    }
+
+    /**
+     * Object-based isolated sections on a single object.
+     *
+     * @return Counter value, to defeat dead-code elimination
+     */
+    @Benchmark
+    public long isolatedOneObject() {
+        finish(() -> {
+            forasyncChunked(0, fanOut - 1, (i) -> {
+                isolated(counter, () -> {
+                    counter[0]++;
+                });
+            });
+        });
+        return counter[0];
+    }
+
+    /**
+     * Object-based isolated sections on two objects.
+     *
+     * @return Counter value, to defeat dead-code elimination
+     */
+    @Benchmark
+    public long isolatedTwoObjects() {
+        finish(() -> {
+            forasyncChunked(0, fanOut - 1, (i) -> {
+                isolated(counter, otherCounter, () -> {
+                    counter[0]++;
+                    otherCounter[0]--;
+                });
+            });
+        });
+        return counter[0];
+    }
+
+    /**
+     * Object-based isolated sections on three objects, passed as varargs.
+     *
+     * @return Counter value, to defeat dead-code elimination
+     */
+    @Benchmark
+    public long isolatedThreeObjects() {
+        finish(() -> {
+            forasyncChunked(0, fanOut - 1, (i) -> {
+                isolated(() -> {
+                    counter[0]++;
+                    otherCounter[0]--;
+                    thirdCounter[0]++;
+                }, counter, otherCounter, thirdCounter);
+            });
+        });
+        return counter[0];
+    }
+
+    /**
+     * Object-based isolated sections on a single object, with one in every
+     * sixteen sections isolated globally instead.
+     *
+     * @return Counter value, to defeat dead-code elimination
+     */
+    @Benchmark
+    public long isolatedMixed() {
+        finish(() -> {
+            forasyncChunked(0, fanOut - 1, (i) -> {
+                if (i % 16 == 0) {
+                    isolated(() -> {
+                        counter[0]++;
+                    });
+                } else {
+                    isolated(counter, () -> {
+                        counter[0]++;
+                    });
+                }
+            });
+        });
+        return counter[0];
+    }
+
+    /**
+     * Read-mostly sections on a single object, with one in every sixteen
+     * updating it and the others only reading it, all with isolated.
+     *
+     * @return Counter value, to defeat dead-code elimination
+     */
+    @Benchmark
+    public long readMostlyIsolated() {
+        finish(() -> {
+            forasyncChunked(0, fanOut - 1, (i) -> {
+                if (i % 16 == 0) {
+                    isolated(counter, () -> {
+                        counter[0]++;
+                    });
+                } else {
+                    isolated(counter, () -> {
+                        otherCounter[0] = counter[0];
+                    });
+                }
+            });
+        });
+        return otherCounter[0];
+    }
+
+    /**
+     * The same read-mostly sections, with the reads using isolatedRead.
+     *
+     * @return Counter value, to defeat dead-code elimination
+     */
+    @Benchmark
+    public long readMostlyIsolatedRead() {
+        finish(() -> {
+            forasyncChunked(0, fanOut - 1, (i) -> {
+                if (i % 16 == 0) {
+                    isolated(counter, () -> {
+                        counter[0]++;
+                    });
+                } else {
+                    otherCounter[0] = isolatedRead(counter, () -> counter[0]);
+                }
+            });
+        });
+        return otherCounter[0];
+    }
+}
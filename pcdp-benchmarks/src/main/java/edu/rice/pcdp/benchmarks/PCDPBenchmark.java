@@ -0,0 +1,70 @@
+package edu.rice.pcdp.benchmarks;
+
+import edu.rice.pcdp.config.SystemProperty;
+import edu.rice.pcdp.runtime.Runtime;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common state shared by all PCDP benchmarks. Each trial resizes the PCDP
+ * runtime to the requested number of workers before any measurement starts,
+ * and each benchmark spawns fanOut instances of the construct under test per
+ * operation, so the cost of a single construct is the reported time (or
+ * gc.alloc.rate.norm) divided by fanOut.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class PCDPBenchmark {
+
+    /**
+     * PCDP scheduler to run the benchmark on. Other schedulers can be compared
+     * by passing e.g. -p scheduler=forkjoin,workstealing,serial,virtual to
+     * JMH (virtual requires running the benchmarks on Java 21 or later).
+     */
+    @Param({"forkjoin"})
+    public String scheduler;
+
+    /**
+     * Number of PCDP worker threads to run the benchmark with.
+     */
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    /**
+     * Number of instances of the measured construct created per benchmark
+     * operation.
+     */
+    @Param({"1", "64", "4096"})
+    public int fanOut;
+
+    /**
+     * Switch the PCDP runtime to the requested scheduler and number of workers
+     * before the trial starts.
+     *
+     * @throws InterruptedException An error occurs shutting down the existing
+     *         runtime instance.
+     */
+    @Setup(Level.Trial)
+    public void setUpRuntime() throws InterruptedException {
+        SystemProperty.scheduler.set(scheduler);
+        Runtime.resizeWorkerThreads(workers);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * JMH benchmarks measuring the per-construct overhead of the PCDP parallel
+ * programming framework.
+ */
+package edu.rice.pcdp.benchmarks;
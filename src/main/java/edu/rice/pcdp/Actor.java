@@ -4,6 +4,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.rice.pcdp.runtime.ActorMessageWrapper;
+import edu.rice.pcdp.runtime.Runtime;
 
 /**
  * An abstract base class for all user-defined actor implementations.
@@ -43,28 +44,48 @@ public abstract class Actor {
         queue.add(wrapper);
 
         if (oldQueueSize == 0) {
-            PCDP.async(() -> {
-                /*
-                 * Guaranteed on entry that head must be non-null because the
-                 * above code is synchronized, and just set it to non-null.
-                 */
-                boolean done = false;
-                while (!done) {
-                    /*
-                     * We know a new message must be incoming soon because queue
-                     * size was > 0.
-                     */
-                    ActorMessageWrapper curr;
-                    do {
-                        curr = queue.poll();
-                    } while (curr == null);
+            PCDP.asyncSpawned(this::processMessages);
+        }
+    }
+
+    /**
+     * Process messages until the queue of this actor is empty, or until the
+     * actor batch size of the runtime (see
+     * {@link edu.rice.pcdp.config.RuntimeConfig#actorBatchSize()}) is
+     * reached, in which case processing continues in a new task so that
+     * other tasks get a chance to run on this worker.
+     */
+    private void processMessages() {
+        final int batchSize =
+            Runtime.currentRuntime().config().actorBatchSize();
+        int processed = 0;
+        /*
+         * Guaranteed on entry that head must be non-null because the
+         * above code is synchronized, and just set it to non-null.
+         */
+        boolean done = false;
+        while (!done) {
+            /*
+             * We know a new message must be incoming soon because queue
+             * size was > 0.
+             */
+            ActorMessageWrapper curr;
+            do {
+                curr = queue.poll();
+            } while (curr == null);
+
+            process(curr.getMessage());
 
-                    process(curr.getMessage());
+            final int newQueueSize = queueSize.decrementAndGet();
+            done = (newQueueSize == 0);
 
-                    final int newQueueSize = queueSize.decrementAndGet();
-                    done = (newQueueSize == 0);
-                }
-            });
+            processed++;
+            if (!done && processed == batchSize) {
+                // Always spawned, an inlined continuation would neither
+                // yield the worker nor unwind the stack.
+                PCDP.asyncSpawned(this::processMessages);
+                return;
+            }
         }
     }
 }
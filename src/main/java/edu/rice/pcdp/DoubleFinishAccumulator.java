@@ -0,0 +1,175 @@
+package edu.rice.pcdp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * A {@link FinishAccumulator} of double values.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class DoubleFinishAccumulator extends FinishAccumulator {
+
+    /**
+     * Distance, in array elements, between two slots, so that each slot sits
+     * on its own cache line. The value of a slot is stored at its first
+     * element, and whether any value was put into it at the second.
+     */
+    private static final int STRIDE = 8;
+
+    /**
+     * Result of combining no values.
+     */
+    private final double identity;
+    /**
+     * Function combining two values.
+     */
+    private final DoubleBinaryOperator operator;
+    /**
+     * The slots values are put into while the finish this accumulator is
+     * registered with runs, or null.
+     */
+    private volatile AtomicLongArray slots = null;
+    /**
+     * Result of the last finish this accumulator was registered with.
+     */
+    private volatile double result;
+
+    /**
+     * Constructor.
+     *
+     * @param setIdentity Result of combining no values.
+     * @param setOperator Function combining two values.
+     */
+    private DoubleFinishAccumulator(final double setIdentity,
+            final DoubleBinaryOperator setOperator) {
+        this.identity = setIdentity;
+        this.operator = setOperator;
+        this.result = setIdentity;
+    }
+
+    /**
+     * Create an accumulator computing the sum of all values.
+     *
+     * @return A new accumulator.
+     */
+    public static DoubleFinishAccumulator sum() {
+        return new DoubleFinishAccumulator(0.0, Double::sum);
+    }
+
+    /**
+     * Create an accumulator computing the smallest of all values.
+     *
+     * @return A new accumulator.
+     */
+    public static DoubleFinishAccumulator min() {
+        return new DoubleFinishAccumulator(Double.POSITIVE_INFINITY, Math::min);
+    }
+
+    /**
+     * Create an accumulator computing the largest of all values.
+     *
+     * @return A new accumulator.
+     */
+    public static DoubleFinishAccumulator max() {
+        return new DoubleFinishAccumulator(Double.NEGATIVE_INFINITY, Math::max);
+    }
+
+    /**
+     * Create an accumulator keeping an arbitrary one of all values, or 0.0
+     * if no value is put.
+     *
+     * @return A new accumulator.
+     */
+    public static DoubleFinishAccumulator any() {
+        return new DoubleFinishAccumulator(0.0, (a, b) -> b);
+    }
+
+    /**
+     * Create an accumulator combining values with a user-defined operator.
+     *
+     * @param identity Result of combining no values, such that
+     *        operator(identity, x) == x.
+     * @param operator An associative and commutative function combining two
+     *        values.
+     * @return A new accumulator.
+     */
+    public static DoubleFinishAccumulator of(final double identity,
+            final DoubleBinaryOperator operator) {
+        return new DoubleFinishAccumulator(identity, operator);
+    }
+
+    /**
+     * Add a value to this accumulator, from a task of the finish it is
+     * registered with or of a finish nested in it.
+     *
+     * @param value Value to add.
+     * @throws IllegalStateException if the finish this accumulator is
+     *         registered with is not running, or if the calling task does
+     *         not belong to it.
+     */
+    public void put(final double value) {
+        checkPutAllowed();
+        final AtomicLongArray current = slots;
+        if (current == null) {
+            throw new IllegalStateException(NOT_REGISTERED_MSG);
+        }
+        final int slot =
+            slotOfCurrentThread(current.length() / STRIDE) * STRIDE;
+        while (true) {
+            final long old = current.get(slot);
+            if (current.compareAndSet(slot, old,
+                        Double.doubleToRawLongBits(operator.applyAsDouble(
+                            Double.longBitsToDouble(old), value)))) {
+                break;
+            }
+        }
+        if (current.get(slot + 1) == 0) {
+            current.set(slot + 1, 1);
+        }
+    }
+
+    /**
+     * Get the combined value of everything put into this accumulator during
+     * the last finish it was registered with, or the identity of its
+     * operator if it was never registered.
+     *
+     * @return The result of this accumulator.
+     * @throws IllegalStateException if called while the finish this
+     *         accumulator is registered with is running.
+     */
+    public double get() {
+        if (slots != null) {
+            throw new IllegalStateException(STILL_RUNNING_MSG);
+        }
+        return result;
+    }
+
+    @Override
+    synchronized void open(final int numWorkers) {
+        if (slots != null) {
+            throw new IllegalStateException("A finish accumulator cannot be "
+                    + "registered with two running finish scopes");
+        }
+        final AtomicLongArray fresh =
+            new AtomicLongArray(numSlots(numWorkers) * STRIDE);
+        for (int i = 0; i < fresh.length(); i += STRIDE) {
+            fresh.set(i, Double.doubleToRawLongBits(identity));
+        }
+        slots = fresh;
+    }
+
+    @Override
+    void close() {
+        final AtomicLongArray current = slots;
+        double merged = identity;
+        for (int i = 0; i < current.length(); i += STRIDE) {
+            if (current.get(i + 1) != 0) {
+                merged = operator.applyAsDouble(merged,
+                        Double.longBitsToDouble(current.get(i)));
+            }
+        }
+        result = merged;
+        slots = null;
+    }
+}
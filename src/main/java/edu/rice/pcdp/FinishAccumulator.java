@@ -0,0 +1,129 @@
+package edu.rice.pcdp;
+
+import edu.rice.pcdp.runtime.BaseTask;
+import edu.rice.pcdp.runtime.BaseTask.FinishTask;
+import edu.rice.pcdp.runtime.Runtime;
+
+/**
+ * A reduction scoped to a finish. An accumulator is registered with a finish
+ * through {@link PCDP#finish(Runnable, FinishAccumulator...)}, tasks in the
+ * scope put values into it, and once the finish completes all values are
+ * combined into a single result. Only tasks that the finish waits for, that
+ * is its body and the tasks transitively spawned by it, including those of
+ * nested finish scopes, can put values into the accumulator.
+ * <p>
+ * Values are not combined into one shared variable. Instead, each put is
+ * combined into a slot selected by the calling thread, with slots on
+ * separate cache lines, so workers rarely contend with each other. The slots
+ * are merged once, when the finish completes. As slots are merged in no
+ * particular order, the operator of an accumulator must be associative and
+ * commutative.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public abstract class FinishAccumulator {
+
+    /**
+     * Message of the exception thrown when an accumulator is used outside of
+     * the finish it is registered with.
+     */
+    static final String NOT_REGISTERED_MSG = "A finish accumulator can only "
+        + "be put into by tasks of the finish it is registered with";
+    /**
+     * Message of the exception thrown when reading the result of an
+     * accumulator while its finish is running.
+     */
+    static final String STILL_RUNNING_MSG = "The result of a finish "
+        + "accumulator is only available once its finish has completed";
+
+    /**
+     * The finish scope this accumulator is registered with while it runs, or
+     * null.
+     */
+    private volatile FinishTask owner = null;
+
+    /**
+     * Default constructor.
+     */
+    FinishAccumulator() {
+    }
+
+    /**
+     * Register this accumulator with a finish scope that is about to start.
+     *
+     * @param setOwner The finish scope.
+     * @param numWorkers Number of workers of the runtime the finish executes
+     *        on.
+     * @throws IllegalStateException if this accumulator is already registered
+     *         with a running finish.
+     */
+    final synchronized void register(final FinishTask setOwner,
+            final int numWorkers) {
+        open(numWorkers);
+        owner = setOwner;
+    }
+
+    /**
+     * Deregister this accumulator from its finish scope once it has
+     * completed, and merge the values put into it.
+     */
+    final synchronized void deregister() {
+        owner = null;
+        close();
+    }
+
+    /**
+     * Check that the calling task is allowed to put values into this
+     * accumulator: it must belong to the finish scope this accumulator is
+     * registered with, or to a finish scope nested in it.
+     *
+     * @throws IllegalStateException if the calling task does not belong to
+     *         the finish scope of this accumulator, or if this accumulator
+     *         is not registered with a running finish.
+     */
+    final void checkPutAllowed() {
+        final FinishTask scope = owner;
+        final BaseTask currentTask = Runtime.currentTask();
+        if (scope == null || currentTask == null
+                || !currentTask.ief().isNestedIn(scope)) {
+            throw new IllegalStateException(NOT_REGISTERED_MSG);
+        }
+    }
+
+    /**
+     * Allocate fresh slots for a finish that is about to start.
+     *
+     * @param numWorkers Number of workers of the runtime the finish executes
+     *        on.
+     * @throws IllegalStateException if this accumulator is already registered
+     *         with a running finish.
+     */
+    abstract void open(int numWorkers);
+
+    /**
+     * Merge the slots into the result once the finish has completed.
+     */
+    abstract void close();
+
+    /**
+     * Get the number of slots to allocate for a runtime: a power of two
+     * comfortably above its number of workers, so that thread ids of
+     * different workers rarely map to the same slot.
+     *
+     * @param numWorkers Number of workers of the runtime.
+     * @return Number of slots.
+     */
+    static int numSlots(final int numWorkers) {
+        return Integer.highestOneBit(Math.max(1, numWorkers)) << 2;
+    }
+
+    /**
+     * Get the slot the calling thread puts values into.
+     *
+     * @param numSlots Number of slots, a power of two.
+     * @return Index of the slot of the calling thread.
+     */
+    static int slotOfCurrentThread(final int numSlots) {
+        return (int) (Thread.currentThread().getId() & (numSlots - 1));
+    }
+}
@@ -0,0 +1,173 @@
+package edu.rice.pcdp;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * A {@link FinishAccumulator} of int values.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class IntFinishAccumulator extends FinishAccumulator {
+
+    /**
+     * Distance, in array elements, between two slots, so that each slot sits
+     * on its own cache line. The value of a slot is stored at its first
+     * element, and whether any value was put into it at the second.
+     */
+    private static final int STRIDE = 16;
+
+    /**
+     * Result of combining no values.
+     */
+    private final int identity;
+    /**
+     * Function combining two values.
+     */
+    private final IntBinaryOperator operator;
+    /**
+     * The slots values are put into while the finish this accumulator is
+     * registered with runs, or null.
+     */
+    private volatile AtomicIntegerArray slots = null;
+    /**
+     * Result of the last finish this accumulator was registered with.
+     */
+    private volatile int result;
+
+    /**
+     * Constructor.
+     *
+     * @param setIdentity Result of combining no values.
+     * @param setOperator Function combining two values.
+     */
+    private IntFinishAccumulator(final int setIdentity,
+            final IntBinaryOperator setOperator) {
+        this.identity = setIdentity;
+        this.operator = setOperator;
+        this.result = setIdentity;
+    }
+
+    /**
+     * Create an accumulator computing the sum of all values.
+     *
+     * @return A new accumulator.
+     */
+    public static IntFinishAccumulator sum() {
+        return new IntFinishAccumulator(0, Integer::sum);
+    }
+
+    /**
+     * Create an accumulator computing the smallest of all values.
+     *
+     * @return A new accumulator.
+     */
+    public static IntFinishAccumulator min() {
+        return new IntFinishAccumulator(Integer.MAX_VALUE, Math::min);
+    }
+
+    /**
+     * Create an accumulator computing the largest of all values.
+     *
+     * @return A new accumulator.
+     */
+    public static IntFinishAccumulator max() {
+        return new IntFinishAccumulator(Integer.MIN_VALUE, Math::max);
+    }
+
+    /**
+     * Create an accumulator keeping an arbitrary one of all values, or 0
+     * if no value is put.
+     *
+     * @return A new accumulator.
+     */
+    public static IntFinishAccumulator any() {
+        return new IntFinishAccumulator(0, (a, b) -> b);
+    }
+
+    /**
+     * Create an accumulator combining values with a user-defined operator.
+     *
+     * @param identity Result of combining no values, such that
+     *        operator(identity, x) == x.
+     * @param operator An associative and commutative function combining two
+     *        values.
+     * @return A new accumulator.
+     */
+    public static IntFinishAccumulator of(final int identity,
+            final IntBinaryOperator operator) {
+        return new IntFinishAccumulator(identity, operator);
+    }
+
+    /**
+     * Add a value to this accumulator, from a task of the finish it is
+     * registered with or of a finish nested in it.
+     *
+     * @param value Value to add.
+     * @throws IllegalStateException if the finish this accumulator is
+     *         registered with is not running, or if the calling task does
+     *         not belong to it.
+     */
+    public void put(final int value) {
+        checkPutAllowed();
+        final AtomicIntegerArray current = slots;
+        if (current == null) {
+            throw new IllegalStateException(NOT_REGISTERED_MSG);
+        }
+        final int slot =
+            slotOfCurrentThread(current.length() / STRIDE) * STRIDE;
+        while (true) {
+            final int old = current.get(slot);
+            if (current.compareAndSet(slot, old,
+                        operator.applyAsInt(old, value))) {
+                break;
+            }
+        }
+        if (current.get(slot + 1) == 0) {
+            current.set(slot + 1, 1);
+        }
+    }
+
+    /**
+     * Get the combined value of everything put into this accumulator during
+     * the last finish it was registered with, or the identity of its
+     * operator if it was never registered.
+     *
+     * @return The result of this accumulator.
+     * @throws IllegalStateException if called while the finish this
+     *         accumulator is registered with is running.
+     */
+    public int get() {
+        if (slots != null) {
+            throw new IllegalStateException(STILL_RUNNING_MSG);
+        }
+        return result;
+    }
+
+    @Override
+    synchronized void open(final int numWorkers) {
+        if (slots != null) {
+            throw new IllegalStateException("A finish accumulator cannot be "
+                    + "registered with two running finish scopes");
+        }
+        final AtomicIntegerArray fresh =
+            new AtomicIntegerArray(numSlots(numWorkers) * STRIDE);
+        for (int i = 0; i < fresh.length(); i += STRIDE) {
+            fresh.set(i, identity);
+        }
+        slots = fresh;
+    }
+
+    @Override
+    void close() {
+        final AtomicIntegerArray current = slots;
+        int merged = identity;
+        for (int i = 0; i < current.length(); i += STRIDE) {
+            if (current.get(i + 1) != 0) {
+                merged = operator.applyAsInt(merged, current.get(i));
+            }
+        }
+        result = merged;
+        slots = null;
+    }
+}
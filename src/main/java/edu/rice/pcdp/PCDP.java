@@ -1,15 +1,29 @@
 package edu.rice.pcdp;
 
+import edu.rice.pcdp.config.RuntimeConfig;
 import edu.rice.pcdp.runtime.BaseTask;
+import edu.rice.pcdp.runtime.BaseTask.AsyncTask;
 import edu.rice.pcdp.runtime.BaseTask.FinishTask;
+import edu.rice.pcdp.runtime.BaseTask.ForasyncTask;
 import edu.rice.pcdp.runtime.BaseTask.FutureTask;
-import edu.rice.pcdp.runtime.Runtime;
 import edu.rice.pcdp.runtime.IsolatedManager;
-import edu.rice.pcdp.config.SystemProperty;
+import edu.rice.pcdp.runtime.LoopBody;
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import edu.rice.pcdp.runtime.Phaser;
+import edu.rice.pcdp.runtime.PhaserMode;
+import edu.rice.pcdp.runtime.PhaserPair;
+import edu.rice.pcdp.runtime.Runtime;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Supplier;
 
 /**
  * The main class of the PCDP framework, containing most of the user-visible
@@ -32,13 +46,6 @@ public final class PCDP {
     private PCDP() {
     }
 
-    /**
-     * A singleton utility for managing the Java locks used to implement global
-     * and object-based isolation.
-     */
-    private static final IsolatedManager isolatedManager =
-        new IsolatedManager();
-
     /**
      * finish waits for all tasks spawned in runnable to complete, as well as
      * any transitively spawned child, granchild, etc tasks. The method call to
@@ -47,9 +54,36 @@ public final class PCDP {
      * @param runnable User-written body of the finish scope to execute.
      */
     public static void finish(final Runnable runnable) {
+        finish(Runtime.currentRuntime(), runnable);
+    }
+
+    /**
+     * A variant of finish whose body, and all tasks transitively spawned by
+     * it, execute on the provided runtime instead of on the runtime of the
+     * calling task. This is used to run work on a separate set of worker
+     * threads, for example to isolate latency-critical work from bulk
+     * computation. Like finish, this method returns once all tasks have
+     * completed.
+     *
+     * @param runtime The runtime to execute the finish scope on.
+     * @param runnable User-written body of the finish scope to execute.
+     */
+    public static void finish(final PCDPRuntime runtime,
+            final Runnable runnable) {
+        runFinish(new FinishTask(runnable, runtime));
+    }
+
+    /**
+     * Execute a finish scope and wait for it to complete. The body runs on
+     * the calling thread if it is a task of the same runtime, and is
+     * submitted to the runtime of the scope otherwise.
+     *
+     * @param newTask The finish scope to execute.
+     */
+    private static void runFinish(final FinishTask newTask) {
         final BaseTask currentTask = Runtime.currentTask();
-        final FinishTask newTask = new FinishTask(runnable);
-        if (currentTask == null) {
+        if (currentTask == null
+                || currentTask.runtime() != newTask.runtime()) {
             Runtime.submitTask(newTask);
         } else {
             newTask.compute();
@@ -57,14 +91,105 @@ public final class PCDP {
         newTask.awaitCompletion();
     }
 
+    /**
+     * A variant of finish that registers accumulators with the finish scope.
+     * Tasks in the scope can put values into the accumulators, and once the
+     * scope completes each accumulator holds the combination of all values
+     * put into it, available through its get method.
+     *
+     * @param runnable User-written body of the finish scope to execute.
+     * @param accumulators Accumulators to register with the finish scope.
+     */
+    public static void finish(final Runnable runnable,
+            final FinishAccumulator... accumulators) {
+        finish(Runtime.currentRuntime(), runnable, accumulators);
+    }
+
+    /**
+     * A variant of finish that executes on the provided runtime and registers
+     * accumulators with the finish scope.
+     *
+     * @param runtime The runtime to execute the finish scope on.
+     * @param runnable User-written body of the finish scope to execute.
+     * @param accumulators Accumulators to register with the finish scope.
+     * @see #finish(Runnable, FinishAccumulator...)
+     */
+    public static void finish(final PCDPRuntime runtime,
+            final Runnable runnable,
+            final FinishAccumulator... accumulators) {
+        final FinishTask newTask = new FinishTask(runnable, runtime);
+        int opened = 0;
+        try {
+            for (final FinishAccumulator accumulator : accumulators) {
+                accumulator.register(newTask, runtime.numWorkers());
+                opened++;
+            }
+            runFinish(newTask);
+        } finally {
+            for (int i = 0; i < opened; i++) {
+                accumulators[i].deregister();
+            }
+        }
+    }
+
+    /**
+     * A variant of finish that does not wait for the finish scope to
+     * complete. The body is submitted for execution and this method returns
+     * immediately with a future that is completed once the body and all tasks
+     * transitively spawned by it have completed. If any of these tasks
+     * terminated abruptly, the future is instead completed exceptionally
+     * with the exception finish would have thrown.
+     * <p>
+     * The new finish scope is not nested in the finish scope of the caller,
+     * which does not wait for it. Dependent stages of the returned future
+     * that are not explicitly asynchronous run on the thread completing the
+     * scope, outside of any task.
+     *
+     * @param runnable User-written body of the finish scope to execute.
+     * @return A future completed when the finish scope completes.
+     */
+    public static CompletableFuture<Void> finishAsync(
+            final Runnable runnable) {
+        return finishAsync(Runtime.currentRuntime(), runnable);
+    }
+
+    /**
+     * A variant of finishAsync whose body, and all tasks transitively
+     * spawned by it, execute on the provided runtime.
+     *
+     * @param runtime The runtime to execute the finish scope on.
+     * @param runnable User-written body of the finish scope to execute.
+     * @return A future completed when the finish scope completes.
+     */
+    public static CompletableFuture<Void> finishAsync(
+            final PCDPRuntime runtime, final Runnable runnable) {
+        final CompletableFuture<Void> completionFuture =
+            new CompletableFuture<>();
+        Runtime.submitTask(new FinishTask(runnable, runtime,
+                    completionFuture));
+        return completionFuture;
+    }
+
     /**
      * async creates an asynchronously executing task.
+     * <p>
+     * If the runtime is configured with an inlining cutoff (see
+     * {@link edu.rice.pcdp.config.SystemProperty#inlineQueueDepth} and
+     * {@link edu.rice.pcdp.config.SystemProperty#inlineTaskDepth}) and the
+     * cutoff is reached, the body instead executes immediately on the calling
+     * thread. It still belongs to the enclosing finish scope, which reports
+     * any exception it throws.
      *
      * @param runnable User-written body of the task.
      */
     public static void async(final Runnable runnable) {
-        final FutureTask<Void> newTask = createFutureTask(runnable);
-        newTask.fork();
+        final BaseTask currentTask = Runtime.currentTask();
+        if (currentTask != null && Runtime.shouldInline(currentTask)) {
+            currentTask.ief().runInline(runnable);
+            return;
+        }
+        final AsyncTask newTask = createAsyncTask(runnable);
+        Runtime.submitTask(newTask);
     }
 
     /**
@@ -84,6 +209,11 @@ public final class PCDP {
      *     });
      *   }
      * </code></pre>
+     * Internally, the runtime does not create one task per iteration. The
+     * iteration space is recursively split in half by the worker threads
+     * until small chunks of consecutive iterations remain, each of which is
+     * executed sequentially. If an iteration throws an exception, the
+     * remaining iterations of its chunk are skipped.
      *
      * @param startInc The start of the loop range this parallel loop executes
      *        over (inclusive).
@@ -98,11 +228,14 @@ public final class PCDP {
             final ProcedureInt1D body) {
         assert (startInc <= endInc);
 
-        for (int i = startInc; i <= endInc; i++) {
-            final int loopIndex = i;
-            final Runnable loopRunnable = () -> body.apply(loopIndex);
-            async(loopRunnable);
-        }
+        forasyncRange(startInc, endInc,
+                getChunkSize(endInc - startInc + 1,
+                    loopChunks()),
+                false, (lo, hi) -> {
+                    for (int i = lo; i <= hi; i++) {
+                        body.apply(i);
+                    }
+                });
     }
 
     /**
@@ -123,16 +256,18 @@ public final class PCDP {
         assert (startInc0 <= endInc0);
         assert (startInc1 <= endInc1);
 
-        for (int i = startInc0; i <= endInc0; i++) {
-            final int iCopy = i;
-
-            for (int j = startInc1; j <= endInc1; j++) {
-                final int jCopy = j;
+        final int innerNIters = endInc1 - startInc1 + 1;
+        final int numIters = (endInc0 - startInc0 + 1) * innerNIters;
 
-                final Runnable loopRunnable = () -> body.apply(iCopy, jCopy);
-                async(loopRunnable);
-            }
-        }
+        forasyncRange(0, numIters - 1,
+                getChunkSize(numIters,
+                    loopChunks()),
+                false, (lo, hi) -> {
+                    for (int i = lo; i <= hi; i++) {
+                        body.apply(startInc0 + i / innerNIters,
+                            startInc1 + i % innerNIters);
+                    }
+                });
     }
 
     /**
@@ -154,6 +289,59 @@ public final class PCDP {
         });
     }
 
+    /**
+     * An iterative forall that runs all of its time steps on persistent,
+     * phased tasks. The iteration space is split into one contiguous chunk
+     * per worker, and each chunk executes as a single task, registered in
+     * {@link PhaserMode#SIG_WAIT} mode on a phaser created for the loop. At
+     * every step, a task applies the body to each iteration of its chunk and
+     * then calls {@link #next()}, so that no iteration starts step s + 1
+     * before all iterations have completed step s. This suits iterative SPMD
+     * kernels, such as stencils, that would otherwise run one forall per time
+     * step: a step costs one barrier instead of a finish and a new set of
+     * tasks, and since a task never migrates once started, each chunk is
+     * processed by the same worker at every step.
+     * <pre><code>
+     *   forallPhased(1, n, nSteps, (step, i) -> {
+     *     dst(step)[i] = (src(step)[i - 1] + src(step)[i + 1]) / 2.0;
+     *   });
+     * </code></pre>
+     * The body must not call next() itself, as the loop already places a
+     * barrier between consecutive steps.
+     *
+     * @param startInc The first iteration of the loop (inclusive).
+     * @param endInc The last iteration of the loop (inclusive).
+     * @param nSteps The number of time steps.
+     * @param body a {@link ProcedureInt2D} object defining the body of the
+     *        loop, applied to a time step and an iteration.
+     */
+    public static void forallPhased(final int startInc, final int endInc,
+            final int nSteps, final ProcedureInt2D body) {
+        assert (startInc <= endInc);
+
+        finish(() -> {
+            final int chunkSize = getChunkSize(endInc - startInc + 1,
+                    numThreads());
+            final Phaser ph = newPhaser(PhaserMode.SIG_WAIT);
+            for (int lo = startInc; lo <= endInc; lo += chunkSize) {
+                final int chunkStart = lo;
+                final int chunkEnd = Math.min(endInc, lo + chunkSize - 1);
+                asyncPhased(() -> {
+                    for (int step = 0; step < nSteps; step++) {
+                        if (step > 0) {
+                            next();
+                        }
+                        for (int i = chunkStart; i <= chunkEnd; i++) {
+                            body.apply(step, i);
+                        }
+                    }
+                });
+            }
+            // The spawning task does not take part in the phases.
+            ph.drop();
+        });
+    }
+
     /**
      * A two-dimensional variant on forall.
      *
@@ -190,24 +378,19 @@ public final class PCDP {
             final int chunkSize, final ProcedureInt1D body) {
         assert (start <= endInclusive);
 
-        for (int i = start; i <= endInclusive; i += chunkSize) {
-            final int iCopy = i;
-
-            async(() -> {
-                int end = iCopy + chunkSize - 1;
-                if (end > endInclusive) {
-                    end = endInclusive;
-                }
-                for (int innerI = iCopy; innerI <= end; innerI++) {
-                    body.apply(innerI);
-                }
-            });
-        }
+        forasyncRange(start, endInclusive, chunkSize, false, (lo, hi) -> {
+            for (int i = lo; i <= hi; i++) {
+                body.apply(i);
+            }
+        });
     }
 
     /**
-     * A variant of one-dimensional forasyncChunked that internally selects a
-     * sane chunk size.
+     * A variant of one-dimensional forasyncChunked that adapts the chunking
+     * to the load of the runtime: a task keeps executing small chunks of its
+     * range sequentially and only splits off half of its remaining iterations
+     * when other workers are idle. This balances loops with irregular
+     * iteration costs without the programmer picking a chunk size.
      *
      * @param start The starting iteration for the parallel loop
      * @param endInclusive The ending iteration for the parallel loop
@@ -217,8 +400,16 @@ public final class PCDP {
      */
     public static void forasyncChunked(final int start, final int endInclusive,
             final ProcedureInt1D body) {
-        forasyncChunked(start, endInclusive,
-                getChunkSize(endInclusive - start + 1, numThreads() * 2), body);
+        assert (start <= endInclusive);
+
+        forasyncRange(start, endInclusive,
+                getChunkSize(endInclusive - start + 1,
+                    adaptiveLoopChunks()),
+                true, (lo, hi) -> {
+                    for (int i = lo; i <= hi; i++) {
+                        body.apply(i);
+                    }
+                });
     }
 
     /**
@@ -253,8 +444,8 @@ public final class PCDP {
     }
 
     /**
-     * A variant of two-dimensional forasyncChunked that internally selects a
-     * sane chunk size.
+     * A variant of two-dimensional forasyncChunked that adapts the chunking to
+     * the load of the runtime, as the one-dimensional variant does.
      *
      * @param start0 The starting iteration for the outermost parallel loop
      * @param endInclusive0 The ending iteration for the outermost parallel loop
@@ -267,10 +458,21 @@ public final class PCDP {
     public static void forasync2dChunked(final int start0,
             final int endInclusive0, final int start1, final int endInclusive1,
             final ProcedureInt2D body) {
-        final int numIters = (endInclusive0 - start0 + 1)
-            * (endInclusive1 - start1 + 1);
-        forasync2dChunked(start0, endInclusive0, start1, endInclusive1,
-                getChunkSize(numIters, numThreads() * 2), body);
+        assert (start0 <= endInclusive0);
+        assert (start1 <= endInclusive1);
+
+        final int innerNIters = endInclusive1 - start1 + 1;
+        final int numIters = (endInclusive0 - start0 + 1) * innerNIters;
+
+        forasyncRange(0, numIters - 1,
+                getChunkSize(numIters,
+                    adaptiveLoopChunks()),
+                true, (lo, hi) -> {
+                    for (int i = lo; i <= hi; i++) {
+                        body.apply(start0 + i / innerNIters,
+                            start1 + i % innerNIters);
+                    }
+                });
     }
 
     /**
@@ -293,8 +495,8 @@ public final class PCDP {
     }
 
     /**
-     * A variant of one-dimensional forallChunked that internally selects a sane
-     * chunk size.
+     * A variant of one-dimensional forallChunked that adapts the chunking to
+     * the load of the runtime, as the adaptive forasyncChunked does.
      *
      * @param start The starting iteration for the parallel loop
      * @param endInclusive The ending iteration for the parallel loop
@@ -303,8 +505,9 @@ public final class PCDP {
      */
     public static void forallChunked(final int start, final int endInclusive,
             final ProcedureInt1D body) {
-        forallChunked(start, endInclusive,
-                getChunkSize(endInclusive - start + 1, numThreads() * 2), body);
+        finish(() -> {
+            forasyncChunked(start, endInclusive, body);
+        });
     }
 
     /**
@@ -330,8 +533,8 @@ public final class PCDP {
     }
 
     /**
-     * A variant of two-dimensional forallChunked that internally selects a sane
-     * chunk size.
+     * A variant of two-dimensional forallChunked that adapts the chunking to
+     * the load of the runtime, as the adaptive forasync2dChunked does.
      *
      * @param start0 The starting iteration for the outermost parallel loop
      * @param endInclusive0 The ending iteration for the outermost parallel loop
@@ -344,16 +547,166 @@ public final class PCDP {
     public static void forall2dChunked(final int start0, final int endInclusive0,
             final int start1, final int endInclusive1,
             final ProcedureInt2D body) {
-        final int numIters = (endInclusive0 - start0 + 1)
-            * (endInclusive1 - start1 + 1);
-        forall2dChunked(start0, endInclusive0, start1, endInclusive1,
-                getChunkSize(numIters, numThreads() * 2), body);
+        finish(() -> {
+            forasync2dChunked(start0, endInclusive0, start1, endInclusive1,
+                body);
+        });
+    }
+
+    /**
+     * A parallel reduction over the loop range [start, endInclusive] that
+     * returns a int. The range is divided into chunks as by forall, each
+     * chunk is reduced sequentially into a local int starting from identity,
+     * and the results of the chunks are then combined pairwise, in a tree, in
+     * the order of their ranges. combiner must therefore be associative, and
+     * identity must be an identity of combiner, but the combiner need not be
+     * commutative.
+     * <pre><code>
+     *   int dot = forallReduceInt(0, n - 1, 0, (i) -> x[i] * y[i],
+     *       (a, b) -> a + b);
+     * </code></pre>
+     *
+     * @param start The starting iteration for the parallel loop
+     * @param endInclusive The ending iteration for the parallel loop
+     *        (inclusive)
+     * @param identity The identity of combiner, returned for an empty range
+     * @param body Computes the value of each iteration
+     * @param combiner Associative operator combining two values
+     * @return The combination of the values of all iterations
+     */
+    public static int forallReduceInt(final int start, final int endInclusive,
+            final int identity, final IntUnaryOperator body,
+            final IntBinaryOperator combiner) {
+        if (start > endInclusive) {
+            return identity;
+        }
+        final int nElements = endInclusive - start + 1;
+        final int chunkSize = getChunkSize(nElements, loopChunks());
+        final int[] partials = new int[getChunkSize(nElements, chunkSize)];
+        finish(() -> {
+            forasyncRange(start, endInclusive, chunkSize, false, (lo, hi) -> {
+                int acc = identity;
+                for (int i = lo; i <= hi; i++) {
+                    acc = combiner.applyAsInt(acc, body.applyAsInt(i));
+                }
+                partials[(lo - start) / chunkSize] = acc;
+            });
+        });
+        for (int stride = 1; stride < partials.length; stride <<= 1) {
+            for (int i = 0; i + stride < partials.length; i += 2 * stride) {
+                partials[i] =
+                    combiner.applyAsInt(partials[i], partials[i + stride]);
+            }
+        }
+        return partials[0];
+    }
+
+    /**
+     * A parallel reduction over the loop range [start, endInclusive] that
+     * returns a long. The range is divided into chunks as by forall, each
+     * chunk is reduced sequentially into a local long starting from identity,
+     * and the results of the chunks are then combined pairwise, in a tree, in
+     * the order of their ranges. combiner must therefore be associative, and
+     * identity must be an identity of combiner, but the combiner need not be
+     * commutative.
+     * <pre><code>
+     *   long dot = forallReduceLong(0, n - 1, 0, (i) -> x[i] * y[i],
+     *       (a, b) -> a + b);
+     * </code></pre>
+     *
+     * @param start The starting iteration for the parallel loop
+     * @param endInclusive The ending iteration for the parallel loop
+     *        (inclusive)
+     * @param identity The identity of combiner, returned for an empty range
+     * @param body Computes the value of each iteration
+     * @param combiner Associative operator combining two values
+     * @return The combination of the values of all iterations
+     */
+    public static long forallReduceLong(final int start, final int endInclusive,
+            final long identity, final IntToLongFunction body,
+            final LongBinaryOperator combiner) {
+        if (start > endInclusive) {
+            return identity;
+        }
+        final int nElements = endInclusive - start + 1;
+        final int chunkSize = getChunkSize(nElements, loopChunks());
+        final long[] partials = new long[getChunkSize(nElements, chunkSize)];
+        finish(() -> {
+            forasyncRange(start, endInclusive, chunkSize, false, (lo, hi) -> {
+                long acc = identity;
+                for (int i = lo; i <= hi; i++) {
+                    acc = combiner.applyAsLong(acc, body.applyAsLong(i));
+                }
+                partials[(lo - start) / chunkSize] = acc;
+            });
+        });
+        for (int stride = 1; stride < partials.length; stride <<= 1) {
+            for (int i = 0; i + stride < partials.length; i += 2 * stride) {
+                partials[i] =
+                    combiner.applyAsLong(partials[i], partials[i + stride]);
+            }
+        }
+        return partials[0];
+    }
+
+    /**
+     * A parallel reduction over the loop range [start, endInclusive] that
+     * returns a double. The range is divided into chunks as by forall, each
+     * chunk is reduced sequentially into a local double starting from identity,
+     * and the results of the chunks are then combined pairwise, in a tree, in
+     * the order of their ranges. combiner must therefore be associative, and
+     * identity must be an identity of combiner, but the combiner need not be
+     * commutative.
+     * <pre><code>
+     *   double dot = forallReduceDouble(0, n - 1, 0, (i) -> x[i] * y[i],
+     *       (a, b) -> a + b);
+     * </code></pre>
+     *
+     * @param start The starting iteration for the parallel loop
+     * @param endInclusive The ending iteration for the parallel loop
+     *        (inclusive)
+     * @param identity The identity of combiner, returned for an empty range
+     * @param body Computes the value of each iteration
+     * @param combiner Associative operator combining two values
+     * @return The combination of the values of all iterations
+     */
+    public static double forallReduceDouble(final int start,
+            final int endInclusive, final double identity,
+            final IntToDoubleFunction body,
+            final DoubleBinaryOperator combiner) {
+        if (start > endInclusive) {
+            return identity;
+        }
+        final int nElements = endInclusive - start + 1;
+        final int chunkSize = getChunkSize(nElements, loopChunks());
+        final double[] partials =
+            new double[getChunkSize(nElements, chunkSize)];
+        finish(() -> {
+            forasyncRange(start, endInclusive, chunkSize, false, (lo, hi) -> {
+                double acc = identity;
+                for (int i = lo; i <= hi; i++) {
+                    acc = combiner.applyAsDouble(acc, body.applyAsDouble(i));
+                }
+                partials[(lo - start) / chunkSize] = acc;
+            });
+        });
+        for (int stride = 1; stride < partials.length; stride <<= 1) {
+            for (int i = 0; i + stride < partials.length; i += 2 * stride) {
+                partials[i] =
+                    combiner.applyAsDouble(partials[i], partials[i + stride]);
+            }
+        }
+        return partials[0];
     }
 
     /**
      * Spawn an asynchronous task that returns a value of type <R>. Return a
      * future object that can be used to wait on the completion of the spawned
      * task, and fetch its resulting value.
+     * <p>
+     * Like async, future may execute the body immediately on the calling
+     * thread when an inlining cutoff is reached, in which case the returned
+     * future is already completed and can no longer be cancelled.
      *
      * @param body user-defined body of the task.
      * @param <R> Return type of the launched future task.
@@ -361,8 +714,12 @@ public final class PCDP {
      *         created task and fetch its return value.
      */
     public static <R> Future<R> future(final Callable<R> body) {
+        final BaseTask currentTask = Runtime.currentTask();
+        if (currentTask != null && Runtime.shouldInline(currentTask)) {
+            return currentTask.ief().callInline(body);
+        }
         final FutureTask<R> newTask = createFutureTask(body, false);
-        newTask.fork();
+        Runtime.submitTask(newTask);
         return newTask.future();
     }
 
@@ -376,10 +733,10 @@ public final class PCDP {
      */
     public static void asyncAwait(final Runnable runnable,
             final Future<? extends Object>... futures) {
-        final FutureTask<Void> newTask = createFutureTask(runnable);
+        final AsyncTask newTask = createAsyncTask(runnable);
         CompletableFuture.
             allOf(wrapToCompletableFutures(futures)).
-            whenComplete((a, b) -> newTask.fork());
+            whenComplete((a, b) -> Runtime.submitTask(newTask));
     }
 
     /**
@@ -399,28 +756,113 @@ public final class PCDP {
         final FutureTask<R> newTask = createFutureTask(runnable, false);
         CompletableFuture.
             allOf(wrapToCompletableFutures(futures)).
-            whenComplete((a, b) -> newTask.fork());
+            whenComplete((a, b) -> Runtime.submitTask(newTask));
         return newTask.future();
     }
 
     /**
-     * Internal utility for creating a future to schedule on the runtime.
+     * Create a phaser and register the current task on it in the provided
+     * mode. See {@link Phaser} for how tasks synchronize on a phaser.
+     *
+     * @param mode Mode to register the current task in.
+     * @return A new phaser.
+     */
+    public static Phaser newPhaser(final PhaserMode mode) {
+        final BaseTask currentTask = Runtime.currentTask();
+        if (currentTask == null) {
+            throw new IllegalStateException(missingFinishMsg);
+        }
+        return new Phaser(mode, currentTask);
+    }
+
+    /**
+     * Spawn an asynchronous task registered on phasers of the current task.
+     * The new task is registered before asyncPhased returns, in the phase the
+     * current task is in, so the phasers cannot advance without it. It is
+     * dropped from its phasers when it completes.
      *
      * @param runnable Body of the task.
-     * @return A FutureTask object to execute on the runtime.
+     * @param phaserPairs Phasers to register the new task on, and the mode to
+     *        register it in, which must not signal or wait if the current
+     *        task does not. If none are provided, the new task is registered
+     *        on all phasers of the current task, in the same modes.
      */
-    private static FutureTask<Void> createFutureTask(final Runnable runnable) {
+    public static void asyncPhased(final Runnable runnable,
+            final PhaserPair... phaserPairs) {
         final BaseTask currentTask = Runtime.currentTask();
         if (currentTask == null) {
             throw new IllegalStateException(missingFinishMsg);
         }
-        return createFutureTask(
-            () -> {
-                runnable.run();
-                return null;
+        Phaser.checkChild(currentTask, phaserPairs);
+        final AsyncTask newTask = createAsyncTask(runnable);
+        Phaser.registerChild(currentTask, newTask, phaserPairs);
+        Runtime.submitTask(newTask);
+    }
 
-            },
-            true);
+    /**
+     * Signal all phasers the current task is registered on, then wait for
+     * all of them to advance. When all tasks are registered in
+     * {@link PhaserMode#SIG_WAIT} mode on a single phaser, this acts as a
+     * barrier.
+     */
+    public static void next() {
+        final BaseTask currentTask = Runtime.currentTask();
+        if (currentTask == null) {
+            throw new IllegalStateException(missingFinishMsg);
+        }
+        Phaser.nextAll(currentTask);
+    }
+
+    /**
+     * Internal utility for spawning a parallel loop on the runtime. The range
+     * [startInc, endInc] is divided into chunks of chunkSize consecutive
+     * iterations, which are handed out to the workers by recursive splitting.
+     *
+     * @param startInc The first iteration of the loop (inclusive).
+     * @param endInc The last iteration of the loop (inclusive).
+     * @param chunkSize The number of iterations executed sequentially by a
+     *        single task.
+     * @param adaptive Whether to split lazily, only when other workers are
+     *        idle, rather than down to single chunks.
+     * @param body Body of the loop, applied to ranges of iterations.
+     */
+    private static void forasyncRange(final int startInc, final int endInc,
+            final int chunkSize, final boolean adaptive, final LoopBody body) {
+        if (startInc > endInc) {
+            return;
+        }
+        final BaseTask currentTask = Runtime.currentTask();
+        if (currentTask == null) {
+            throw new IllegalStateException(missingFinishMsg);
+        }
+        final ForasyncTask newTask = new ForasyncTask(startInc, endInc,
+                chunkSize, adaptive, body, currentTask.ief());
+        Runtime.submitTask(newTask);
+    }
+
+    /**
+     * A variant of async that always spawns a task, even when an inlining
+     * cutoff is reached. Used to activate actors, whose message processing
+     * must not run on the stack of the sending task.
+     *
+     * @param runnable User-written body of the task.
+     */
+    static void asyncSpawned(final Runnable runnable) {
+        Runtime.submitTask(createAsyncTask(runnable));
+    }
+
+    /**
+     * Internal utility for creating an async task to schedule on the runtime.
+     *
+     * @param runnable Body of the task.
+     * @return An AsyncTask object to execute on the runtime.
+     */
+    private static AsyncTask createAsyncTask(final Runnable runnable) {
+        final BaseTask currentTask = Runtime.currentTask();
+        if (currentTask == null) {
+            throw new IllegalStateException(missingFinishMsg);
+        }
+        return new AsyncTask(runnable, currentTask.ief());
     }
 
     /**
@@ -511,13 +953,39 @@ public final class PCDP {
     }
 
     /**
-     * Retrieve the number of software threads the PCDP runtime was configured
-     * with.
+     * Retrieve the number of software threads the PCDP runtime executing the
+     * calling task was configured with.
      *
      * @return The number of PCDP runtime threads.
      */
     public static int numThreads() {
-        return Integer.parseInt(SystemProperty.numWorkers.getPropertyValue());
+        return Runtime.currentRuntime().numWorkers();
+    }
+
+    /**
+     * The number of chunks that forasync and forall split their iteration
+     * space into when the user does not ask for chunking (see
+     * {@link RuntimeConfig#loopChunksPerWorker()}).
+     *
+     * @return The number of chunks.
+     */
+    private static int loopChunks() {
+        final RuntimeConfig config = Runtime.currentRuntime().config();
+        return config.numWorkers() * config.loopChunksPerWorker();
+    }
+
+    /**
+     * The number of chunks that the adaptive variants of the chunked
+     * parallel loops divide their iteration space into. Each chunk is the
+     * granularity at which a loop task checks whether to split off work for
+     * idle workers, so it can be much smaller than a static chunk (see
+     * {@link RuntimeConfig#adaptiveChunksPerWorker()}).
+     *
+     * @return The number of chunks.
+     */
+    private static int adaptiveLoopChunks() {
+        final RuntimeConfig config = Runtime.currentRuntime().config();
+        return config.numWorkers() * config.adaptiveChunksPerWorker();
     }
 
     /**
@@ -534,17 +1002,20 @@ public final class PCDP {
 
     /**
      * Global isolated statement. runnable will execute in isolation with all
-     * other isolated blocks.
+     * other isolated blocks. A global isolated block may contain object-based
+     * isolated blocks, but not the reverse.
+     * <p>
+     * If the runtime uses the combining isolation mode, a contended block may
+     * execute on the thread currently holding global isolation rather than on
+     * the calling thread, which still waits for it to complete and receives
+     * any exception it throws.
      *
      * @param runnable The body to be executed in isolation.
+     * @throws IllegalStateException if called from within object-based
+     *         isolation.
      */
     public static void isolated(final Runnable runnable) {
-        isolatedManager.acquireAllLocks();
-        try {
-            runnable.run();
-        } finally {
-            isolatedManager.releaseAllLocks();
-        }
+        Runtime.currentRuntime().isolatedManager().isolated(runnable);
     }
 
     /**
@@ -556,14 +1027,13 @@ public final class PCDP {
      * @param runnable The body to be executed in isolation.
      */
     public static void isolated(final Object obj, final Runnable runnable) {
-        Object[] objArr = new Object[1];
-        objArr[0] = obj;
-
-        isolatedManager.acquireLocksFor(objArr);
+        final IsolatedManager isolatedManager =
+            Runtime.currentRuntime().isolatedManager();
+        isolatedManager.acquireLockFor(obj);
         try {
             runnable.run();
         } finally {
-            isolatedManager.releaseLocksFor(objArr);
+            isolatedManager.releaseLockFor(obj);
         }
     }
 
@@ -579,15 +1049,68 @@ public final class PCDP {
      */
     public static void isolated(final Object obj1, final Object obj2,
             final Runnable runnable) {
-        Object[] objArr = new Object[2];
-        objArr[0] = obj1;
-        objArr[1] = obj2;
+        final IsolatedManager isolatedManager =
+            Runtime.currentRuntime().isolatedManager();
+        isolatedManager.acquireLocksFor(obj1, obj2);
+        try {
+            runnable.run();
+        } finally {
+            isolatedManager.releaseLocksFor(obj1, obj2);
+        }
+    }
 
-        isolatedManager.acquireLocksFor(objArr);
+    /**
+     * Object-based isolation on any number of objects. The body runnable is
+     * guaranteed to execute in mutual exclusion with any other global
+     * isolated blocks, or any object-based isolated blocks that are isolated
+     * on at least one of the same objects. The body comes first so that the
+     * objects can be passed as varargs.
+     *
+     * @param runnable The body to be executed in isolation.
+     * @param objects The objects to implement isolation on.
+     */
+    public static void isolated(final Runnable runnable,
+            final Object... objects) {
+        // One or two objects need no array of lock indices.
+        if (objects.length == 1) {
+            isolated(objects[0], runnable);
+            return;
+        } else if (objects.length == 2) {
+            isolated(objects[0], objects[1], runnable);
+            return;
+        }
+
+        final IsolatedManager isolatedManager =
+            Runtime.currentRuntime().isolatedManager();
+        final int[] lockIndices = isolatedManager.acquireLocksFor(objects);
         try {
             runnable.run();
         } finally {
-            isolatedManager.releaseLocksFor(objArr);
+            isolatedManager.releaseLocks(lockIndices);
         }
     }
+
+    /**
+     * Read-only object-based isolation on a single object. The value returned
+     * by isolatedRead is consistent with every global isolated block, and
+     * every object-based isolated block on obj, having either completed or
+     * not started, as if body had run in isolation on obj. Unlike isolated,
+     * isolatedRead does not exclude other read-only blocks, and does not
+     * normally acquire any lock: body first runs optimistically, and is only
+     * run again, this time excluding isolated blocks, if one of them ran
+     * concurrently.
+     * <p>
+     * As a consequence, body may run more than once and observe shared state
+     * in the middle of an update on runs whose result is discarded. It must
+     * only read shared state, must not use isolation itself, and must not
+     * rely on invariants of that state to terminate.
+     *
+     * @param obj The object to implement isolation on.
+     * @param body The read-only body to be executed in isolation.
+     * @param <T> Type of the value returned by body.
+     * @return The value returned by body.
+     */
+    public static <T> T isolatedRead(final Object obj, final Supplier<T> body) {
+        return Runtime.currentRuntime().isolatedManager().read(obj, body);
+    }
 }
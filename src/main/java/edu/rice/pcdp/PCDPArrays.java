@@ -0,0 +1,1700 @@
+package edu.rice.pcdp;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Parallel algorithms on arrays, executed as tasks of the PCDP runtime of the
+ * caller. Like the parallel loops, each of them includes an implicit finish,
+ * so it returns once the whole array has been processed. Unlike the parallel
+ * algorithms of {@link Arrays}, such as Arrays.parallelSort, which run on the
+ * common ForkJoinPool, they only use the workers of the PCDP runtime.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class PCDPArrays {
+
+    /**
+     * Minimum number of elements per block of the algorithms that divide an
+     * array into one block per worker. Arrays with fewer elements than two
+     * blocks are processed sequentially.
+     */
+    private static final int BLOCK_MIN = 1 << 13;
+    /**
+     * Ranges of at most this many elements are sorted sequentially.
+     */
+    private static final int SORT_CUTOFF = 1 << 13;
+    /**
+     * Merges of at most this many elements are performed sequentially.
+     */
+    private static final int MERGE_CUTOFF = 1 << 13;
+    /**
+     * Arrays with fewer elements than this are mapped sequentially.
+     */
+    private static final int MAP_CUTOFF = 1 << 10;
+
+    /**
+     * Default constructor.
+     */
+    private PCDPArrays() {
+    }
+
+    /**
+     * Inclusive scan of an array of int values. Each element is replaced by
+     * the combination of all elements up to and including it, so that
+     * array[i] becomes op(array[0], ..., array[i]). op must be associative.
+     *
+     * @param array The array to scan in place.
+     * @param op Associative operator combining two elements.
+     */
+    public static void inclusiveScan(final int[] array,
+            final IntBinaryOperator op) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (n == 0) {
+            return;
+        } else if (nBlocks == 1) {
+            inclusiveScanBlock(array, 0, n, op);
+            return;
+        }
+        // Pass 1: scan the first block, and reduce every other block but the
+        // last, whose total is not needed.
+        final int[] sums = new int[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 2, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            if (b == 0) {
+                sums[b] = inclusiveScanBlock(array, lo, hi, op);
+            } else {
+                int acc = array[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    acc = op.applyAsInt(acc, array[i]);
+                }
+                sums[b] = acc;
+            }
+        });
+        for (int b = 1; b < nBlocks - 1; b++) {
+            sums[b] = op.applyAsInt(sums[b - 1], sums[b]);
+        }
+        // Pass 2: scan every other block, starting from the combination of
+        // all blocks before it.
+        PCDP.forallChunked(1, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            int acc = sums[b - 1];
+            for (int i = lo; i < hi; i++) {
+                acc = op.applyAsInt(acc, array[i]);
+                array[i] = acc;
+            }
+        });
+    }
+
+    /**
+     * Exclusive scan of an array of int values. Each element is replaced by
+     * the combination of identity and all elements before it, so that
+     * array[0] becomes identity and array[i] becomes
+     * op(identity, array[0], ..., array[i - 1]). op must be associative, and
+     * identity must be an identity of op.
+     *
+     * @param array The array to scan in place.
+     * @param identity The identity of op.
+     * @param op Associative operator combining two elements.
+     * @return The combination of identity and all elements of the array, as
+     *         they were before the scan.
+     */
+    public static int exclusiveScan(final int[] array,
+            final int identity, final IntBinaryOperator op) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            return exclusiveScanBlock(array, 0, n, identity, op);
+        }
+        // Pass 1: scan the first block, and reduce every other block.
+        final int[] sums = new int[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            if (b == 0) {
+                sums[b] = exclusiveScanBlock(array, lo, hi, identity, op);
+            } else {
+                int acc = array[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    acc = op.applyAsInt(acc, array[i]);
+                }
+                sums[b] = acc;
+            }
+        });
+        for (int b = 1; b < nBlocks; b++) {
+            sums[b] = op.applyAsInt(sums[b - 1], sums[b]);
+        }
+        // Pass 2: scan every other block, starting from the combination of
+        // all blocks before it.
+        PCDP.forallChunked(1, nBlocks - 1, 1, (b) -> {
+            exclusiveScanBlock(array, blockStart(b, n, nBlocks),
+                    blockStart(b + 1, n, nBlocks), sums[b - 1], op);
+        });
+        return sums[nBlocks - 1];
+    }
+
+    /**
+     * Inclusive scan of an array of long values. Each element is replaced by
+     * the combination of all elements up to and including it, so that
+     * array[i] becomes op(array[0], ..., array[i]). op must be associative.
+     *
+     * @param array The array to scan in place.
+     * @param op Associative operator combining two elements.
+     */
+    public static void inclusiveScan(final long[] array,
+            final LongBinaryOperator op) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (n == 0) {
+            return;
+        } else if (nBlocks == 1) {
+            inclusiveScanBlock(array, 0, n, op);
+            return;
+        }
+        // Pass 1: scan the first block, and reduce every other block but the
+        // last, whose total is not needed.
+        final long[] sums = new long[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 2, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            if (b == 0) {
+                sums[b] = inclusiveScanBlock(array, lo, hi, op);
+            } else {
+                long acc = array[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    acc = op.applyAsLong(acc, array[i]);
+                }
+                sums[b] = acc;
+            }
+        });
+        for (int b = 1; b < nBlocks - 1; b++) {
+            sums[b] = op.applyAsLong(sums[b - 1], sums[b]);
+        }
+        // Pass 2: scan every other block, starting from the combination of
+        // all blocks before it.
+        PCDP.forallChunked(1, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            long acc = sums[b - 1];
+            for (int i = lo; i < hi; i++) {
+                acc = op.applyAsLong(acc, array[i]);
+                array[i] = acc;
+            }
+        });
+    }
+
+    /**
+     * Exclusive scan of an array of long values. Each element is replaced by
+     * the combination of identity and all elements before it, so that
+     * array[0] becomes identity and array[i] becomes
+     * op(identity, array[0], ..., array[i - 1]). op must be associative, and
+     * identity must be an identity of op.
+     *
+     * @param array The array to scan in place.
+     * @param identity The identity of op.
+     * @param op Associative operator combining two elements.
+     * @return The combination of identity and all elements of the array, as
+     *         they were before the scan.
+     */
+    public static long exclusiveScan(final long[] array,
+            final long identity, final LongBinaryOperator op) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            return exclusiveScanBlock(array, 0, n, identity, op);
+        }
+        // Pass 1: scan the first block, and reduce every other block.
+        final long[] sums = new long[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            if (b == 0) {
+                sums[b] = exclusiveScanBlock(array, lo, hi, identity, op);
+            } else {
+                long acc = array[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    acc = op.applyAsLong(acc, array[i]);
+                }
+                sums[b] = acc;
+            }
+        });
+        for (int b = 1; b < nBlocks; b++) {
+            sums[b] = op.applyAsLong(sums[b - 1], sums[b]);
+        }
+        // Pass 2: scan every other block, starting from the combination of
+        // all blocks before it.
+        PCDP.forallChunked(1, nBlocks - 1, 1, (b) -> {
+            exclusiveScanBlock(array, blockStart(b, n, nBlocks),
+                    blockStart(b + 1, n, nBlocks), sums[b - 1], op);
+        });
+        return sums[nBlocks - 1];
+    }
+
+    /**
+     * Inclusive scan of an array of double values. Each element is replaced by
+     * the combination of all elements up to and including it, so that
+     * array[i] becomes op(array[0], ..., array[i]). op must be associative.
+     *
+     * @param array The array to scan in place.
+     * @param op Associative operator combining two elements.
+     */
+    public static void inclusiveScan(final double[] array,
+            final DoubleBinaryOperator op) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (n == 0) {
+            return;
+        } else if (nBlocks == 1) {
+            inclusiveScanBlock(array, 0, n, op);
+            return;
+        }
+        // Pass 1: scan the first block, and reduce every other block but the
+        // last, whose total is not needed.
+        final double[] sums = new double[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 2, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            if (b == 0) {
+                sums[b] = inclusiveScanBlock(array, lo, hi, op);
+            } else {
+                double acc = array[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    acc = op.applyAsDouble(acc, array[i]);
+                }
+                sums[b] = acc;
+            }
+        });
+        for (int b = 1; b < nBlocks - 1; b++) {
+            sums[b] = op.applyAsDouble(sums[b - 1], sums[b]);
+        }
+        // Pass 2: scan every other block, starting from the combination of
+        // all blocks before it.
+        PCDP.forallChunked(1, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            double acc = sums[b - 1];
+            for (int i = lo; i < hi; i++) {
+                acc = op.applyAsDouble(acc, array[i]);
+                array[i] = acc;
+            }
+        });
+    }
+
+    /**
+     * Exclusive scan of an array of double values. Each element is replaced by
+     * the combination of identity and all elements before it, so that
+     * array[0] becomes identity and array[i] becomes
+     * op(identity, array[0], ..., array[i - 1]). op must be associative, and
+     * identity must be an identity of op.
+     *
+     * @param array The array to scan in place.
+     * @param identity The identity of op.
+     * @param op Associative operator combining two elements.
+     * @return The combination of identity and all elements of the array, as
+     *         they were before the scan.
+     */
+    public static double exclusiveScan(final double[] array,
+            final double identity, final DoubleBinaryOperator op) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            return exclusiveScanBlock(array, 0, n, identity, op);
+        }
+        // Pass 1: scan the first block, and reduce every other block.
+        final double[] sums = new double[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            if (b == 0) {
+                sums[b] = exclusiveScanBlock(array, lo, hi, identity, op);
+            } else {
+                double acc = array[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    acc = op.applyAsDouble(acc, array[i]);
+                }
+                sums[b] = acc;
+            }
+        });
+        for (int b = 1; b < nBlocks; b++) {
+            sums[b] = op.applyAsDouble(sums[b - 1], sums[b]);
+        }
+        // Pass 2: scan every other block, starting from the combination of
+        // all blocks before it.
+        PCDP.forallChunked(1, nBlocks - 1, 1, (b) -> {
+            exclusiveScanBlock(array, blockStart(b, n, nBlocks),
+                    blockStart(b + 1, n, nBlocks), sums[b - 1], op);
+        });
+        return sums[nBlocks - 1];
+    }
+
+    /**
+     * Inclusive scan of an array of objects. Each element is replaced by
+     * the combination of all elements up to and including it, so that
+     * array[i] becomes op(array[0], ..., array[i]). op must be associative.
+     *
+     * @param array The array to scan in place.
+     * @param op Associative operator combining two elements.
+     * @param <T> Type of the array elements.
+     */
+    public static <T> void inclusiveScan(final T[] array,
+            final BinaryOperator<T> op) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (n == 0) {
+            return;
+        } else if (nBlocks == 1) {
+            inclusiveScanBlock(array, 0, n, op);
+            return;
+        }
+        // Pass 1: scan the first block, and reduce every other block but the
+        // last, whose total is not needed.
+        final T[] sums = Arrays.copyOf(array, nBlocks);
+        PCDP.forallChunked(0, nBlocks - 2, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            if (b == 0) {
+                sums[b] = inclusiveScanBlock(array, lo, hi, op);
+            } else {
+                T acc = array[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    acc = op.apply(acc, array[i]);
+                }
+                sums[b] = acc;
+            }
+        });
+        for (int b = 1; b < nBlocks - 1; b++) {
+            sums[b] = op.apply(sums[b - 1], sums[b]);
+        }
+        // Pass 2: scan every other block, starting from the combination of
+        // all blocks before it.
+        PCDP.forallChunked(1, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            T acc = sums[b - 1];
+            for (int i = lo; i < hi; i++) {
+                acc = op.apply(acc, array[i]);
+                array[i] = acc;
+            }
+        });
+    }
+
+    /**
+     * Exclusive scan of an array of objects. Each element is replaced by
+     * the combination of identity and all elements before it, so that
+     * array[0] becomes identity and array[i] becomes
+     * op(identity, array[0], ..., array[i - 1]). op must be associative, and
+     * identity must be an identity of op.
+     *
+     * @param array The array to scan in place.
+     * @param identity The identity of op.
+     * @param op Associative operator combining two elements.
+     * @param <T> Type of the array elements.
+     * @return The combination of identity and all elements of the array, as
+     *         they were before the scan.
+     */
+    public static <T> T exclusiveScan(final T[] array,
+            final T identity, final BinaryOperator<T> op) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            return exclusiveScanBlock(array, 0, n, identity, op);
+        }
+        // Pass 1: scan the first block, and reduce every other block.
+        final T[] sums = Arrays.copyOf(array, nBlocks);
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            if (b == 0) {
+                sums[b] = exclusiveScanBlock(array, lo, hi, identity, op);
+            } else {
+                T acc = array[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    acc = op.apply(acc, array[i]);
+                }
+                sums[b] = acc;
+            }
+        });
+        for (int b = 1; b < nBlocks; b++) {
+            sums[b] = op.apply(sums[b - 1], sums[b]);
+        }
+        // Pass 2: scan every other block, starting from the combination of
+        // all blocks before it.
+        PCDP.forallChunked(1, nBlocks - 1, 1, (b) -> {
+            exclusiveScanBlock(array, blockStart(b, n, nBlocks),
+                    blockStart(b + 1, n, nBlocks), sums[b - 1], op);
+        });
+        return sums[nBlocks - 1];
+    }
+
+    /**
+     * Sort an array of int values into ascending order.
+     *
+     * @param array The array to sort.
+     */
+    public static void sort(final int[] array) {
+        if (array.length <= SORT_CUTOFF) {
+            Arrays.sort(array);
+            return;
+        }
+        final int[] scratch = new int[array.length];
+        PCDP.finish(() -> {
+            mergeSort(array, scratch, 0, array.length, false);
+        });
+    }
+
+    /**
+     * Assign a value to every element of an array of int values.
+     *
+     * @param array The array to fill.
+     * @param value The value to assign.
+     */
+    public static void fill(final int[] array, final int value) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            Arrays.fill(array, value);
+            return;
+        }
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            Arrays.fill(array, blockStart(b, n, nBlocks),
+                    blockStart(b + 1, n, nBlocks), value);
+        });
+    }
+
+    /**
+     * Copy length elements of an array of int values, starting at srcPos,
+     * into another array, starting at destPos. This has the same semantics
+     * as {@link System#arraycopy}, including for overlapping ranges of the
+     * same array, which are copied sequentially.
+     *
+     * @param src The array to copy from.
+     * @param srcPos Index of the first element to copy.
+     * @param dest The array to copy into.
+     * @param destPos Index of the first element to write.
+     * @param length Number of elements to copy.
+     */
+    public static void copy(final int[] src, final int srcPos,
+            final int[] dest, final int destPos, final int length) {
+        final int nBlocks = numBlocks(length);
+        if (nBlocks == 1 || (src == dest
+                    && Math.abs(srcPos - destPos) < length)
+                || srcPos < 0 || destPos < 0
+                || srcPos > src.length - length
+                || destPos > dest.length - length) {
+            System.arraycopy(src, srcPos, dest, destPos, length);
+            return;
+        }
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, length, nBlocks);
+            final int hi = blockStart(b + 1, length, nBlocks);
+            System.arraycopy(src, srcPos + lo, dest, destPos + lo, hi - lo);
+        });
+    }
+
+    /**
+     * Replace each element of an array of int values by the result of
+     * applying a function to it. Iterations are load balanced as by the
+     * adaptive {@link PCDP#forallChunked(int, int, ProcedureInt1D)}, so
+     * the cost of the function may vary between elements.
+     *
+     * @param array The array to update in place.
+     * @param f The function to apply to each element.
+     */
+    public static void map(final int[] array, final IntUnaryOperator f) {
+        if (array.length < MAP_CUTOFF) {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = f.applyAsInt(array[i]);
+            }
+            return;
+        }
+        PCDP.forallChunked(0, array.length - 1, (i) -> {
+            array[i] = f.applyAsInt(array[i]);
+        });
+    }
+
+    /**
+     * Get the elements of an array of int values that satisfy a predicate,
+     * in their order in the array. The predicate is evaluated exactly once
+     * per element.
+     *
+     * @param array The array to filter.
+     * @param p The predicate selecting the elements to keep.
+     * @return A new array holding the selected elements.
+     */
+    public static int[] filter(final int[] array,
+            final IntPredicate p) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            final int[] result = new int[n];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (p.test(array[i])) {
+                    result[count++] = array[i];
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+        // Pass 1: compact each block into a buffer of its own, and compute
+        // where the elements of each block start in the result.
+        final int[][] parts = new int[nBlocks][];
+        final int[] offsets = new int[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            final int[] part = new int[hi - lo];
+            int count = 0;
+            for (int i = lo; i < hi; i++) {
+                if (p.test(array[i])) {
+                    part[count++] = array[i];
+                }
+            }
+            parts[b] = part;
+            offsets[b] = count;
+        });
+        final int total = exclusiveScan(offsets, 0, Integer::sum);
+        // Pass 2: concatenate the buffers.
+        final int[] result = new int[total];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int end = b + 1 < nBlocks ? offsets[b + 1] : total;
+            System.arraycopy(parts[b], 0, result, offsets[b],
+                    end - offsets[b]);
+        });
+        return result;
+    }
+
+    /**
+     * Sort an array of long values into ascending order.
+     *
+     * @param array The array to sort.
+     */
+    public static void sort(final long[] array) {
+        if (array.length <= SORT_CUTOFF) {
+            Arrays.sort(array);
+            return;
+        }
+        final long[] scratch = new long[array.length];
+        PCDP.finish(() -> {
+            mergeSort(array, scratch, 0, array.length, false);
+        });
+    }
+
+    /**
+     * Assign a value to every element of an array of long values.
+     *
+     * @param array The array to fill.
+     * @param value The value to assign.
+     */
+    public static void fill(final long[] array, final long value) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            Arrays.fill(array, value);
+            return;
+        }
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            Arrays.fill(array, blockStart(b, n, nBlocks),
+                    blockStart(b + 1, n, nBlocks), value);
+        });
+    }
+
+    /**
+     * Copy length elements of an array of long values, starting at srcPos,
+     * into another array, starting at destPos. This has the same semantics
+     * as {@link System#arraycopy}, including for overlapping ranges of the
+     * same array, which are copied sequentially.
+     *
+     * @param src The array to copy from.
+     * @param srcPos Index of the first element to copy.
+     * @param dest The array to copy into.
+     * @param destPos Index of the first element to write.
+     * @param length Number of elements to copy.
+     */
+    public static void copy(final long[] src, final int srcPos,
+            final long[] dest, final int destPos, final int length) {
+        final int nBlocks = numBlocks(length);
+        if (nBlocks == 1 || (src == dest
+                    && Math.abs(srcPos - destPos) < length)
+                || srcPos < 0 || destPos < 0
+                || srcPos > src.length - length
+                || destPos > dest.length - length) {
+            System.arraycopy(src, srcPos, dest, destPos, length);
+            return;
+        }
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, length, nBlocks);
+            final int hi = blockStart(b + 1, length, nBlocks);
+            System.arraycopy(src, srcPos + lo, dest, destPos + lo, hi - lo);
+        });
+    }
+
+    /**
+     * Replace each element of an array of long values by the result of
+     * applying a function to it. Iterations are load balanced as by the
+     * adaptive {@link PCDP#forallChunked(int, int, ProcedureInt1D)}, so
+     * the cost of the function may vary between elements.
+     *
+     * @param array The array to update in place.
+     * @param f The function to apply to each element.
+     */
+    public static void map(final long[] array, final LongUnaryOperator f) {
+        if (array.length < MAP_CUTOFF) {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = f.applyAsLong(array[i]);
+            }
+            return;
+        }
+        PCDP.forallChunked(0, array.length - 1, (i) -> {
+            array[i] = f.applyAsLong(array[i]);
+        });
+    }
+
+    /**
+     * Get the elements of an array of long values that satisfy a predicate,
+     * in their order in the array. The predicate is evaluated exactly once
+     * per element.
+     *
+     * @param array The array to filter.
+     * @param p The predicate selecting the elements to keep.
+     * @return A new array holding the selected elements.
+     */
+    public static long[] filter(final long[] array,
+            final LongPredicate p) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            final long[] result = new long[n];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (p.test(array[i])) {
+                    result[count++] = array[i];
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+        // Pass 1: compact each block into a buffer of its own, and compute
+        // where the elements of each block start in the result.
+        final long[][] parts = new long[nBlocks][];
+        final int[] offsets = new int[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            final long[] part = new long[hi - lo];
+            int count = 0;
+            for (int i = lo; i < hi; i++) {
+                if (p.test(array[i])) {
+                    part[count++] = array[i];
+                }
+            }
+            parts[b] = part;
+            offsets[b] = count;
+        });
+        final int total = exclusiveScan(offsets, 0, Integer::sum);
+        // Pass 2: concatenate the buffers.
+        final long[] result = new long[total];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int end = b + 1 < nBlocks ? offsets[b + 1] : total;
+            System.arraycopy(parts[b], 0, result, offsets[b],
+                    end - offsets[b]);
+        });
+        return result;
+    }
+
+    /**
+     * Sort an array of double values into ascending order. Values are
+     * ordered as by {@link Double#compare}, so -0.0 sorts before 0.0 and NaN
+     * last.
+     *
+     * @param array The array to sort.
+     */
+    public static void sort(final double[] array) {
+        if (array.length <= SORT_CUTOFF) {
+            Arrays.sort(array);
+            return;
+        }
+        final double[] scratch = new double[array.length];
+        PCDP.finish(() -> {
+            mergeSort(array, scratch, 0, array.length, false);
+        });
+    }
+
+    /**
+     * Assign a value to every element of an array of double values.
+     *
+     * @param array The array to fill.
+     * @param value The value to assign.
+     */
+    public static void fill(final double[] array, final double value) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            Arrays.fill(array, value);
+            return;
+        }
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            Arrays.fill(array, blockStart(b, n, nBlocks),
+                    blockStart(b + 1, n, nBlocks), value);
+        });
+    }
+
+    /**
+     * Copy length elements of an array of double values, starting at srcPos,
+     * into another array, starting at destPos. This has the same semantics
+     * as {@link System#arraycopy}, including for overlapping ranges of the
+     * same array, which are copied sequentially.
+     *
+     * @param src The array to copy from.
+     * @param srcPos Index of the first element to copy.
+     * @param dest The array to copy into.
+     * @param destPos Index of the first element to write.
+     * @param length Number of elements to copy.
+     */
+    public static void copy(final double[] src, final int srcPos,
+            final double[] dest, final int destPos, final int length) {
+        final int nBlocks = numBlocks(length);
+        if (nBlocks == 1 || (src == dest
+                    && Math.abs(srcPos - destPos) < length)
+                || srcPos < 0 || destPos < 0
+                || srcPos > src.length - length
+                || destPos > dest.length - length) {
+            System.arraycopy(src, srcPos, dest, destPos, length);
+            return;
+        }
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, length, nBlocks);
+            final int hi = blockStart(b + 1, length, nBlocks);
+            System.arraycopy(src, srcPos + lo, dest, destPos + lo, hi - lo);
+        });
+    }
+
+    /**
+     * Replace each element of an array of double values by the result of
+     * applying a function to it. Iterations are load balanced as by the
+     * adaptive {@link PCDP#forallChunked(int, int, ProcedureInt1D)}, so
+     * the cost of the function may vary between elements.
+     *
+     * @param array The array to update in place.
+     * @param f The function to apply to each element.
+     */
+    public static void map(final double[] array, final DoubleUnaryOperator f) {
+        if (array.length < MAP_CUTOFF) {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = f.applyAsDouble(array[i]);
+            }
+            return;
+        }
+        PCDP.forallChunked(0, array.length - 1, (i) -> {
+            array[i] = f.applyAsDouble(array[i]);
+        });
+    }
+
+    /**
+     * Get the elements of an array of double values that satisfy a predicate,
+     * in their order in the array. The predicate is evaluated exactly once
+     * per element.
+     *
+     * @param array The array to filter.
+     * @param p The predicate selecting the elements to keep.
+     * @return A new array holding the selected elements.
+     */
+    public static double[] filter(final double[] array,
+            final DoublePredicate p) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            final double[] result = new double[n];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (p.test(array[i])) {
+                    result[count++] = array[i];
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+        // Pass 1: compact each block into a buffer of its own, and compute
+        // where the elements of each block start in the result.
+        final double[][] parts = new double[nBlocks][];
+        final int[] offsets = new int[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            final double[] part = new double[hi - lo];
+            int count = 0;
+            for (int i = lo; i < hi; i++) {
+                if (p.test(array[i])) {
+                    part[count++] = array[i];
+                }
+            }
+            parts[b] = part;
+            offsets[b] = count;
+        });
+        final int total = exclusiveScan(offsets, 0, Integer::sum);
+        // Pass 2: concatenate the buffers.
+        final double[] result = new double[total];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int end = b + 1 < nBlocks ? offsets[b + 1] : total;
+            System.arraycopy(parts[b], 0, result, offsets[b],
+                    end - offsets[b]);
+        });
+        return result;
+    }
+
+    /**
+     * Sort an array of comparable objects into ascending order, as
+     * {@link #sort(Object[], Comparator)} does with their natural order.
+     *
+     * @param array The array to sort.
+     * @param <T> Type of the array elements.
+     */
+    public static <T extends Comparable<? super T>> void sort(
+            final T[] array) {
+        sort(array, Comparator.naturalOrder());
+    }
+
+    /**
+     * Sort an array of objects into the order defined by a comparator. The
+     * sort is stable: equal elements keep their relative order.
+     *
+     * @param array The array to sort.
+     * @param cmp Comparator defining the order of the elements.
+     * @param <T> Type of the array elements.
+     */
+    public static <T> void sort(final T[] array,
+            final Comparator<? super T> cmp) {
+        if (array.length <= SORT_CUTOFF) {
+            Arrays.sort(array, cmp);
+            return;
+        }
+        final T[] scratch = Arrays.copyOf(array, array.length);
+        PCDP.finish(() -> {
+            mergeSort(array, scratch, 0, array.length, false, cmp);
+        });
+    }
+
+    /**
+     * Assign a value to every element of an array of objects.
+     *
+     * @param array The array to fill.
+     * @param value The value to assign.
+     * @param <T> Type of the array elements.
+     */
+    public static <T> void fill(final T[] array, final T value) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        if (nBlocks == 1) {
+            Arrays.fill(array, value);
+            return;
+        }
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            Arrays.fill(array, blockStart(b, n, nBlocks),
+                    blockStart(b + 1, n, nBlocks), value);
+        });
+    }
+
+    /**
+     * Copy length elements of an array of objects, starting at srcPos,
+     * into another array, starting at destPos. This has the same semantics
+     * as {@link System#arraycopy}, including for overlapping ranges of the
+     * same array, which are copied sequentially.
+     *
+     * @param src The array to copy from.
+     * @param srcPos Index of the first element to copy.
+     * @param dest The array to copy into.
+     * @param destPos Index of the first element to write.
+     * @param length Number of elements to copy.
+     * @param <T> Type of the array elements.
+     */
+    public static <T> void copy(final T[] src, final int srcPos,
+            final T[] dest, final int destPos, final int length) {
+        final int nBlocks = numBlocks(length);
+        if (nBlocks == 1 || (src == dest
+                    && Math.abs(srcPos - destPos) < length)
+                || srcPos < 0 || destPos < 0
+                || srcPos > src.length - length
+                || destPos > dest.length - length) {
+            System.arraycopy(src, srcPos, dest, destPos, length);
+            return;
+        }
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, length, nBlocks);
+            final int hi = blockStart(b + 1, length, nBlocks);
+            System.arraycopy(src, srcPos + lo, dest, destPos + lo, hi - lo);
+        });
+    }
+
+    /**
+     * Replace each element of an array of objects by the result of
+     * applying a function to it. Iterations are load balanced as by the
+     * adaptive {@link PCDP#forallChunked(int, int, ProcedureInt1D)}, so
+     * the cost of the function may vary between elements.
+     *
+     * @param array The array to update in place.
+     * @param f The function to apply to each element.
+     * @param <T> Type of the array elements.
+     */
+    public static <T> void map(final T[] array, final UnaryOperator<T> f) {
+        if (array.length < MAP_CUTOFF) {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = f.apply(array[i]);
+            }
+            return;
+        }
+        PCDP.forallChunked(0, array.length - 1, (i) -> {
+            array[i] = f.apply(array[i]);
+        });
+    }
+
+    /**
+     * Get the elements of an array of objects that satisfy a predicate,
+     * in their order in the array. The predicate is evaluated exactly once
+     * per element.
+     *
+     * @param array The array to filter.
+     * @param p The predicate selecting the elements to keep.
+     * @param <T> Type of the array elements.
+     * @return A new array holding the selected elements.
+     */
+    public static <T> T[] filter(final T[] array,
+            final Predicate<? super T> p) {
+        final int n = array.length;
+        final int nBlocks = numBlocks(n);
+        // An empty array of the runtime type of array, to allocate arrays
+        // of that type from without copying elements.
+        final T[] empty = Arrays.copyOf(array, 0);
+        if (nBlocks == 1) {
+            final T[] result = Arrays.copyOf(empty, n);
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (p.test(array[i])) {
+                    result[count++] = array[i];
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+        // Pass 1: compact each block into a buffer of its own, and compute
+        // where the elements of each block start in the result.
+        final Object[][] parts = new Object[nBlocks][];
+        final int[] offsets = new int[nBlocks];
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int lo = blockStart(b, n, nBlocks);
+            final int hi = blockStart(b + 1, n, nBlocks);
+            final Object[] part = new Object[hi - lo];
+            int count = 0;
+            for (int i = lo; i < hi; i++) {
+                if (p.test(array[i])) {
+                    part[count++] = array[i];
+                }
+            }
+            parts[b] = part;
+            offsets[b] = count;
+        });
+        final int total = exclusiveScan(offsets, 0, Integer::sum);
+        // Pass 2: concatenate the buffers.
+        final T[] result = Arrays.copyOf(empty, total);
+        PCDP.forallChunked(0, nBlocks - 1, 1, (b) -> {
+            final int end = b + 1 < nBlocks ? offsets[b + 1] : total;
+            System.arraycopy(parts[b], 0, result, offsets[b],
+                    end - offsets[b]);
+        });
+        return result;
+    }
+
+    /**
+     * Sequentially scan the elements of array in [lo, hi), inclusively.
+     *
+     * @param array The array to scan in place.
+     * @param lo First element to scan (inclusive), less than hi.
+     * @param hi Last element to scan (exclusive).
+     * @param op Associative operator combining two elements.
+     * @return The combination of all scanned elements.
+     */
+    private static int inclusiveScanBlock(final int[] array,
+            final int lo, final int hi, final IntBinaryOperator op) {
+        int acc = array[lo];
+        for (int i = lo + 1; i < hi; i++) {
+            acc = op.applyAsInt(acc, array[i]);
+            array[i] = acc;
+        }
+        return acc;
+    }
+
+    /**
+     * Sequentially scan the elements of array in [lo, hi), exclusively,
+     * starting from init.
+     *
+     * @param array The array to scan in place.
+     * @param lo First element to scan (inclusive).
+     * @param hi Last element to scan (exclusive).
+     * @param init Value the first scanned element is replaced with.
+     * @param op Associative operator combining two elements.
+     * @return The combination of init and all scanned elements.
+     */
+    private static int exclusiveScanBlock(final int[] array,
+            final int lo, final int hi, final int init,
+            final IntBinaryOperator op) {
+        int acc = init;
+        for (int i = lo; i < hi; i++) {
+            final int value = array[i];
+            array[i] = acc;
+            acc = op.applyAsInt(acc, value);
+        }
+        return acc;
+    }
+
+    /**
+     * Sequentially scan the elements of array in [lo, hi), inclusively.
+     *
+     * @param array The array to scan in place.
+     * @param lo First element to scan (inclusive), less than hi.
+     * @param hi Last element to scan (exclusive).
+     * @param op Associative operator combining two elements.
+     * @return The combination of all scanned elements.
+     */
+    private static long inclusiveScanBlock(final long[] array,
+            final int lo, final int hi, final LongBinaryOperator op) {
+        long acc = array[lo];
+        for (int i = lo + 1; i < hi; i++) {
+            acc = op.applyAsLong(acc, array[i]);
+            array[i] = acc;
+        }
+        return acc;
+    }
+
+    /**
+     * Sequentially scan the elements of array in [lo, hi), exclusively,
+     * starting from init.
+     *
+     * @param array The array to scan in place.
+     * @param lo First element to scan (inclusive).
+     * @param hi Last element to scan (exclusive).
+     * @param init Value the first scanned element is replaced with.
+     * @param op Associative operator combining two elements.
+     * @return The combination of init and all scanned elements.
+     */
+    private static long exclusiveScanBlock(final long[] array,
+            final int lo, final int hi, final long init,
+            final LongBinaryOperator op) {
+        long acc = init;
+        for (int i = lo; i < hi; i++) {
+            final long value = array[i];
+            array[i] = acc;
+            acc = op.applyAsLong(acc, value);
+        }
+        return acc;
+    }
+
+    /**
+     * Sequentially scan the elements of array in [lo, hi), inclusively.
+     *
+     * @param array The array to scan in place.
+     * @param lo First element to scan (inclusive), less than hi.
+     * @param hi Last element to scan (exclusive).
+     * @param op Associative operator combining two elements.
+     * @return The combination of all scanned elements.
+     */
+    private static double inclusiveScanBlock(final double[] array,
+            final int lo, final int hi, final DoubleBinaryOperator op) {
+        double acc = array[lo];
+        for (int i = lo + 1; i < hi; i++) {
+            acc = op.applyAsDouble(acc, array[i]);
+            array[i] = acc;
+        }
+        return acc;
+    }
+
+    /**
+     * Sequentially scan the elements of array in [lo, hi), exclusively,
+     * starting from init.
+     *
+     * @param array The array to scan in place.
+     * @param lo First element to scan (inclusive).
+     * @param hi Last element to scan (exclusive).
+     * @param init Value the first scanned element is replaced with.
+     * @param op Associative operator combining two elements.
+     * @return The combination of init and all scanned elements.
+     */
+    private static double exclusiveScanBlock(final double[] array,
+            final int lo, final int hi, final double init,
+            final DoubleBinaryOperator op) {
+        double acc = init;
+        for (int i = lo; i < hi; i++) {
+            final double value = array[i];
+            array[i] = acc;
+            acc = op.applyAsDouble(acc, value);
+        }
+        return acc;
+    }
+
+    /**
+     * Sequentially scan the elements of array in [lo, hi), inclusively.
+     *
+     * @param array The array to scan in place.
+     * @param lo First element to scan (inclusive), less than hi.
+     * @param hi Last element to scan (exclusive).
+     * @param op Associative operator combining two elements.
+     * @param <T> Type of the array elements.
+     * @return The combination of all scanned elements.
+     */
+    private static <T> T inclusiveScanBlock(final T[] array,
+            final int lo, final int hi, final BinaryOperator<T> op) {
+        T acc = array[lo];
+        for (int i = lo + 1; i < hi; i++) {
+            acc = op.apply(acc, array[i]);
+            array[i] = acc;
+        }
+        return acc;
+    }
+
+    /**
+     * Sequentially scan the elements of array in [lo, hi), exclusively,
+     * starting from init.
+     *
+     * @param array The array to scan in place.
+     * @param lo First element to scan (inclusive).
+     * @param hi Last element to scan (exclusive).
+     * @param init Value the first scanned element is replaced with.
+     * @param op Associative operator combining two elements.
+     * @param <T> Type of the array elements.
+     * @return The combination of init and all scanned elements.
+     */
+    private static <T> T exclusiveScanBlock(final T[] array,
+            final int lo, final int hi, final T init,
+            final BinaryOperator<T> op) {
+        T acc = init;
+        for (int i = lo; i < hi; i++) {
+            final T value = array[i];
+            array[i] = acc;
+            acc = op.apply(acc, value);
+        }
+        return acc;
+    }
+
+    /**
+     * Sort the elements of src in [lo, hi) by recursively sorting both
+     * halves in parallel and merging them. src and dest hold the same
+     * elements in that range on entry, and the sorted elements are left in
+     * dest if toDest is set, or in src otherwise. Each level of the
+     * recursion leaves its halves in the array it does not merge into, so no
+     * level copies elements back.
+     *
+     * @param src The array to sort.
+     * @param dest The scratch array.
+     * @param lo First element to sort (inclusive).
+     * @param hi Last element to sort (exclusive).
+     * @param toDest Whether to leave the sorted elements in dest.
+     */
+    private static void mergeSort(final int[] src, final int[] dest,
+            final int lo, final int hi, final boolean toDest) {
+        if (hi - lo <= SORT_CUTOFF) {
+            Arrays.sort(src, lo, hi);
+            if (toDest) {
+                System.arraycopy(src, lo, dest, lo, hi - lo);
+            }
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        final Future<?> lower = PCDP.future(() -> {
+            mergeSort(src, dest, lo, mid, !toDest);
+            return null;
+        });
+        mergeSort(src, dest, mid, hi, !toDest);
+        join(lower);
+        if (toDest) {
+            merge(src, lo, mid, mid, hi, dest, lo);
+        } else {
+            merge(dest, lo, mid, mid, hi, src, lo);
+        }
+    }
+
+    /**
+     * Merge the sorted runs [lo1, hi1) and [lo2, hi2) of from into to,
+     * starting at out. Large merges are split in two independent merges by
+     * taking the middle element of the longer run and binary searching for
+     * its position in the other run, and the two are then merged in
+     * parallel. Elements of the first run precede equal elements of the
+     * second.
+     *
+     * @param from The array holding both runs.
+     * @param lo1 First element of the first run (inclusive).
+     * @param hi1 Last element of the first run (exclusive).
+     * @param lo2 First element of the second run (inclusive).
+     * @param hi2 Last element of the second run (exclusive).
+     * @param to The array to merge into.
+     * @param out Index of to where the merged elements start.
+     */
+    private static void merge(final int[] from, final int lo1,
+            final int hi1, final int lo2, final int hi2, final int[] to,
+            final int out) {
+        if ((hi1 - lo1) + (hi2 - lo2) <= MERGE_CUTOFF) {
+            int i = lo1;
+            int j = lo2;
+            int k = out;
+            while (i < hi1 && j < hi2) {
+                if (from[j] < from[i]) {
+                    to[k++] = from[j++];
+                } else {
+                    to[k++] = from[i++];
+                }
+            }
+            System.arraycopy(from, i, to, k, hi1 - i);
+            System.arraycopy(from, j, to, k + (hi1 - i), hi2 - j);
+            return;
+        }
+        final int mid1;
+        final int mid2;
+        if (hi1 - lo1 >= hi2 - lo2) {
+            // Split at the middle of the first run, and before all elements
+            // of the second run that are not less than it.
+            mid1 = (lo1 + hi1) >>> 1;
+            int a = lo2;
+            int b = hi2;
+            while (a < b) {
+                final int m = (a + b) >>> 1;
+                if (from[m] < from[mid1]) {
+                    a = m + 1;
+                } else {
+                    b = m;
+                }
+            }
+            mid2 = a;
+        } else {
+            // Split at the middle of the second run, and after all elements
+            // of the first run that are not greater than it.
+            mid2 = (lo2 + hi2) >>> 1;
+            int a = lo1;
+            int b = hi1;
+            while (a < b) {
+                final int m = (a + b) >>> 1;
+                if (from[mid2] < from[m]) {
+                    b = m;
+                } else {
+                    a = m + 1;
+                }
+            }
+            mid1 = a;
+        }
+        final Future<?> lower = PCDP.future(() -> {
+            merge(from, lo1, mid1, lo2, mid2, to, out);
+            return null;
+        });
+        merge(from, mid1, hi1, mid2, hi2, to,
+                out + (mid1 - lo1) + (mid2 - lo2));
+        join(lower);
+    }
+
+    /**
+     * Sort the elements of src in [lo, hi) by recursively sorting both
+     * halves in parallel and merging them. src and dest hold the same
+     * elements in that range on entry, and the sorted elements are left in
+     * dest if toDest is set, or in src otherwise. Each level of the
+     * recursion leaves its halves in the array it does not merge into, so no
+     * level copies elements back.
+     *
+     * @param src The array to sort.
+     * @param dest The scratch array.
+     * @param lo First element to sort (inclusive).
+     * @param hi Last element to sort (exclusive).
+     * @param toDest Whether to leave the sorted elements in dest.
+     */
+    private static void mergeSort(final long[] src, final long[] dest,
+            final int lo, final int hi, final boolean toDest) {
+        if (hi - lo <= SORT_CUTOFF) {
+            Arrays.sort(src, lo, hi);
+            if (toDest) {
+                System.arraycopy(src, lo, dest, lo, hi - lo);
+            }
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        final Future<?> lower = PCDP.future(() -> {
+            mergeSort(src, dest, lo, mid, !toDest);
+            return null;
+        });
+        mergeSort(src, dest, mid, hi, !toDest);
+        join(lower);
+        if (toDest) {
+            merge(src, lo, mid, mid, hi, dest, lo);
+        } else {
+            merge(dest, lo, mid, mid, hi, src, lo);
+        }
+    }
+
+    /**
+     * Merge the sorted runs [lo1, hi1) and [lo2, hi2) of from into to,
+     * starting at out. Large merges are split in two independent merges by
+     * taking the middle element of the longer run and binary searching for
+     * its position in the other run, and the two are then merged in
+     * parallel. Elements of the first run precede equal elements of the
+     * second.
+     *
+     * @param from The array holding both runs.
+     * @param lo1 First element of the first run (inclusive).
+     * @param hi1 Last element of the first run (exclusive).
+     * @param lo2 First element of the second run (inclusive).
+     * @param hi2 Last element of the second run (exclusive).
+     * @param to The array to merge into.
+     * @param out Index of to where the merged elements start.
+     */
+    private static void merge(final long[] from, final int lo1,
+            final int hi1, final int lo2, final int hi2, final long[] to,
+            final int out) {
+        if ((hi1 - lo1) + (hi2 - lo2) <= MERGE_CUTOFF) {
+            int i = lo1;
+            int j = lo2;
+            int k = out;
+            while (i < hi1 && j < hi2) {
+                if (from[j] < from[i]) {
+                    to[k++] = from[j++];
+                } else {
+                    to[k++] = from[i++];
+                }
+            }
+            System.arraycopy(from, i, to, k, hi1 - i);
+            System.arraycopy(from, j, to, k + (hi1 - i), hi2 - j);
+            return;
+        }
+        final int mid1;
+        final int mid2;
+        if (hi1 - lo1 >= hi2 - lo2) {
+            // Split at the middle of the first run, and before all elements
+            // of the second run that are not less than it.
+            mid1 = (lo1 + hi1) >>> 1;
+            int a = lo2;
+            int b = hi2;
+            while (a < b) {
+                final int m = (a + b) >>> 1;
+                if (from[m] < from[mid1]) {
+                    a = m + 1;
+                } else {
+                    b = m;
+                }
+            }
+            mid2 = a;
+        } else {
+            // Split at the middle of the second run, and after all elements
+            // of the first run that are not greater than it.
+            mid2 = (lo2 + hi2) >>> 1;
+            int a = lo1;
+            int b = hi1;
+            while (a < b) {
+                final int m = (a + b) >>> 1;
+                if (from[mid2] < from[m]) {
+                    b = m;
+                } else {
+                    a = m + 1;
+                }
+            }
+            mid1 = a;
+        }
+        final Future<?> lower = PCDP.future(() -> {
+            merge(from, lo1, mid1, lo2, mid2, to, out);
+            return null;
+        });
+        merge(from, mid1, hi1, mid2, hi2, to,
+                out + (mid1 - lo1) + (mid2 - lo2));
+        join(lower);
+    }
+
+    /**
+     * Sort the elements of src in [lo, hi) by recursively sorting both
+     * halves in parallel and merging them. src and dest hold the same
+     * elements in that range on entry, and the sorted elements are left in
+     * dest if toDest is set, or in src otherwise. Each level of the
+     * recursion leaves its halves in the array it does not merge into, so no
+     * level copies elements back.
+     *
+     * @param src The array to sort.
+     * @param dest The scratch array.
+     * @param lo First element to sort (inclusive).
+     * @param hi Last element to sort (exclusive).
+     * @param toDest Whether to leave the sorted elements in dest.
+     */
+    private static void mergeSort(final double[] src, final double[] dest,
+            final int lo, final int hi, final boolean toDest) {
+        if (hi - lo <= SORT_CUTOFF) {
+            Arrays.sort(src, lo, hi);
+            if (toDest) {
+                System.arraycopy(src, lo, dest, lo, hi - lo);
+            }
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        final Future<?> lower = PCDP.future(() -> {
+            mergeSort(src, dest, lo, mid, !toDest);
+            return null;
+        });
+        mergeSort(src, dest, mid, hi, !toDest);
+        join(lower);
+        if (toDest) {
+            merge(src, lo, mid, mid, hi, dest, lo);
+        } else {
+            merge(dest, lo, mid, mid, hi, src, lo);
+        }
+    }
+
+    /**
+     * Merge the sorted runs [lo1, hi1) and [lo2, hi2) of from into to,
+     * starting at out. Large merges are split in two independent merges by
+     * taking the middle element of the longer run and binary searching for
+     * its position in the other run, and the two are then merged in
+     * parallel. Elements of the first run precede equal elements of the
+     * second.
+     *
+     * @param from The array holding both runs.
+     * @param lo1 First element of the first run (inclusive).
+     * @param hi1 Last element of the first run (exclusive).
+     * @param lo2 First element of the second run (inclusive).
+     * @param hi2 Last element of the second run (exclusive).
+     * @param to The array to merge into.
+     * @param out Index of to where the merged elements start.
+     */
+    private static void merge(final double[] from, final int lo1,
+            final int hi1, final int lo2, final int hi2, final double[] to,
+            final int out) {
+        if ((hi1 - lo1) + (hi2 - lo2) <= MERGE_CUTOFF) {
+            int i = lo1;
+            int j = lo2;
+            int k = out;
+            while (i < hi1 && j < hi2) {
+                if (Double.compare(from[j], from[i]) < 0) {
+                    to[k++] = from[j++];
+                } else {
+                    to[k++] = from[i++];
+                }
+            }
+            System.arraycopy(from, i, to, k, hi1 - i);
+            System.arraycopy(from, j, to, k + (hi1 - i), hi2 - j);
+            return;
+        }
+        final int mid1;
+        final int mid2;
+        if (hi1 - lo1 >= hi2 - lo2) {
+            // Split at the middle of the first run, and before all elements
+            // of the second run that are not less than it.
+            mid1 = (lo1 + hi1) >>> 1;
+            int a = lo2;
+            int b = hi2;
+            while (a < b) {
+                final int m = (a + b) >>> 1;
+                if (Double.compare(from[m], from[mid1]) < 0) {
+                    a = m + 1;
+                } else {
+                    b = m;
+                }
+            }
+            mid2 = a;
+        } else {
+            // Split at the middle of the second run, and after all elements
+            // of the first run that are not greater than it.
+            mid2 = (lo2 + hi2) >>> 1;
+            int a = lo1;
+            int b = hi1;
+            while (a < b) {
+                final int m = (a + b) >>> 1;
+                if (Double.compare(from[mid2], from[m]) < 0) {
+                    b = m;
+                } else {
+                    a = m + 1;
+                }
+            }
+            mid1 = a;
+        }
+        final Future<?> lower = PCDP.future(() -> {
+            merge(from, lo1, mid1, lo2, mid2, to, out);
+            return null;
+        });
+        merge(from, mid1, hi1, mid2, hi2, to,
+                out + (mid1 - lo1) + (mid2 - lo2));
+        join(lower);
+    }
+
+    /**
+     * Sort the elements of src in [lo, hi) by recursively sorting both
+     * halves in parallel and merging them. src and dest hold the same
+     * elements in that range on entry, and the sorted elements are left in
+     * dest if toDest is set, or in src otherwise. Each level of the
+     * recursion leaves its halves in the array it does not merge into, so no
+     * level copies elements back.
+     *
+     * @param src The array to sort.
+     * @param dest The scratch array.
+     * @param lo First element to sort (inclusive).
+     * @param hi Last element to sort (exclusive).
+     * @param toDest Whether to leave the sorted elements in dest.
+     * @param cmp Comparator defining the order of the elements.
+     * @param <T> Type of the array elements.
+     */
+    private static <T> void mergeSort(final T[] src, final T[] dest,
+            final int lo, final int hi, final boolean toDest,
+            final Comparator<? super T> cmp) {
+        if (hi - lo <= SORT_CUTOFF) {
+            Arrays.sort(src, lo, hi, cmp);
+            if (toDest) {
+                System.arraycopy(src, lo, dest, lo, hi - lo);
+            }
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        final Future<?> lower = PCDP.future(() -> {
+            mergeSort(src, dest, lo, mid, !toDest, cmp);
+            return null;
+        });
+        mergeSort(src, dest, mid, hi, !toDest, cmp);
+        join(lower);
+        if (toDest) {
+            merge(src, lo, mid, mid, hi, dest, lo, cmp);
+        } else {
+            merge(dest, lo, mid, mid, hi, src, lo, cmp);
+        }
+    }
+
+    /**
+     * Merge the sorted runs [lo1, hi1) and [lo2, hi2) of from into to,
+     * starting at out. Large merges are split in two independent merges by
+     * taking the middle element of the longer run and binary searching for
+     * its position in the other run, and the two are then merged in
+     * parallel. Elements of the first run precede equal elements of the
+     * second.
+     *
+     * @param from The array holding both runs.
+     * @param lo1 First element of the first run (inclusive).
+     * @param hi1 Last element of the first run (exclusive).
+     * @param lo2 First element of the second run (inclusive).
+     * @param hi2 Last element of the second run (exclusive).
+     * @param to The array to merge into.
+     * @param out Index of to where the merged elements start.
+     * @param cmp Comparator defining the order of the elements.
+     * @param <T> Type of the array elements.
+     */
+    private static <T> void merge(final T[] from, final int lo1,
+            final int hi1, final int lo2, final int hi2, final T[] to,
+            final int out,
+            final Comparator<? super T> cmp) {
+        if ((hi1 - lo1) + (hi2 - lo2) <= MERGE_CUTOFF) {
+            int i = lo1;
+            int j = lo2;
+            int k = out;
+            while (i < hi1 && j < hi2) {
+                if (cmp.compare(from[j], from[i]) < 0) {
+                    to[k++] = from[j++];
+                } else {
+                    to[k++] = from[i++];
+                }
+            }
+            System.arraycopy(from, i, to, k, hi1 - i);
+            System.arraycopy(from, j, to, k + (hi1 - i), hi2 - j);
+            return;
+        }
+        final int mid1;
+        final int mid2;
+        if (hi1 - lo1 >= hi2 - lo2) {
+            // Split at the middle of the first run, and before all elements
+            // of the second run that are not less than it.
+            mid1 = (lo1 + hi1) >>> 1;
+            int a = lo2;
+            int b = hi2;
+            while (a < b) {
+                final int m = (a + b) >>> 1;
+                if (cmp.compare(from[m], from[mid1]) < 0) {
+                    a = m + 1;
+                } else {
+                    b = m;
+                }
+            }
+            mid2 = a;
+        } else {
+            // Split at the middle of the second run, and after all elements
+            // of the first run that are not greater than it.
+            mid2 = (lo2 + hi2) >>> 1;
+            int a = lo1;
+            int b = hi1;
+            while (a < b) {
+                final int m = (a + b) >>> 1;
+                if (cmp.compare(from[mid2], from[m]) < 0) {
+                    b = m;
+                } else {
+                    a = m + 1;
+                }
+            }
+            mid1 = a;
+        }
+        final Future<?> lower = PCDP.future(() -> {
+            merge(from, lo1, mid1, lo2, mid2, to, out, cmp);
+            return null;
+        });
+        merge(from, mid1, hi1, mid2, hi2, to,
+                out + (mid1 - lo1) + (mid2 - lo2), cmp);
+        join(lower);
+    }
+
+    /**
+     * Wait for a future created by {@link PCDP#future} to complete, and
+     * rethrow the unchecked exception its body threw, if any. Unlike waiting
+     * for a nested finish, joining a future executes it on the calling worker
+     * if no other worker has started it yet, so recursive algorithms do not
+     * block a worker at every level.
+     *
+     * @param future The future to wait for.
+     */
+    private static void join(final Future<?> future) {
+        try {
+            ((CompletableFuture<?>) future).join();
+        } catch (final CompletionException ce) {
+            final Throwable cause = ce.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ce;
+        }
+    }
+
+    /**
+     * Get the number of blocks to divide an array into for the algorithms
+     * whose cost is the same for every element: one per worker of the
+     * runtime, as they gain nothing from load balancing finer than that, but
+     * no more than leaves each block with BLOCK_MIN elements.
+     *
+     * @param n Number of elements of the array.
+     * @return Number of blocks, at least one.
+     */
+    private static int numBlocks(final int n) {
+        if (n < 2 * BLOCK_MIN) {
+            return 1;
+        }
+        return Math.min(PCDP.numThreads(), n / BLOCK_MIN);
+    }
+
+    /**
+     * Get the index of the first element of a block, when dividing n elements
+     * into nBlocks blocks of nearly equal size.
+     *
+     * @param block Index of the block, from 0 to nBlocks (which gives n).
+     * @param n Number of elements.
+     * @param nBlocks Number of blocks.
+     * @return Index of the first element of the block.
+     */
+    private static int blockStart(final int block, final int n,
+            final int nBlocks) {
+        return (int) ((long) block * n / nBlocks);
+    }
+}
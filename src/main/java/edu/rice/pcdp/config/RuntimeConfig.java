@@ -0,0 +1,612 @@
+package edu.rice.pcdp.config;
+
+import java.util.Locale;
+
+/**
+ * An immutable snapshot of all the settings of a PCDP runtime. A runtime
+ * reads its configuration once when it is created, so that its hot paths
+ * read final fields rather than system properties.
+ * <p>
+ * {@link #fromSystemProperties()} reads every setting from its
+ * {@link SystemProperty}. Individual settings can be overridden with a
+ * {@link Builder}, obtained from {@link #newBuilder()} or
+ * {@link #toBuilder()}:
+ *
+ * <pre>
+ * new PCDPRuntime(RuntimeConfig.newBuilder()
+ *     .numWorkers(4)
+ *     .isolatedLocks(1024)
+ *     .build());
+ * </pre>
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class RuntimeConfig {
+
+    /**
+     * Number of worker threads.
+     */
+    private final int numWorkers;
+    /**
+     * Name of the scheduler executing tasks.
+     */
+    private final String scheduler;
+    /**
+     * Whether the forkjoin scheduler runs local tasks in FIFO order.
+     */
+    private final boolean asyncMode;
+    /**
+     * Chunks per worker of parallel loops that are not explicitly chunked.
+     */
+    private final int loopChunksPerWorker;
+    /**
+     * Chunks per worker of adaptively chunked parallel loops.
+     */
+    private final int adaptiveChunksPerWorker;
+    /**
+     * Surplus queued task count below which adaptive loops split.
+     */
+    private final int splitSurplusThreshold;
+    /**
+     * Surplus queued task count above which spawns are inlined, or 0.
+     */
+    private final int inlineQueueDepth;
+    /**
+     * Task stack depth from which spawns are inlined, or 0.
+     */
+    private final int inlineTaskDepth;
+    /**
+     * Number of locks striping object-based isolation.
+     */
+    private final int isolatedLocks;
+    /**
+     * Name of the implementation of global isolation.
+     */
+    private final String isolationMode;
+    /**
+     * Messages an actor processes per task, or 0 for no limit.
+     */
+    private final int actorBatchSize;
+    /**
+     * Whether the worker pool is resized based on utilization.
+     */
+    private final boolean elastic;
+    /**
+     * Lower bound on the number of workers in elastic mode.
+     */
+    private final int minWorkers;
+    /**
+     * Upper bound on the number of workers in elastic mode.
+     */
+    private final int maxWorkers;
+    /**
+     * Milliseconds between utilization samples in elastic mode.
+     */
+    private final int elasticPeriodMs;
+
+    /**
+     * Constructor, validating the settings of builder.
+     *
+     * @param builder The settings to use.
+     */
+    private RuntimeConfig(final Builder builder) {
+        this.numWorkers = positive("numWorkers", builder.numWorkers);
+        this.scheduler = builder.scheduler.trim().toLowerCase(Locale.ROOT);
+        this.asyncMode = builder.asyncMode;
+        this.loopChunksPerWorker = positive("loopChunksPerWorker",
+                builder.loopChunksPerWorker);
+        this.adaptiveChunksPerWorker = positive("adaptiveChunksPerWorker",
+                builder.adaptiveChunksPerWorker);
+        this.splitSurplusThreshold = nonNegative("splitSurplusThreshold",
+                builder.splitSurplusThreshold);
+        this.inlineQueueDepth = nonNegative("inlineQueueDepth",
+                builder.inlineQueueDepth);
+        this.inlineTaskDepth = nonNegative("inlineTaskDepth",
+                builder.inlineTaskDepth);
+        this.isolatedLocks = positive("isolatedLocks", builder.isolatedLocks);
+        this.isolationMode = builder.isolationMode.trim()
+            .toLowerCase(Locale.ROOT);
+        this.actorBatchSize = nonNegative("actorBatchSize",
+                builder.actorBatchSize);
+        this.elastic = builder.elastic;
+        this.minWorkers = positive("minWorkers", builder.minWorkers);
+        this.maxWorkers = positive("maxWorkers", builder.maxWorkers);
+        if (maxWorkers < minWorkers) {
+            throw new IllegalArgumentException("maxWorkers (" + maxWorkers
+                    + ") must not be less than minWorkers (" + minWorkers
+                    + ")");
+        }
+        this.elasticPeriodMs = positive("elasticPeriodMs",
+                builder.elasticPeriodMs);
+    }
+
+    /**
+     * Check that a setting is positive.
+     *
+     * @param name Name of the setting.
+     * @param value Value of the setting.
+     * @return value.
+     */
+    private static int positive(final String name, final int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name
+                    + " must be positive, got " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Check that a setting is not negative.
+     *
+     * @param name Name of the setting.
+     * @param value Value of the setting.
+     * @return value.
+     */
+    private static int nonNegative(final String name, final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name
+                    + " must not be negative, got " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Read a configuration from the current values of the system properties
+     * listed in {@link SystemProperty}.
+     *
+     * @return A new configuration.
+     */
+    public static RuntimeConfig fromSystemProperties() {
+        return new Builder().build();
+    }
+
+    /**
+     * Create a builder initialized from the current values of the system
+     * properties.
+     *
+     * @return A new builder.
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Create a builder initialized with the settings of this configuration.
+     *
+     * @return A new builder.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return Number of worker threads.
+     * @see SystemProperty#numWorkers
+     */
+    public int numWorkers() {
+        return numWorkers;
+    }
+
+    /**
+     * @return Name of the scheduler executing tasks, in lower case.
+     * @see SystemProperty#scheduler
+     */
+    public String scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return Whether the forkjoin scheduler runs local tasks in FIFO order.
+     * @see SystemProperty#asyncMode
+     */
+    public boolean asyncMode() {
+        return asyncMode;
+    }
+
+    /**
+     * @return Number of chunks per worker that parallel loops which are not
+     *         explicitly chunked split their iterations into.
+     * @see SystemProperty#loopChunksPerWorker
+     */
+    public int loopChunksPerWorker() {
+        return loopChunksPerWorker;
+    }
+
+    /**
+     * @return Number of chunks per worker that adaptively chunked parallel
+     *         loops split their iterations into.
+     * @see SystemProperty#adaptiveChunksPerWorker
+     */
+    public int adaptiveChunksPerWorker() {
+        return adaptiveChunksPerWorker;
+    }
+
+    /**
+     * @return Surplus queued task count below which adaptively chunked
+     *         loops split off work for idle workers.
+     * @see SystemProperty#splitSurplusThreshold
+     */
+    public int splitSurplusThreshold() {
+        return splitSurplusThreshold;
+    }
+
+    /**
+     * @return Surplus queued task count above which async and future run
+     *         their body inline, or 0 if disabled.
+     * @see SystemProperty#inlineQueueDepth
+     */
+    public int inlineQueueDepth() {
+        return inlineQueueDepth;
+    }
+
+    /**
+     * @return Task stack depth from which async and future run their body
+     *         inline, or 0 if disabled.
+     * @see SystemProperty#inlineTaskDepth
+     */
+    public int inlineTaskDepth() {
+        return inlineTaskDepth;
+    }
+
+    /**
+     * @return Number of locks that object-based isolation is striped over.
+     * @see SystemProperty#isolatedLocks
+     */
+    public int isolatedLocks() {
+        return isolatedLocks;
+    }
+
+    /**
+     * @return Name of the implementation of global isolation, lock or
+     *         combining, in lower case.
+     * @see SystemProperty#isolationMode
+     */
+    public String isolationMode() {
+        return isolationMode;
+    }
+
+    /**
+     * @return Number of messages an actor processes before yielding its
+     *         worker to other tasks, or 0 for no limit.
+     * @see SystemProperty#actorBatchSize
+     */
+    public int actorBatchSize() {
+        return actorBatchSize;
+    }
+
+    /**
+     * @return Whether the worker pool is resized based on utilization.
+     * @see SystemProperty#elastic
+     */
+    public boolean elastic() {
+        return elastic;
+    }
+
+    /**
+     * @return Lower bound on the number of workers in elastic mode.
+     * @see SystemProperty#minWorkers
+     */
+    public int minWorkers() {
+        return minWorkers;
+    }
+
+    /**
+     * @return Upper bound on the number of workers in elastic mode.
+     * @see SystemProperty#maxWorkers
+     */
+    public int maxWorkers() {
+        return maxWorkers;
+    }
+
+    /**
+     * @return Milliseconds between utilization samples in elastic mode.
+     * @see SystemProperty#elasticPeriodMs
+     */
+    public int elasticPeriodMs() {
+        return elasticPeriodMs;
+    }
+
+    @Override
+    public String toString() {
+        return "RuntimeConfig[numWorkers=" + numWorkers
+            + ", scheduler=" + scheduler
+            + ", asyncMode=" + asyncMode
+            + ", loopChunksPerWorker=" + loopChunksPerWorker
+            + ", adaptiveChunksPerWorker=" + adaptiveChunksPerWorker
+            + ", splitSurplusThreshold=" + splitSurplusThreshold
+            + ", inlineQueueDepth=" + inlineQueueDepth
+            + ", inlineTaskDepth=" + inlineTaskDepth
+            + ", isolatedLocks=" + isolatedLocks
+            + ", isolationMode=" + isolationMode
+            + ", actorBatchSize=" + actorBatchSize
+            + ", elastic=" + elastic
+            + ", minWorkers=" + minWorkers
+            + ", maxWorkers=" + maxWorkers
+            + ", elasticPeriodMs=" + elasticPeriodMs + "]";
+    }
+
+    /**
+     * A mutable set of runtime settings, from which immutable
+     * RuntimeConfigs are built. Settings are validated by build().
+     */
+    public static final class Builder {
+        /**
+         * Number of worker threads.
+         */
+        private int numWorkers;
+        /**
+         * Name of the scheduler.
+         */
+        private String scheduler;
+        /**
+         * FIFO local task order of the forkjoin scheduler.
+         */
+        private boolean asyncMode;
+        /**
+         * Chunks per worker of parallel loops.
+         */
+        private int loopChunksPerWorker;
+        /**
+         * Chunks per worker of adaptive parallel loops.
+         */
+        private int adaptiveChunksPerWorker;
+        /**
+         * Split threshold of adaptive parallel loops.
+         */
+        private int splitSurplusThreshold;
+        /**
+         * Queue depth inlining cutoff.
+         */
+        private int inlineQueueDepth;
+        /**
+         * Task depth inlining cutoff.
+         */
+        private int inlineTaskDepth;
+        /**
+         * Number of isolation locks.
+         */
+        private int isolatedLocks;
+        /**
+         * Implementation of global isolation.
+         */
+        private String isolationMode;
+        /**
+         * Actor batch size.
+         */
+        private int actorBatchSize;
+        /**
+         * Elastic resizing of the worker pool.
+         */
+        private boolean elastic;
+        /**
+         * Elastic lower bound on workers.
+         */
+        private int minWorkers;
+        /**
+         * Elastic upper bound on workers.
+         */
+        private int maxWorkers;
+        /**
+         * Elastic sampling period.
+         */
+        private int elasticPeriodMs;
+
+        /**
+         * Constructor, reading all settings from the system properties.
+         */
+        private Builder() {
+            numWorkers = Configuration.readIntProperty(
+                    SystemProperty.numWorkers);
+            scheduler = Configuration.readStringProperty(
+                    SystemProperty.scheduler);
+            asyncMode = Configuration.readBooleanProperty(
+                    SystemProperty.asyncMode);
+            loopChunksPerWorker = Configuration.readIntProperty(
+                    SystemProperty.loopChunksPerWorker);
+            adaptiveChunksPerWorker = Configuration.readIntProperty(
+                    SystemProperty.adaptiveChunksPerWorker);
+            splitSurplusThreshold = Configuration.readIntProperty(
+                    SystemProperty.splitSurplusThreshold);
+            inlineQueueDepth = Configuration.readIntProperty(
+                    SystemProperty.inlineQueueDepth);
+            inlineTaskDepth = Configuration.readIntProperty(
+                    SystemProperty.inlineTaskDepth);
+            isolatedLocks = Configuration.readIntProperty(
+                    SystemProperty.isolatedLocks);
+            isolationMode = Configuration.readStringProperty(
+                    SystemProperty.isolationMode);
+            actorBatchSize = Configuration.readIntProperty(
+                    SystemProperty.actorBatchSize);
+            elastic = Configuration.readBooleanProperty(
+                    SystemProperty.elastic);
+            minWorkers = Configuration.readIntProperty(
+                    SystemProperty.minWorkers);
+            maxWorkers = Configuration.readIntProperty(
+                    SystemProperty.maxWorkers);
+            elasticPeriodMs = Configuration.readIntProperty(
+                    SystemProperty.elasticPeriodMs);
+        }
+
+        /**
+         * Constructor, copying all settings from config.
+         *
+         * @param config The configuration to copy.
+         */
+        private Builder(final RuntimeConfig config) {
+            numWorkers = config.numWorkers;
+            scheduler = config.scheduler;
+            asyncMode = config.asyncMode;
+            loopChunksPerWorker = config.loopChunksPerWorker;
+            adaptiveChunksPerWorker = config.adaptiveChunksPerWorker;
+            splitSurplusThreshold = config.splitSurplusThreshold;
+            inlineQueueDepth = config.inlineQueueDepth;
+            inlineTaskDepth = config.inlineTaskDepth;
+            isolatedLocks = config.isolatedLocks;
+            isolationMode = config.isolationMode;
+            actorBatchSize = config.actorBatchSize;
+            elastic = config.elastic;
+            minWorkers = config.minWorkers;
+            maxWorkers = config.maxWorkers;
+            elasticPeriodMs = config.elasticPeriodMs;
+        }
+
+        /**
+         * @param setNumWorkers Number of worker threads.
+         * @return This builder.
+         */
+        public Builder numWorkers(final int setNumWorkers) {
+            this.numWorkers = setNumWorkers;
+            return this;
+        }
+
+        /**
+         * @param setScheduler Name of the scheduler: forkjoin, workstealing,
+         *        serial or virtual.
+         * @return This builder.
+         */
+        public Builder scheduler(final String setScheduler) {
+            this.scheduler = setScheduler;
+            return this;
+        }
+
+        /**
+         * @param setAsyncMode Whether the forkjoin scheduler runs local tasks
+         *        in FIFO order.
+         * @return This builder.
+         */
+        public Builder asyncMode(final boolean setAsyncMode) {
+            this.asyncMode = setAsyncMode;
+            return this;
+        }
+
+        /**
+         * @param setLoopChunksPerWorker Chunks per worker of parallel loops
+         *        that are not explicitly chunked.
+         * @return This builder.
+         */
+        public Builder loopChunksPerWorker(final int setLoopChunksPerWorker) {
+            this.loopChunksPerWorker = setLoopChunksPerWorker;
+            return this;
+        }
+
+        /**
+         * @param setAdaptiveChunksPerWorker Chunks per worker of adaptively
+         *        chunked parallel loops.
+         * @return This builder.
+         */
+        public Builder adaptiveChunksPerWorker(
+                final int setAdaptiveChunksPerWorker) {
+            this.adaptiveChunksPerWorker = setAdaptiveChunksPerWorker;
+            return this;
+        }
+
+        /**
+         * @param setSplitSurplusThreshold Surplus queued task count below
+         *        which adaptively chunked loops split.
+         * @return This builder.
+         */
+        public Builder splitSurplusThreshold(
+                final int setSplitSurplusThreshold) {
+            this.splitSurplusThreshold = setSplitSurplusThreshold;
+            return this;
+        }
+
+        /**
+         * @param setInlineQueueDepth Surplus queued task count above which
+         *        spawns are inlined, or 0 to disable.
+         * @return This builder.
+         */
+        public Builder inlineQueueDepth(final int setInlineQueueDepth) {
+            this.inlineQueueDepth = setInlineQueueDepth;
+            return this;
+        }
+
+        /**
+         * @param setInlineTaskDepth Task stack depth from which spawns are
+         *        inlined, or 0 to disable.
+         * @return This builder.
+         */
+        public Builder inlineTaskDepth(final int setInlineTaskDepth) {
+            this.inlineTaskDepth = setInlineTaskDepth;
+            return this;
+        }
+
+        /**
+         * @param setIsolatedLocks Number of locks striping object-based
+         *        isolation.
+         * @return This builder.
+         */
+        public Builder isolatedLocks(final int setIsolatedLocks) {
+            this.isolatedLocks = setIsolatedLocks;
+            return this;
+        }
+
+        /**
+         * @param setIsolationMode Implementation of global isolation: lock,
+         *        or combining.
+         * @return This builder.
+         */
+        public Builder isolationMode(final String setIsolationMode) {
+            this.isolationMode = setIsolationMode;
+            return this;
+        }
+
+        /**
+         * @param setActorBatchSize Messages an actor processes per task, or 0
+         *        for no limit.
+         * @return This builder.
+         */
+        public Builder actorBatchSize(final int setActorBatchSize) {
+            this.actorBatchSize = setActorBatchSize;
+            return this;
+        }
+
+        /**
+         * @param setElastic Whether the worker pool is resized based on
+         *        utilization.
+         * @return This builder.
+         */
+        public Builder elastic(final boolean setElastic) {
+            this.elastic = setElastic;
+            return this;
+        }
+
+        /**
+         * @param setMinWorkers Lower bound on workers in elastic mode.
+         * @return This builder.
+         */
+        public Builder minWorkers(final int setMinWorkers) {
+            this.minWorkers = setMinWorkers;
+            return this;
+        }
+
+        /**
+         * @param setMaxWorkers Upper bound on workers in elastic mode.
+         * @return This builder.
+         */
+        public Builder maxWorkers(final int setMaxWorkers) {
+            this.maxWorkers = setMaxWorkers;
+            return this;
+        }
+
+        /**
+         * @param setElasticPeriodMs Milliseconds between utilization samples
+         *        in elastic mode.
+         * @return This builder.
+         */
+        public Builder elasticPeriodMs(final int setElasticPeriodMs) {
+            this.elasticPeriodMs = setElasticPeriodMs;
+            return this;
+        }
+
+        /**
+         * Create a configuration from the settings of this builder.
+         *
+         * @return A new configuration.
+         * @throws IllegalArgumentException If a setting is out of range.
+         */
+        public RuntimeConfig build() {
+            return new RuntimeConfig(this);
+        }
+    }
+}
@@ -13,6 +13,84 @@ public enum SystemProperty {
      */
     numWorkers("pcdp.numWorkers", "int", "Number of worker threads to create",
             Constants.AVAILABLE_PROCESSORS_STR),
+    /**
+     * Scheduler implementation executing PCDP tasks.
+     */
+    scheduler("pcdp.scheduler", "string", "Task scheduler to use: "
+            + "forkjoin, workstealing, serial or virtual (Java 21+)",
+            "forkjoin"),
+    /**
+     * Local task ordering of the fork-join scheduler.
+     */
+    asyncMode("pcdp.asyncMode", "bool", "Execute local tasks of the forkjoin "
+            + "scheduler in FIFO instead of LIFO order", "false"),
+    /**
+     * Chunking of parallel loops that are not explicitly chunked.
+     */
+    loopChunksPerWorker("pcdp.loopChunksPerWorker", "int", "Number of "
+            + "chunks per worker that forasync and forall split their "
+            + "iterations into", "8"),
+    /**
+     * Chunking of adaptively chunked parallel loops.
+     */
+    adaptiveChunksPerWorker("pcdp.adaptiveChunksPerWorker", "int", "Number "
+            + "of chunks per worker that adaptively chunked loops split their "
+            + "iterations into", "64"),
+    /**
+     * Splitting threshold of adaptively chunked parallel loops.
+     */
+    splitSurplusThreshold("pcdp.splitSurplusThreshold", "int", "Surplus "
+            + "queued task count below which adaptively chunked loops split "
+            + "off work for idle workers", "3"),
+    /**
+     * Lock striping of object-based isolation.
+     */
+    isolatedLocks("pcdp.isolatedLocks", "int", "Number of locks that "
+            + "object-based isolation is striped over", "256"),
+    /**
+     * Implementation of global isolation.
+     */
+    isolationMode("pcdp.isolationMode", "string", "Implementation of global "
+            + "isolation: lock, or combining to have the thread holding it "
+            + "execute contended isolated blocks in batches", "lock"),
+    /**
+     * Number of messages an actor processes per task.
+     */
+    actorBatchSize("pcdp.actorBatchSize", "int", "Messages an actor "
+            + "processes before yielding its worker to other tasks "
+            + "(0 for no limit)", "0"),
+    /**
+     * Utilization-driven resizing of the worker pool.
+     */
+    elastic("pcdp.elastic", "bool", "Grow and shrink the number of workers "
+            + "at runtime based on utilization", "false"),
+    /**
+     * Lower bound on the number of workers in elastic mode.
+     */
+    minWorkers("pcdp.minWorkers", "int", "Minimum number of worker threads "
+            + "in elastic mode", "1"),
+    /**
+     * Upper bound on the number of workers in elastic mode.
+     */
+    maxWorkers("pcdp.maxWorkers", "int", "Maximum number of worker threads "
+            + "in elastic mode", Constants.MAX_THREADS_DEFAULT),
+    /**
+     * Sampling period of the elastic resizing policy.
+     */
+    elasticPeriodMs("pcdp.elasticPeriodMs", "int", "Milliseconds between "
+            + "utilization samples in elastic mode", "100"),
+    /**
+     * Local queue depth above which spawned tasks execute inline.
+     */
+    inlineQueueDepth("pcdp.inlineQueueDepth", "int", "Run async and future "
+            + "bodies inline when the spawning worker has more than this "
+            + "many surplus queued tasks (0 disables)", "0"),
+    /**
+     * Task nesting depth from which spawned tasks execute inline.
+     */
+    inlineTaskDepth("pcdp.inlineTaskDepth", "int", "Run async and future "
+            + "bodies inline when the spawning thread is executing at least "
+            + "this many nested tasks (0 disables)", "0"),
     /**
      * Show warning/debug messages.
      */
@@ -5,8 +5,10 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * @author Shams Imam (shams@rice.edu)
@@ -14,6 +16,22 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public abstract class BaseTask extends CountedCompleter<Void> {
 
+    /**
+     * The task that was current on the executing thread when this task
+     * started executing there. Maintained by {@link TaskContext}.
+     */
+    BaseTask previousOnThread = null;
+    /**
+     * The phasers this task is registered on, linked through the
+     * registrations. Maintained by {@link Phaser}.
+     */
+    PhaserRegistration phaserRegistrations = null;
+    /**
+     * Whether a phaser may start this task on a thread of its own, in which
+     * case the task must be claimed before it executes (see {@link #claim()}).
+     */
+    boolean phased = false;
+
     /**
      * Default constructor.
      */
@@ -30,20 +48,113 @@ public abstract class BaseTask extends CountedCompleter<Void> {
     public abstract FinishTask ief();
 
     /**
+     * Fetch the runtime this task executes on, which is the runtime of its
+     * immediately enclosing finish.
+     *
+     * @return The runtime of this task.
+     */
+    public final PCDPRuntime runtime() {
+        return ief().runtime;
+    }
+
+    /**
+     * Execute this task on the calling thread, on behalf of a scheduler that
+     * does not run it inside a ForkJoinPool. Abrupt termination is recorded
+     * on the task, as ForkJoinPool would do.
+     */
+    final void runOnCurrentThread() {
+        try {
+            compute();
+        } catch (final Throwable th) {
+            completeExceptionally(th);
+        }
+    }
+
+    /**
+     * Claim the right to execute this task, for tasks that may be executed by
+     * either a worker or a phaser.
+     *
+     * @return true for the first caller only.
+     */
+    final boolean claim() {
+        return compareAndSetForkJoinTaskTag((short) 0, (short) 1);
+    }
+
+    /**
+     * Notify the phasers this task was registered on by its parent that it
+     * has started executing. Called before the body of the task runs.
+     */
+    final void startPhasers() {
+        if (phaserRegistrations != null) {
+            Phaser.startAll(this);
+        }
+    }
+
+    /**
+     * Drop this task from all phasers it is registered on, so that they stop
+     * waiting for it. Called when the body of the task has completed.
+     */
+    final void dropPhasers() {
+        if (phaserRegistrations != null) {
+            Phaser.dropAll(this);
+        }
+    }
+
+    /**
+     * A finish scope. Tasks created in the scope register with it when they
+     * are created and deregister when they complete, and the scope completes
+     * once its body and all registered tasks have completed.
+     * <p>
+     * Registrations are first counted directly in the pending count of this
+     * CountedCompleter. When several workers contend on the pending count,
+     * as in a wide parallel loop, the finish inflates to a set of leaf
+     * counters, each on its own cache line and selected by the registering
+     * thread. The pending count then holds one unit per non-zero leaf, so it
+     * is only updated when a leaf goes from zero to one or back.
+     *
      * @author Shams Imam (shams@rice.edu)
      */
     public static final class FinishTask extends BaseTask {
 
         /**
-         * Count all finish scopes.
+         * Slot returned by register for tasks counted directly in the pending
+         * count of the finish.
          */
-        protected static final AtomicLong TASK_COUNTER = new AtomicLong();
+        static final int ROOT_SLOT = -1;
+        /**
+         * Distance, in ints, between two leaf counters, so that each leaf
+         * sits on its own cache line.
+         */
+        private static final int LEAF_STRIDE = 16;
+        /**
+         * Upper bound on the number of leaf counters of a finish.
+         */
+        private static final int MAX_LEAVES = 64;
+        /**
+         * Atomic updater used to install the leaf counters.
+         */
+        private static final AtomicReferenceFieldUpdater<FinishTask,
+                AtomicIntegerArray> LEAVES_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(FinishTask.class,
+                    AtomicIntegerArray.class, "leaves");
 
         /**
          * Body of this task.
          */
         private final Runnable runnable;
 
+        /**
+         * The runtime executing this finish scope and all tasks registered on
+         * it.
+         */
+        private final PCDPRuntime runtime;
+
+        /**
+         * Leaf counters of registered tasks, or null until registrations
+         * contend on the pending count.
+         */
+        private volatile AtomicIntegerArray leaves = null;
+
         /**
          * The Exception list is used to collect exceptions issued when tasks
          * associated with this finish scope terminate abruptly. This field is
@@ -52,15 +163,77 @@ public abstract class BaseTask extends CountedCompleter<Void> {
         private List<Throwable> exceptionList;
 
         /**
-         * Constructor for a finish task.
+         * Future completed when this finish scope completes, or null if the
+         * creator of this scope waits for it with awaitCompletion.
+         */
+        private final CompletableFuture<Void> completionFuture;
+
+        /**
+         * The finish scope of the task that created this scope and waits for
+         * it, or null if this scope was created outside of any task or does
+         * not block its creator.
+         */
+        private final FinishTask parent;
+
+        /**
+         * Constructor for a finish task executing on the default runtime.
          *
          * @param setRunnable User-defined body of this task.
          */
         public FinishTask(final Runnable setRunnable) {
+            this(setRunnable, Runtime.defaultRuntime());
+        }
+
+        /**
+         * Constructor for a finish task.
+         *
+         * @param setRunnable User-defined body of this task.
+         * @param setRuntime The runtime executing this finish scope.
+         */
+        public FinishTask(final Runnable setRunnable,
+                final PCDPRuntime setRuntime) {
+            this(setRunnable, setRuntime, null);
+        }
+
+        /**
+         * Constructor for a finish task that does not block any thread while
+         * waiting for its tasks: completion is instead signalled through
+         * setCompletionFuture, which is completed normally, or exceptionally
+         * with the exception awaitCompletion would have thrown.
+         *
+         * @param setRunnable User-defined body of this task.
+         * @param setRuntime The runtime executing this finish scope.
+         * @param setCompletionFuture Future to complete when this scope
+         *        completes, or null.
+         */
+        public FinishTask(final Runnable setRunnable,
+                final PCDPRuntime setRuntime,
+                final CompletableFuture<Void> setCompletionFuture) {
             super();
             this.runnable = setRunnable;
+            this.runtime = setRuntime;
             this.exceptionList = null;
-            TASK_COUNTER.incrementAndGet();
+            this.completionFuture = setCompletionFuture;
+            final BaseTask creator = Runtime.currentTask();
+            this.parent = setCompletionFuture == null && creator != null
+                ? creator.ief() : null;
+            setRuntime.finishCount.incrementAndGet();
+        }
+
+        /**
+         * Check whether this finish scope is nested in another one, that is
+         * whether the other scope waits for this one to complete.
+         *
+         * @param scope The finish scope to look for.
+         * @return true if scope is this finish scope or encloses it.
+         */
+        public boolean isNestedIn(final FinishTask scope) {
+            for (FinishTask f = this; f != null; f = f.parent) {
+                if (f == scope) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         @Override
@@ -73,10 +246,144 @@ public abstract class BaseTask extends CountedCompleter<Void> {
             } catch (final Throwable th) {
                 pushException(th);
             } finally {
+                dropPhasers();
                 tryComplete();
                 Runtime.popTask();
-                awaitCompletion();
+                if (completionFuture == null) {
+                    awaitCompletion();
+                }
+            }
+        }
+
+        @Override
+        public void onCompletion(final CountedCompleter<?> caller) {
+            if (completionFuture == null) {
+                return;
+            }
+            // Dependent stages run on this thread, outside of the task that
+            // completed this scope.
+            final Throwable failure = failure();
+            Runtime.runOutsideTasks(() -> {
+                if (failure == null) {
+                    completionFuture.complete(null);
+                } else {
+                    completionFuture.completeExceptionally(failure);
+                }
+            });
+        }
+
+        /**
+         * Register a new task with this finish scope. Must be called by a
+         * task that is itself registered with this scope, or by the body of
+         * this scope, so that the scope cannot complete concurrently.
+         *
+         * @return The slot the task was counted in, to be passed to
+         *         deregister when the task completes.
+         */
+        int register() {
+            AtomicIntegerArray currentLeaves = leaves;
+            if (currentLeaves == null) {
+                final int pending = getPendingCount();
+                if (compareAndSetPendingCount(pending, pending + 1)) {
+                    return ROOT_SLOT;
+                }
+                currentLeaves = inflate();
+            }
+
+            final int nLeaves = currentLeaves.length() / LEAF_STRIDE;
+            final int slot = (int) (Thread.currentThread().getId()
+                    & (nLeaves - 1)) * LEAF_STRIDE;
+            while (true) {
+                final int count = currentLeaves.get(slot);
+                if (count > 0) {
+                    if (currentLeaves.compareAndSet(slot, count, count + 1)) {
+                        return slot;
+                    }
+                } else {
+                    /*
+                     * The leaf holds a unit of the pending count while it is
+                     * non-zero, acquire it before publishing the leaf. The
+                     * caller is registered, so the pending count cannot reach
+                     * zero while this unit is given back on failure.
+                     */
+                    addToPendingCount(1);
+                    if (currentLeaves.compareAndSet(slot, 0, 1)) {
+                        return slot;
+                    }
+                    addToPendingCount(-1);
+                }
+            }
+        }
+
+        /**
+         * Deregister a completed task from this finish scope.
+         *
+         * @param slot The slot returned by register for this task.
+         */
+        void deregister(final int slot) {
+            if (slot == ROOT_SLOT || leaves.decrementAndGet(slot) == 0) {
+                tryComplete();
+            }
+        }
+
+        /**
+         * Execute the body of an async registered with this finish scope on
+         * the current thread, instead of spawning a task for it. As for a
+         * spawned async, an exception thrown by the body is reported when
+         * this scope completes rather than to the caller.
+         *
+         * @param body Body of the async.
+         */
+        public void runInline(final Runnable body) {
+            runtime.inlinedCount.incrementAndGet();
+            try {
+                body.run();
+            } catch (final Throwable th) {
+                pushException(th);
+            }
+        }
+
+        /**
+         * Execute the body of a future registered with this finish scope on
+         * the current thread, instead of spawning a task for it.
+         *
+         * @param body Body of the future.
+         * @param <R> Result type of the future.
+         * @return A completed future holding the result or the exception of
+         *         body.
+         */
+        public <R> CompletableFuture<R> callInline(final Callable<R> body) {
+            runtime.inlinedCount.incrementAndGet();
+            final CompletableFuture<R> future = new CompletableFuture<>();
+            try {
+                future.complete(body.call());
+            } catch (final Exception ex) {
+                future.completeExceptionally(ex);
+            } catch (final Throwable th) {
+                // As in FutureTask, errors also terminate the finish scope.
+                future.completeExceptionally(th);
+                pushException(th);
             }
+            return future;
+        }
+
+        /**
+         * Install the leaf counters of this finish, sized to the number of
+         * workers of its runtime.
+         *
+         * @return The installed leaf counters.
+         */
+        private AtomicIntegerArray inflate() {
+            int nLeaves = 1;
+            while (nLeaves < runtime.numWorkers() && nLeaves < MAX_LEAVES) {
+                nLeaves <<= 1;
+            }
+            final AtomicIntegerArray newLeaves =
+                new AtomicIntegerArray(nLeaves * LEAF_STRIDE);
+            if (LEAVES_UPDATER.compareAndSet(this, null, newLeaves)) {
+                return newLeaves;
+            }
+            return leaves;
         }
 
         /**
@@ -88,23 +395,41 @@ public abstract class BaseTask extends CountedCompleter<Void> {
                 // this finish scope.
                 // Moreover join allow us to handle exceptions
                 // while computing the runnable
-                join();
+                Runtime.joinTask(this);
             } catch (final Exception ex) {
                 pushException(ex);
             }
 
-            final List<Throwable> finalExceptionList = exceptions();
-            if (!finalExceptionList.isEmpty()) {
-                if (finalExceptionList.size() == 1) {
-                    final Throwable t = finalExceptionList.get(0);
-                    if (t instanceof Error) {
-                        throw (Error) t;
-                    } else if (t instanceof RuntimeException) {
-                        throw (RuntimeException) t;
-                    }
+            final Throwable failure = failure();
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+        }
+
+        /**
+         * Get the exception reported for the tasks of this finish scope that
+         * terminated abruptly: a single unchecked exception as is, or a
+         * MultiException otherwise.
+         *
+         * @return The exception to report, or null if no task failed.
+         */
+        private Throwable failure() {
+            final List<Throwable> finalExceptionList;
+            synchronized (this) {
+                finalExceptionList = exceptions();
+            }
+            if (finalExceptionList.isEmpty()) {
+                return null;
+            }
+            if (finalExceptionList.size() == 1) {
+                final Throwable t = finalExceptionList.get(0);
+                if (t instanceof Error || t instanceof RuntimeException) {
+                    return t;
                 }
-                throw new MultiException(finalExceptionList);
             }
+            return new MultiException(finalExceptionList);
         }
 
         @Override
@@ -138,15 +463,259 @@ public abstract class BaseTask extends CountedCompleter<Void> {
     }
 
     /**
-     * @author Shams Imam (shams@rice.edu)
-     * @param <R> Return type for this future.
+     * A fire-and-forget task, as created by async. Unlike FutureTask, an
+     * AsyncTask has no result, so it carries no future, no cancellation flag
+     * and no wrapper closures: just the user's body and its finish scope.
+     *
+     * @author Max Grossman (jmg3@rice.edu)
      */
-    public static final class FutureTask<R> extends BaseTask {
+    public static final class AsyncTask extends BaseTask {
+
+        /**
+         * Body of this task.
+         */
+        private final Runnable runnable;
+        /**
+         * Finish scope for this task.
+         */
+        private final FinishTask immediatelyEnclosingFinish;
+        /**
+         * Slot this task is counted in by its finish scope.
+         */
+        private final int finishSlot;
+
+        /**
+         * Constructor for AsyncTask.
+         *
+         * @param setRunnable User-defined body of this task.
+         * @param setImmediatelyEnclosingFinish Finish scope for this task.
+         */
+        public AsyncTask(final Runnable setRunnable,
+                final FinishTask setImmediatelyEnclosingFinish) {
+            super();
+            if (setImmediatelyEnclosingFinish == null) {
+                throw new IllegalStateException(
+                        "Async is not executing inside a finish!");
+            }
+            this.runnable = setRunnable;
+            this.immediatelyEnclosingFinish = setImmediatelyEnclosingFinish;
+            this.finishSlot = immediatelyEnclosingFinish.register();
+            immediatelyEnclosingFinish.runtime.asyncCount.incrementAndGet();
+        }
+
+        @Override
+        public void compute() {
+            if (phased && !claim()) {
+                // Already started by one of its phasers.
+                return;
+            }
+            Runtime.pushTask(this);
+            startPhasers();
+            try {
+                runnable.run();
+            } catch (final Throwable th) {
+                immediatelyEnclosingFinish.pushException(th);
+            } finally {
+                dropPhasers();
+                immediatelyEnclosingFinish.deregister(finishSlot);
+                Runtime.popTask();
+            }
+        }
+
+        @Override
+        public FinishTask ief() {
+            return immediatelyEnclosingFinish;
+        }
+    }
+
+    /**
+     * A task executing a range of iterations of a parallel loop. Rather than
+     * spawning one task per iteration (or per chunk) from a single thread, a
+     * ForasyncTask recursively splits its range in half, forking the upper
+     * half as a new ForasyncTask, until only a single chunk is left which it
+     * then executes sequentially. Splitting is therefore performed in
+     * parallel by whichever workers pick up the forked halves, the depth of
+     * the spawn tree is logarithmic in the number of chunks, and no per-chunk
+     * futures or closures are allocated.
+     * <p>
+     * In adaptive mode, a task instead executes its range chunk by chunk and
+     * only splits off the upper half of what remains when its worker has
+     * (almost) no queued work left for other workers to steal, i.e. when
+     * other workers are likely idle. This lazy binary splitting balances loops
+     * with irregular iteration costs without requiring a well-chosen chunk
+     * size, and avoids creating tasks for small loops on a busy runtime.
+     *
+     * @author Max Grossman (jmg3@rice.edu)
+     */
+    public static final class ForasyncTask extends BaseTask {
+
+        /**
+         * First iteration of the range owned by this task (inclusive).
+         */
+        private final int startInc;
+        /**
+         * Last iteration of the range owned by this task (inclusive).
+         */
+        private final int endInc;
+        /**
+         * Number of consecutive iterations executed sequentially by a leaf,
+         * or between two checks for idle workers in adaptive mode. Ranges are
+         * always split on chunk boundaries relative to startInc.
+         */
+        private final int chunkSize;
+        /**
+         * Whether this task splits its range lazily, based on the load of the
+         * runtime, rather than eagerly down to a single chunk.
+         */
+        private final boolean adaptive;
+        /**
+         * Body of the parallel loop.
+         */
+        private final LoopBody body;
+        /**
+         * Finish scope for this task.
+         */
+        private final FinishTask immediatelyEnclosingFinish;
+        /**
+         * Slot this task is counted in by its finish scope.
+         */
+        private final int finishSlot;
+
+        /**
+         * Constructor for ForasyncTask.
+         *
+         * @param setStartInc First iteration of the range (inclusive).
+         * @param setEndInc Last iteration of the range (inclusive).
+         * @param setChunkSize Number of iterations executed sequentially by
+         *        each leaf task, must be positive.
+         * @param setAdaptive Whether to split the range lazily when other
+         *        workers are idle, rather than eagerly.
+         * @param setBody Body of the parallel loop.
+         * @param setImmediatelyEnclosingFinish Finish scope for this task.
+         */
+        public ForasyncTask(
+            final int setStartInc,
+            final int setEndInc,
+            final int setChunkSize,
+            final boolean setAdaptive,
+            final LoopBody setBody,
+            final FinishTask setImmediatelyEnclosingFinish) {
+            super();
+            if (setImmediatelyEnclosingFinish == null) {
+                throw new IllegalStateException(
+                        "Async is not executing inside a finish!");
+            }
+            if (setChunkSize <= 0) {
+                throw new IllegalArgumentException(
+                        "Chunk size must be positive, got " + setChunkSize);
+            }
+            this.startInc = setStartInc;
+            this.endInc = setEndInc;
+            this.chunkSize = setChunkSize;
+            this.adaptive = setAdaptive;
+            this.body = setBody;
+            this.immediatelyEnclosingFinish = setImmediatelyEnclosingFinish;
+            this.finishSlot = immediatelyEnclosingFinish.register();
+            immediatelyEnclosingFinish.runtime.loopTaskCount.incrementAndGet();
+        }
+
+        @Override
+        public void compute() {
+            Runtime.pushTask(this);
+            try {
+                if (adaptive) {
+                    splitLazily();
+                } else {
+                    splitEagerly();
+                }
+            } catch (final Throwable th) {
+                immediatelyEnclosingFinish.pushException(th);
+            } finally {
+                dropPhasers();
+                immediatelyEnclosingFinish.deregister(finishSlot);
+                Runtime.popTask();
+            }
+        }
+
+        /**
+         * Fork off the upper half of the range [lo, hi], which contains
+         * nChunks chunks.
+         *
+         * @param lo First iteration of the range (inclusive).
+         * @param hi Last iteration of the range (inclusive).
+         * @param nChunks Number of chunks in the range, at least two.
+         * @return The last iteration of the lower half, which remains owned by
+         *         the caller.
+         */
+        private int forkUpperHalf(final int lo, final int hi,
+                final long nChunks) {
+            final long lowerChunks = nChunks - (nChunks >>> 1);
+            final int mid = (int) (lo + lowerChunks * chunkSize);
+            Runtime.submitTask(new ForasyncTask(mid, hi, chunkSize, adaptive,
+                        body, immediatelyEnclosingFinish));
+            return mid - 1;
+        }
 
         /**
-         * Count all asynchronous tasks.
+         * Split the range of this task down to a single chunk, then execute
+         * it.
          */
-        protected static final AtomicLong TASK_COUNTER = new AtomicLong();
+        private void splitEagerly() {
+            int hi = endInc;
+            long nChunks = ((long) hi - startInc) / chunkSize + 1;
+            while (nChunks > 1) {
+                hi = forkUpperHalf(startInc, hi, nChunks);
+                nChunks = ((long) hi - startInc) / chunkSize + 1;
+            }
+            body.apply(startInc, hi);
+        }
+
+        /**
+         * Execute the range of this task one chunk at a time, splitting off
+         * half of the remaining iterations whenever other workers appear to
+         * be idle.
+         */
+        private void splitLazily() {
+            // Split whenever the number of tasks queued by this worker in
+            // excess of what other workers are expected to steal falls below
+            // this threshold.
+            final PCDPRuntime runtime = runtime();
+            final int threshold = runtime.config().splitSurplusThreshold();
+            int lo = startInc;
+            int hi = endInc;
+            while (true) {
+                final long nChunks = ((long) hi - lo) / chunkSize + 1;
+                if (nChunks > 1 && runtime.scheduler()
+                        .surplusQueuedTaskCount() < threshold) {
+                    hi = forkUpperHalf(lo, hi, nChunks);
+                    continue;
+                }
+                final long chunkEnd = (long) lo + chunkSize - 1;
+                if (chunkEnd >= hi) {
+                    body.apply(lo, hi);
+                    return;
+                }
+                body.apply(lo, (int) chunkEnd);
+                lo = (int) chunkEnd + 1;
+            }
+        }
+
+        @Override
+        public FinishTask ief() {
+            return immediatelyEnclosingFinish;
+        }
+    }
+
+    /**
+     * A task computing the value of a future. Waiting on the future joins
+     * this task through the scheduler: a worker waiting on a future whose
+     * task it queued and that has not been stolen executes the task itself,
+     * and otherwise executes other tasks until the future is completed.
+     *
+     * @author Shams Imam (shams@rice.edu)
+     * @param <R> Return type for this future.
+     */
+    public static final class FutureTask<R> extends BaseTask {
 
         /**
          * Body of this task.
@@ -156,6 +725,10 @@ public abstract class BaseTask extends CountedCompleter<Void> {
          * Finish scope for this task.
          */
         private final FinishTask immediatelyEnclosingFinish;
+        /**
+         * Slot this task is counted in by its finish scope.
+         */
+        private final int finishSlot;
         /**
          * Flag used to signal cancellation of this task.
          */
@@ -170,6 +743,23 @@ public abstract class BaseTask extends CountedCompleter<Void> {
                     return cancellationFlag.compareAndSet(false, true)
                         && super.cancel(mayInterruptIfRunning);
                 }
+
+                @Override
+                public R get()
+                        throws InterruptedException, ExecutionException {
+                    if (!isDone()) {
+                        Runtime.joinTask(FutureTask.this);
+                    }
+                    return super.get();
+                }
+
+                @Override
+                public R join() {
+                    if (!isDone()) {
+                        Runtime.joinTask(FutureTask.this);
+                    }
+                    return super.join();
+                }
             };
 
         /**
@@ -206,8 +796,8 @@ public abstract class BaseTask extends CountedCompleter<Void> {
                 }
             };
             this.immediatelyEnclosingFinish = setImmediatelyEnclosingFinish;
-            this.immediatelyEnclosingFinish.addToPendingCount(1);
-            TASK_COUNTER.incrementAndGet();
+            this.finishSlot = immediatelyEnclosingFinish.register();
+            immediatelyEnclosingFinish.runtime.futureCount.incrementAndGet();
         }
 
         @Override
@@ -221,7 +811,10 @@ public abstract class BaseTask extends CountedCompleter<Void> {
             } catch (final Throwable th) {
                 immediatelyEnclosingFinish.pushException(th);
             } finally {
-                immediatelyEnclosingFinish.tryComplete();
+                dropPhasers();
+                // Release threads joining this task from get or join.
+                quietlyComplete();
+                immediatelyEnclosingFinish.deregister(finishSlot);
                 Runtime.popTask();
             }
         }
@@ -0,0 +1,143 @@
+package edu.rice.pcdp.runtime;
+
+/**
+ * A background thread that periodically samples the utilization of a
+ * runtime's scheduler and resizes it, within fixed bounds, while tasks
+ * continue to run. The worker count is doubled when every worker is busy and
+ * tasks are queued, and halved after the pool has been under half utilized
+ * with nothing queued for several consecutive samples, so that short lulls
+ * do not cause the pool to oscillate.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+final class ElasticResizer implements Runnable {
+
+    /**
+     * Number of consecutive under-utilized samples before shrinking.
+     */
+    static final int SHRINK_AFTER_PERIODS = 10;
+
+    /**
+     * The runtime resized by this policy.
+     */
+    private final PCDPRuntime runtime;
+    /**
+     * Lower bound on the number of workers.
+     */
+    private final int minWorkers;
+    /**
+     * Upper bound on the number of workers.
+     */
+    private final int maxWorkers;
+    /**
+     * Milliseconds between samples.
+     */
+    private final long periodMs;
+    /**
+     * The sampling thread.
+     */
+    private final Thread thread;
+    /**
+     * Set once this resizer should exit.
+     */
+    private volatile boolean stopped = false;
+    /**
+     * Number of consecutive under-utilized samples seen so far. Only accessed
+     * by the sampling thread.
+     */
+    private int underutilizedPeriods = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param setRuntime The runtime to resize.
+     * @param setMinWorkers Lower bound on the number of workers.
+     * @param setMaxWorkers Upper bound on the number of workers.
+     * @param setPeriodMs Milliseconds between samples.
+     */
+    ElasticResizer(final PCDPRuntime setRuntime, final int setMinWorkers,
+            final int setMaxWorkers, final long setPeriodMs) {
+        if (setMinWorkers <= 0 || setMaxWorkers < setMinWorkers) {
+            throw new IllegalArgumentException("Invalid elastic bounds ["
+                    + setMinWorkers + ", " + setMaxWorkers + "]");
+        }
+        if (setPeriodMs <= 0) {
+            throw new IllegalArgumentException(
+                    "Elastic period must be positive, got " + setPeriodMs);
+        }
+        this.runtime = setRuntime;
+        this.minWorkers = setMinWorkers;
+        this.maxWorkers = setMaxWorkers;
+        this.periodMs = setPeriodMs;
+        this.thread = new Thread(this, "pcdp-elastic-resizer");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start sampling.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stop sampling. Does not wait for the sampling thread to exit.
+     */
+    void stop() {
+        stopped = true;
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            try {
+                Thread.sleep(periodMs);
+            } catch (final InterruptedException ie) {
+                continue;
+            }
+            final TaskScheduler scheduler = runtime.scheduler();
+            final int parallelism = scheduler.parallelism();
+            final int target = targetWorkers(parallelism,
+                    scheduler.activeWorkerCount(),
+                    scheduler.queuedTaskCount());
+            if (target != parallelism && !stopped) {
+                runtime.resizeLive(scheduler, target);
+            }
+        }
+    }
+
+    /**
+     * Decide on the number of workers given one utilization sample.
+     *
+     * @param parallelism Current number of workers.
+     * @param active Number of busy workers.
+     * @param queued Number of queued tasks.
+     * @return The new number of workers.
+     */
+    int targetWorkers(final int parallelism, final int active,
+            final long queued) {
+        if (parallelism < minWorkers) {
+            underutilizedPeriods = 0;
+            return minWorkers;
+        } else if (parallelism > maxWorkers) {
+            underutilizedPeriods = 0;
+            return maxWorkers;
+        }
+
+        if (active >= parallelism && queued > 0) {
+            underutilizedPeriods = 0;
+            return Math.min(maxWorkers, parallelism * 2);
+        } else if (active * 2 < parallelism && queued == 0) {
+            underutilizedPeriods++;
+            if (underutilizedPeriods >= SHRINK_AFTER_PERIODS) {
+                underutilizedPeriods = 0;
+                return Math.max(minWorkers,
+                        Math.max(parallelism / 2, active));
+            }
+        } else {
+            underutilizedPeriods = 0;
+        }
+        return parallelism;
+    }
+}
@@ -0,0 +1,346 @@
+package edu.rice.pcdp.runtime;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flat-combining executor for global isolated sections.
+ * <p>
+ * A thread that finds global isolation held does not queue on its lock.
+ * Instead, it publishes its section in a combining array and waits. Whichever
+ * thread holds global isolation executes all published sections back to back
+ * before releasing it, so under contention the data they share stays in the
+ * cache of one core and global isolation changes hands less often. A waiting
+ * thread takes over global isolation itself as soon as it is free, and
+ * executes its own section along with all others published by then.
+ * <p>
+ * A section executed on behalf of another thread runs as part of the task
+ * that published it: the current task, its finish scope and its phaser
+ * registrations are those of the publisher, so tasks created by the section
+ * belong to the publisher's finish. Thread identity and thread-local state
+ * are still those of the executing thread. Exceptions thrown by a section
+ * are reported to the thread that published it.
+ * <p>
+ * Waiting threads block through {@link ForkJoinPool#managedBlock}, so that a
+ * ForkJoinPool can activate a spare worker while one of its workers waits.
+ * The combining array is sized for the number of workers of the runtime, and
+ * grows when the runtime is resized beyond it. Threads that find every slot
+ * taken queue on global isolation instead.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+final class FlatCombiner {
+    /**
+     * Number of times a waiting thread yields before it starts parking.
+     */
+    private static final int SPINS_BEFORE_PARK = 16;
+    /**
+     * Longest time a waiting thread parks before it checks again whether
+     * global isolation is free, as it is not always released by a combiner.
+     */
+    private static final long PARK_NANOS = 50_000L;
+    /**
+     * Maximum number of passes over the combining array per combiner, to
+     * bound how long it runs sections on behalf of others.
+     */
+    private static final int MAX_COMBINING_PASSES = 4;
+
+    /**
+     * The isolated manager whose global isolation this combiner executes
+     * sections in.
+     */
+    private final IsolatedManager isolatedManager;
+    /**
+     * The combining array, holding the sections published by waiting
+     * threads. Slots are filled by publishing threads, and emptied by the
+     * combiner or by a publisher withdrawing its request from a replaced
+     * array. Only replaced while holding global isolation.
+     */
+    private volatile AtomicReferenceArray<Request> slots;
+
+    /**
+     * Constructor.
+     *
+     * @param setIsolatedManager The isolated manager to execute sections in
+     *        global isolation of.
+     * @param nSlots Number of slots of the combining array.
+     */
+    FlatCombiner(final IsolatedManager setIsolatedManager, final int nSlots) {
+        this.isolatedManager = setIsolatedManager;
+        this.slots = new AtomicReferenceArray<>(nSlots);
+    }
+
+    /**
+     * Grow the combining array to at least nSlots slots, for example after
+     * the runtime gained workers. Requests published in the previous array
+     * are executed before it is dropped.
+     *
+     * @param nSlots The minimum number of slots.
+     */
+    void ensureSlots(final int nSlots) {
+        if (nSlots <= slots.length()) {
+            return;
+        }
+        isolatedManager.acquireAllLocks();
+        final AtomicReferenceArray<Request> old = slots;
+        if (nSlots > old.length()) {
+            slots = new AtomicReferenceArray<>(nSlots);
+            // Requests published in the old array after this scan see that
+            // it was replaced, and publish again.
+            runPublished(old);
+        }
+        combineAndRelease();
+    }
+
+    /**
+     * Execute a section in global isolation, on the calling thread or on the
+     * thread holding global isolation. The calling thread must not already
+     * hold global isolation.
+     *
+     * @param section The section to execute.
+     */
+    void execute(final Runnable section) {
+        if (isolatedManager.tryAcquireAllLocks()) {
+            try {
+                section.run();
+            } finally {
+                combineAndRelease();
+            }
+            return;
+        }
+
+        final Request request = new Request(section, Thread.currentThread(),
+                Runtime.currentTask(), Runtime.currentTaskDepth());
+        if (!publish(request)) {
+            // Every slot is taken, queue on global isolation instead.
+            isolatedManager.acquireAllLocks();
+            try {
+                section.run();
+            } finally {
+                combineAndRelease();
+            }
+            return;
+        }
+
+        int spins = 0;
+        while (!request.done) {
+            if (isolatedManager.tryAcquireAllLocks()) {
+                // Our own request is published, so the combiner runs it.
+                combineAndRelease();
+            } else if (spins < SPINS_BEFORE_PARK) {
+                spins++;
+                Thread.yield();
+            } else {
+                final Waiter waiter = new Waiter(request);
+                try {
+                    ForkJoinPool.managedBlock(waiter);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                if (waiter.acquired) {
+                    combineAndRelease();
+                }
+            }
+        }
+        request.reportException();
+    }
+
+    /**
+     * Publish a request in a free slot of the combining array, starting from
+     * a slot selected by the calling thread.
+     *
+     * @param request The request to publish.
+     * @return Whether a free slot was found.
+     */
+    private boolean publish(final Request request) {
+        while (true) {
+            final AtomicReferenceArray<Request> array = slots;
+            final int nSlots = array.length();
+            final int first = (int) (request.thread.getId() % nSlots);
+            int published = -1;
+            for (int i = 0; i < nSlots && published < 0; i++) {
+                final int slot = (first + i) % nSlots;
+                if (array.get(slot) == null
+                        && array.compareAndSet(slot, null, request)) {
+                    published = slot;
+                }
+            }
+            if (published < 0) {
+                return false;
+            }
+            // If the array was replaced meanwhile, its last scan may have
+            // missed the request. Unless a combiner took it, withdraw it and
+            // publish it in the new array.
+            if (slots == array
+                    || !array.compareAndSet(published, request, null)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * While holding global isolation, execute the requests published in the
+     * combining array, then release global isolation.
+     */
+    private void combineAndRelease() {
+        try {
+            boolean found = true;
+            for (int pass = 0; found && pass < MAX_COMBINING_PASSES; pass++) {
+                found = runPublished(slots);
+            }
+        } finally {
+            isolatedManager.releaseAllLocks();
+        }
+    }
+
+    /**
+     * While holding global isolation, take and execute every request
+     * published in a combining array.
+     *
+     * @param array The combining array.
+     * @return Whether any request was found.
+     */
+    private boolean runPublished(final AtomicReferenceArray<Request> array) {
+        boolean found = false;
+        for (int slot = 0; slot < array.length(); slot++) {
+            final Request request = array.get(slot);
+            // A publisher may withdraw its request concurrently, so taking
+            // it must not overwrite a newer value.
+            if (request != null
+                    && array.compareAndSet(slot, request, null)) {
+                request.run();
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Blocks a thread whose request is published until the request has
+     * completed or global isolation is free, in which case this blocker
+     * acquires it.
+     */
+    private final class Waiter implements ForkJoinPool.ManagedBlocker {
+        /**
+         * The request of the blocked thread.
+         */
+        private final Request request;
+        /**
+         * Whether global isolation was acquired while blocking.
+         */
+        private boolean acquired = false;
+
+        /**
+         * Constructor.
+         *
+         * @param setRequest The request of the blocked thread.
+         */
+        Waiter(final Request setRequest) {
+            this.request = setRequest;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (request.done) {
+                return true;
+            }
+            acquired = isolatedManager.tryAcquireAllLocks();
+            return acquired;
+        }
+
+        @Override
+        public boolean block() {
+            LockSupport.parkNanos(this, PARK_NANOS);
+            return false;
+        }
+    }
+
+    /**
+     * A section published by a waiting thread.
+     */
+    private static final class Request {
+        /**
+         * The section to execute.
+         */
+        private final Runnable section;
+        /**
+         * The thread waiting for the section to complete.
+         */
+        private final Thread thread;
+        /**
+         * The task executing on the waiting thread, or null.
+         */
+        private final BaseTask task;
+        /**
+         * The task stack depth of the waiting thread.
+         */
+        private final int taskDepth;
+        /**
+         * Exception thrown by the section, if any.
+         */
+        private Throwable exception;
+        /**
+         * Whether the section has completed, after which exception is
+         * visible to the waiting thread.
+         */
+        private volatile boolean done;
+
+        /**
+         * Constructor.
+         *
+         * @param setSection The section to execute.
+         * @param setThread The thread publishing the section.
+         * @param setTask The task executing on the publishing thread, or
+         *        null.
+         * @param setTaskDepth The task stack depth of the publishing
+         *        thread.
+         */
+        Request(final Runnable setSection, final Thread setThread,
+                final BaseTask setTask, final int setTaskDepth) {
+            this.section = setSection;
+            this.thread = setThread;
+            this.task = setTask;
+            this.taskDepth = setTaskDepth;
+        }
+
+        /**
+         * Execute the section on behalf of the waiting thread, as part of its
+         * task, and wake it up.
+         */
+        void run() {
+            if (thread == Thread.currentThread()) {
+                runSection();
+            } else {
+                Runtime.runOnBehalfOf(task, taskDepth, this::runSection);
+            }
+            done = true;
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Execute the section, recording any exception it throws.
+         */
+        private void runSection() {
+            try {
+                section.run();
+            } catch (final Throwable t) {
+                exception = t;
+            }
+        }
+
+        /**
+         * Rethrow the exception thrown by the section in the waiting thread,
+         * if any.
+         */
+        void reportException() {
+            if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            } else if (exception instanceof Error) {
+                throw (Error) exception;
+            } else if (exception != null) {
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+}
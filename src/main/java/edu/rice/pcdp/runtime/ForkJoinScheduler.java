@@ -0,0 +1,240 @@
+package edu.rice.pcdp.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A scheduler backed by a Java {@link ForkJoinPool}. This is the default PCDP
+ * scheduler.
+ * <p>
+ * The parallelism of a ForkJoinPool is fixed at creation, so this scheduler
+ * resizes by installing a new pool and retiring the old one. Workers of the
+ * old pool finish the tasks already queued on it, and any task they spawn in
+ * the meantime is submitted to the new pool. The old pool is shut down as
+ * soon as it has run out of work, by a thread started for that purpose.
+ * <p>
+ * A retired pool is not shut down right away, as on some JDKs a shut down
+ * pool whose workers are all blocked, for example in a finish, counts as out
+ * of work: it then cancels their tasks. Instead, a pool counts as out of
+ * work once it is quiescent and none of its workers executes a task.
+ *
+ * @author Shams Imam (shams@rice.edu)
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class ForkJoinScheduler implements TaskScheduler {
+
+    /**
+     * Interval at which a retired pool is checked for having run out of
+     * work.
+     */
+    private static final long RETIRE_POLL_MS = 10;
+
+    /**
+     * Whether workers execute their local tasks in FIFO order.
+     */
+    private final boolean asyncMode;
+    /**
+     * The thread pool currently backing this scheduler.
+     */
+    private volatile ForkJoinPool pool;
+    /**
+     * Pools replaced by a resize that may still be running tasks, so that
+     * awaitTermination waits for them.
+     */
+    private final List<ForkJoinPool> retiredPools = new ArrayList<>();
+    /**
+     * The live workers of the current and retired pools.
+     */
+    private final Map<ForkJoinPool, Set<PCDPWorkerThread>> poolWorkers =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Constructor. The pool's worker threads are {@link PCDPWorkerThread}s,
+     * which track the current task in a field.
+     *
+     * @param numWorkers Number of worker threads.
+     * @param setAsyncMode If true, workers execute their local tasks in FIFO
+     *        order rather than the default LIFO order.
+     */
+    public ForkJoinScheduler(final int numWorkers,
+            final boolean setAsyncMode) {
+        this.asyncMode = setAsyncMode;
+        this.pool = createPool(numWorkers);
+    }
+
+    /**
+     * Create a pool of PCDP worker threads.
+     *
+     * @param numWorkers Number of worker threads.
+     * @return A new pool.
+     */
+    private ForkJoinPool createPool(final int numWorkers) {
+        final Set<PCDPWorkerThread> workers = ConcurrentHashMap.newKeySet();
+        final ForkJoinPool newPool = new ForkJoinPool(numWorkers,
+                PCDPWorkerThread.factory(workers), null, asyncMode);
+        poolWorkers.put(newPool, workers);
+        return newPool;
+    }
+
+    /**
+     * Check whether a pool has run out of work. Its quiescence is checked
+     * first, so that the task contexts of its workers are up to date.
+     *
+     * @param p The pool to check.
+     * @return Whether no worker of p executes or waits to execute a task.
+     */
+    private boolean isOutOfWork(final ForkJoinPool p) {
+        if (!p.isQuiescent()) {
+            return false;
+        }
+        for (final PCDPWorkerThread worker : poolWorkers.get(p)) {
+            if (worker.isExecutingTask()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shut down a pool replaced by a resize once it has run out of work.
+     *
+     * @param oldPool The pool to shut down.
+     */
+    private void retire(final ForkJoinPool oldPool) {
+        final Thread retirer = new Thread(() -> {
+            while (!isOutOfWork(oldPool)) {
+                try {
+                    Thread.sleep(RETIRE_POLL_MS);
+                } catch (final InterruptedException ie) {
+                    break;
+                }
+            }
+            oldPool.shutdown();
+        }, "pcdp-pool-retirer");
+        retirer.setDaemon(true);
+        retirer.start();
+    }
+
+    @Override
+    public void execute(final BaseTask task) {
+        final ForkJoinPool currentPool = pool;
+        final Thread currentThread = Thread.currentThread();
+        if (currentThread instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) currentThread).getPool()
+                    == currentPool) {
+            task.fork();
+            return;
+        }
+        try {
+            currentPool.execute(task);
+        } catch (final RejectedExecutionException ex) {
+            if (pool == currentPool) {
+                throw ex;
+            }
+            // Raced with a resize, use the new pool.
+            execute(task);
+        }
+    }
+
+    @Override
+    public void join(final BaseTask task) {
+        // ForkJoinTask.join already unforks the task if it is at the top of
+        // the local queue, and helps complete it otherwise.
+        final Thread currentThread = Thread.currentThread();
+        if (currentThread instanceof PCDPWorkerThread) {
+            ((PCDPWorkerThread) currentThread).joinTask(task);
+        } else {
+            task.join();
+        }
+    }
+
+    @Override
+    public void helpUntil(final BooleanSupplier done) {
+        /*
+         * Blocking calls such as CompletableFuture.get already go through
+         * ForkJoinPool.managedBlock, which activates a spare worker.
+         */
+    }
+
+    @Override
+    public int surplusQueuedTaskCount() {
+        return ForkJoinTask.getSurplusQueuedTaskCount();
+    }
+
+    @Override
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public synchronized void resize(final int numWorkers) {
+        final ForkJoinPool oldPool = pool;
+        if (oldPool.getParallelism() == numWorkers) {
+            return;
+        }
+        pool = createPool(numWorkers);
+
+        retiredPools.removeIf((p) -> {
+            if (p.isTerminated()) {
+                poolWorkers.remove(p);
+                return true;
+            }
+            return false;
+        });
+        retiredPools.add(oldPool);
+        retire(oldPool);
+    }
+
+    @Override
+    public int activeWorkerCount() {
+        return pool.getActiveThreadCount();
+    }
+
+    @Override
+    public long queuedTaskCount() {
+        final ForkJoinPool currentPool = pool;
+        return currentPool.getQueuedTaskCount()
+            + currentPool.getQueuedSubmissionCount();
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        for (final ForkJoinPool retiredPool : retiredPools) {
+            retiredPool.shutdown();
+        }
+        pool.shutdown();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        final List<ForkJoinPool> pools;
+        synchronized (this) {
+            pools = new ArrayList<>(retiredPools);
+            pools.add(pool);
+        }
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (final ForkJoinPool p : pools) {
+            final long remaining = deadline - System.nanoTime();
+            if (!p.awaitTermination(Math.max(remaining, 0),
+                        TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return pool.toString();
+    }
+}
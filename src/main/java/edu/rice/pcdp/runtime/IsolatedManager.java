@@ -1,116 +1,443 @@
 package edu.rice.pcdp.runtime;
 
-import java.util.TreeSet;
-import java.util.Comparator;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 /**
  * A wrapper for managing Java locks used to implement global and object-based
  * isolation.
+ * <p>
+ * Isolation uses two levels of locks. Global isolation holds a single global
+ * lock in exclusive mode. Object-based isolation holds the global lock in
+ * shared mode, so that it excludes global isolation but not other
+ * object-based isolation, and then the locks its objects are striped over.
+ * <p>
+ * Read-only isolation does not take these locks. Each of them is paired with
+ * a StampedLock, held in write mode by the outermost isolated section holding
+ * the lock, and read-only isolation validates optimistic reads against those
+ * StampedLocks, only holding them in read mode when validation keeps failing.
+ * <p>
+ * Global isolation can optionally be executed by a {@link FlatCombiner}, in
+ * which case a thread that finds the global lock held hands its section over
+ * to the thread holding it rather than queuing on the lock.
  *
  * @author Shams Imam (shams@rice.edu)
  * @author Max Grossman (jmg3@rice.edu)
  */
 public final class IsolatedManager {
+    /**
+     * The number of locks used by the default constructor.
+     */
+    private static final int DEFAULT_N_LOCKS = 256;
+    /**
+     * Number of optimistic attempts of read-only isolation before it falls
+     * back to holding its locks in read mode.
+     */
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 2;
+
     /**
      * The number of locks to use to implement hash-based, object-based
      * isolation. More locks reduce contention, but less locks reduce memory
      * consumption.
      */
-    private final int nLocks = 64;
+    private final int nLocks;
     /**
-     * The Java locks that are actually used to implement isolated mutual
+     * The locks that are actually used to implement isolated mutual
      * exclusion.
      */
-    private final Lock[] locks = new Lock[nLocks];
+    private final Stripe[] stripes;
+    /**
+     * Lock held in exclusive mode by global isolation, and in shared mode by
+     * object-based isolation.
+     */
+    private final ReentrantReadWriteLock globalLock =
+        new ReentrantReadWriteLock();
+    /**
+     * Lock held in write mode by the outermost global isolated section, which
+     * read-only isolation validates its optimistic reads against.
+     */
+    private final StampedLock globalStampedLock = new StampedLock();
+    /**
+     * Stamp of the write mode of globalStampedLock, only accessed by the
+     * thread holding globalLock in exclusive mode.
+     */
+    private long globalWriteStamp;
+    /**
+     * Executor of contended global isolated sections, or null if they queue
+     * on the global lock.
+     */
+    private final FlatCombiner combiner;
 
     /**
      * Default constructor, initialized backing locks.
      */
     public IsolatedManager() {
-        for (int i = 0; i < locks.length; i++) {
-            locks[i] = new ReentrantLock();
+        this(DEFAULT_N_LOCKS);
+    }
+
+    /**
+     * Constructor, initializing setNLocks backing locks.
+     *
+     * @param setNLocks The number of locks to stripe object-based isolation
+     *        over.
+     */
+    public IsolatedManager(final int setNLocks) {
+        this(setNLocks, 0);
+    }
+
+    /**
+     * Constructor, initializing setNLocks backing locks and optionally
+     * executing contended global isolated sections by flat combining.
+     *
+     * @param setNLocks The number of locks to stripe object-based isolation
+     *        over.
+     * @param setCombiningSlots The number of contending threads that can
+     *        hand their global isolated sections over to the thread holding
+     *        global isolation, or 0 to disable flat combining.
+     */
+    public IsolatedManager(final int setNLocks, final int setCombiningSlots) {
+        if (setNLocks <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of locks must be positive, got " + setNLocks);
+        }
+        if (setCombiningSlots < 0) {
+            throw new IllegalArgumentException("Number of combining slots "
+                    + "must not be negative, got " + setCombiningSlots);
         }
+        this.nLocks = setNLocks;
+        this.stripes = new Stripe[nLocks];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.combiner = setCombiningSlots == 0 ? null
+            : new FlatCombiner(this, setCombiningSlots);
     }
 
     /**
-     * Compute an index into the locks array for the provided object.
+     * Make room for at least nSlots threads to hand their global isolated
+     * sections over to the thread holding global isolation, if contended
+     * global isolation is executed by flat combining.
+     *
+     * @param nSlots The minimum number of combining slots.
+     */
+    void ensureCombiningSlots(final int nSlots) {
+        if (combiner != null) {
+            combiner.ensureSlots(nSlots);
+        }
+    }
+
+    /**
+     * Get the number of locks that object-based isolation is striped over.
+     *
+     * @return The number of locks.
+     */
+    public int numLocks() {
+        return nLocks;
+    }
+
+    /**
+     * Compute an index into the locks array for the provided object. The
+     * index is derived from the identity hash code of the object, which is
+     * cheap, stable for the lifetime of the object, and unaffected by
+     * overrides of hashCode.
      *
      * @param obj The object to compute a lock index for use in object-based
      *        isolation.
      * @return Lock index for obj.
      */
     private int lockIndexFor(final Object obj) {
-        return Math.abs(obj.hashCode()) % nLocks;
+        return Math.floorMod(System.identityHashCode(obj), nLocks);
     }
 
     /**
-     * Sort the provided list of objects by the lock indices they will need to
-     * acquire for object-based isolation.
+     * Check that the calling thread may enter global isolation.
      *
-     * @param objects Objects to implement object-based isolation for.
-     * @return Sorted set of objects
+     * @throws IllegalStateException if the calling thread is executing
+     *         object-based isolation outside of global isolation, as it
+     *         cannot exclude other object-based isolation without releasing
+     *         its own.
      */
-    private TreeSet<Object> createSortedObjects(final Object[] objects) {
-        TreeSet<Object> sorted = new TreeSet<Object>(new Comparator<Object>() {
-            @Override
-            public int compare(final Object o1, final Object o2) {
-                return lockIndexFor(o1) - lockIndexFor(o2);
-            }
-        });
-
-        for (Object obj : objects) {
-            sorted.add(obj);
+    private void checkGlobalIsolationAllowed() {
+        if (globalLock.getReadHoldCount() > 0
+                && !globalLock.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("Global isolation cannot be "
+                    + "nested inside object-based isolation");
         }
+    }
 
-        return sorted;
+    /**
+     * Execute a section in global isolation, excluding all other global and
+     * object-based isolation. With flat combining enabled, a contended
+     * section may be executed by the thread holding global isolation on
+     * behalf of the calling thread, which still receives any exception it
+     * throws.
+     *
+     * @param section The section to execute.
+     * @throws IllegalStateException if the calling thread is executing
+     *         object-based isolation outside of global isolation.
+     */
+    public void isolated(final Runnable section) {
+        checkGlobalIsolationAllowed();
+        if (combiner != null && !globalLock.isWriteLockedByCurrentThread()) {
+            combiner.execute(section);
+            return;
+        }
+        acquireAllLocks();
+        try {
+            section.run();
+        } finally {
+            releaseAllLocks();
+        }
     }
 
     /**
-     * For global isolation, acquire all locks.
+     * For global isolation, acquire the global lock in exclusive mode, which
+     * excludes all other global and object-based isolation.
+     *
+     * @throws IllegalStateException if the calling thread is executing
+     *         object-based isolation outside of global isolation, as it
+     *         cannot exclude other object-based isolation without releasing
+     *         its own.
      */
     public void acquireAllLocks() {
-        for (int i = 0; i < locks.length; i++) {
-            locks[i].lock();
+        checkGlobalIsolationAllowed();
+        globalLock.writeLock().lock();
+        if (globalLock.getWriteHoldCount() == 1) {
+            globalWriteStamp = globalStampedLock.writeLock();
+        }
+    }
+
+    /**
+     * For global isolation, acquire the global lock in exclusive mode if it
+     * is immediately available.
+     *
+     * @return Whether the global lock was acquired.
+     */
+    boolean tryAcquireAllLocks() {
+        if (!globalLock.writeLock().tryLock()) {
+            return false;
+        }
+        if (globalLock.getWriteHoldCount() == 1) {
+            globalWriteStamp = globalStampedLock.writeLock();
         }
+        return true;
     }
 
     /**
-     * For global isolation, release all locks.
+     * For global isolation, release the global lock.
      */
     public void releaseAllLocks() {
-        for (int i = locks.length - 1; i >= 0; i--) {
-            locks[i].unlock();
+        if (globalLock.getWriteHoldCount() == 1) {
+            globalStampedLock.unlockWrite(globalWriteStamp);
         }
+        globalLock.writeLock().unlock();
     }
 
     /**
-     * For object-based isolation, acquire the locks in this isolated manager
-     * corresponding to the provided objects.
+     * For object-based isolation on a single object, acquire the lock in this
+     * isolated manager corresponding to it.
      *
-     * @param objects Objects to perform object-based isolation on.
+     * @param obj Object to perform object-based isolation on.
      */
-    public void acquireLocksFor(final Object[] objects) {
-        final TreeSet<Object> sorted = createSortedObjects(objects);
+    public void acquireLockFor(final Object obj) {
+        final int lockIndex = lockIndexFor(obj);
+        globalLock.readLock().lock();
+        stripes[lockIndex].lock();
+    }
 
-        for (Object obj : sorted) {
-            final int lockIndex = lockIndexFor(obj);
-            locks[lockIndex].lock();
+    /**
+     * After completing a region of object-based isolation on a single object,
+     * release the lock acquired for it.
+     *
+     * @param obj Object to perform object-based isolation on.
+     */
+    public void releaseLockFor(final Object obj) {
+        stripes[lockIndexFor(obj)].unlock();
+        globalLock.readLock().unlock();
+    }
+
+    /**
+     * For object-based isolation on two objects, acquire the locks in this
+     * isolated manager corresponding to them, in increasing index order.
+     *
+     * @param obj1 First object to perform object-based isolation on.
+     * @param obj2 Second object to perform object-based isolation on.
+     */
+    public void acquireLocksFor(final Object obj1, final Object obj2) {
+        final int index1 = lockIndexFor(obj1);
+        final int index2 = lockIndexFor(obj2);
+        globalLock.readLock().lock();
+        stripes[Math.min(index1, index2)].lock();
+        if (index1 != index2) {
+            stripes[Math.max(index1, index2)].lock();
+        }
+    }
+
+    /**
+     * After completing a region of object-based isolation on two objects,
+     * release the locks acquired for them.
+     *
+     * @param obj1 First object to perform object-based isolation on.
+     * @param obj2 Second object to perform object-based isolation on.
+     */
+    public void releaseLocksFor(final Object obj1, final Object obj2) {
+        final int index1 = lockIndexFor(obj1);
+        final int index2 = lockIndexFor(obj2);
+        if (index1 != index2) {
+            stripes[Math.max(index1, index2)].unlock();
         }
+        stripes[Math.min(index1, index2)].unlock();
+        globalLock.readLock().unlock();
     }
 
     /**
-     * After completing a region of object-based isolation, release the same
-     * locks that were originally acquired for the provided objects.
+     * For object-based isolation on any number of objects, acquire the locks
+     * in this isolated manager corresponding to the provided objects, in
+     * increasing index order and each only once.
      *
-     * @param objects Objects to perform object-based isolation on
+     * @param objects Objects to perform object-based isolation on.
+     * @return The indices of the acquired locks, to pass to releaseLocks.
      */
-    public void releaseLocksFor(final Object[] objects) {
-        final TreeSet<Object> sorted = createSortedObjects(objects);
-        for (Object obj : sorted) {
+    public int[] acquireLocksFor(final Object[] objects) {
+        // Insertion sort, as isolated sections rarely name many objects.
+        final int[] lockIndices = new int[objects.length];
+        int nIndices = 0;
+        for (final Object obj : objects) {
             final int lockIndex = lockIndexFor(obj);
-            locks[lockIndex].unlock();
+            int i = nIndices;
+            while (i > 0 && lockIndices[i - 1] > lockIndex) {
+                i--;
+            }
+            if (i > 0 && lockIndices[i - 1] == lockIndex) {
+                continue;
+            }
+            System.arraycopy(lockIndices, i, lockIndices, i + 1,
+                    nIndices - i);
+            lockIndices[i] = lockIndex;
+            nIndices++;
+        }
+        final int[] sorted = nIndices == lockIndices.length ? lockIndices
+            : Arrays.copyOf(lockIndices, nIndices);
+
+        globalLock.readLock().lock();
+        for (final int lockIndex : sorted) {
+            stripes[lockIndex].lock();
+        }
+        return sorted;
+    }
+
+    /**
+     * After completing a region of object-based isolation, release the locks
+     * returned by acquireLocksFor.
+     *
+     * @param lockIndices The indices of the acquired locks.
+     */
+    public void releaseLocks(final int[] lockIndices) {
+        for (int i = lockIndices.length - 1; i >= 0; i--) {
+            stripes[lockIndices[i]].unlock();
+        }
+        globalLock.readLock().unlock();
+    }
+
+    /**
+     * Execute a read-only body in isolation on an object: the value it
+     * returns is consistent with all isolated sections on that object, and
+     * all global ones, having either completed or not started. The body is
+     * first run optimistically, without excluding anything, and its result
+     * is only returned if no such section ran concurrently. Otherwise it is
+     * run again, eventually holding the locks of obj in read mode, which
+     * excludes isolated sections but not other read-only bodies.
+     *
+     * @param obj The object to isolate on.
+     * @param reader The read-only body.
+     * @param <T> Type of the value returned by reader.
+     * @return The value returned by the last execution of reader.
+     */
+    public <T> T read(final Object obj, final Supplier<T> reader) {
+        final Stripe stripe = stripes[lockIndexFor(obj)];
+        if (globalLock.isWriteLockedByCurrentThread()
+                || stripe.lock.isHeldByCurrentThread()) {
+            // The caller already excludes all isolated sections on obj.
+            return reader.get();
+        }
+
+        for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            final long globalStamp = globalStampedLock.tryOptimisticRead();
+            final long stripeStamp = stripe.stampedLock.tryOptimisticRead();
+            if (globalStamp == 0L || stripeStamp == 0L) {
+                // An isolated section is running, do not wait for it here.
+                break;
+            }
+            final T result;
+            try {
+                result = reader.get();
+            } catch (final RuntimeException ex) {
+                // The body may have failed on inconsistent state, only report
+                // the exception if it did not.
+                if (globalStampedLock.validate(globalStamp)
+                        && stripe.stampedLock.validate(stripeStamp)) {
+                    throw ex;
+                }
+                continue;
+            }
+            if (globalStampedLock.validate(globalStamp)
+                    && stripe.stampedLock.validate(stripeStamp)) {
+                return result;
+            }
+        }
+
+        globalLock.readLock().lock();
+        final long stamp = stripe.stampedLock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            stripe.stampedLock.unlockRead(stamp);
+            globalLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One of the locks object-based isolation is striped over. Isolated
+     * sections exclude each other with a reentrant lock that spins before
+     * parking, as they are typically short, and the outermost section
+     * holding it also holds a StampedLock in write mode, which excludes
+     * read-only isolation.
+     */
+    private static final class Stripe {
+        /**
+         * Lock excluding isolated sections on this stripe from each other.
+         */
+        private final SpinParkLock lock = new SpinParkLock();
+        /**
+         * Lock excluding read-only isolation from isolated sections.
+         */
+        private final StampedLock stampedLock = new StampedLock();
+        /**
+         * Stamp of the write mode of stampedLock, only accessed by the thread
+         * holding lock.
+         */
+        private long writeStamp;
+
+        /**
+         * Acquire this stripe for an isolated section.
+         */
+        void lock() {
+            lock.lock();
+            if (lock.getHoldCount() == 1) {
+                writeStamp = stampedLock.writeLock();
+            }
+        }
+
+        /**
+         * Release this stripe at the end of an isolated section.
+         */
+        void unlock() {
+            if (lock.getHoldCount() == 1) {
+                stampedLock.unlockWrite(writeStamp);
+            }
+            lock.unlock();
         }
     }
 }
@@ -0,0 +1,19 @@
+package edu.rice.pcdp.runtime;
+
+/**
+ * The body of a parallel loop as seen by the runtime: a procedure that
+ * sequentially executes all iterations in a contiguous range of the loop's
+ * iteration space.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public interface LoopBody {
+
+    /**
+     * Execute all iterations from startInc to endInc, inclusive.
+     *
+     * @param startInc The first iteration to execute (inclusive).
+     * @param endInc The last iteration to execute (inclusive).
+     */
+    void apply(int startInc, int endInc);
+}
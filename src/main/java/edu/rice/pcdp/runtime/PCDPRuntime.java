@@ -0,0 +1,409 @@
+package edu.rice.pcdp.runtime;
+
+import edu.rice.pcdp.config.Configuration;
+import edu.rice.pcdp.config.RuntimeConfig;
+import edu.rice.pcdp.config.SystemProperty;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An instance of the PCDP runtime: a scheduler with its own worker threads,
+ * the locks used to implement isolated, and runtime statistics. The static
+ * APIs in {@link edu.rice.pcdp.PCDP} use a default instance (see
+ * {@link Runtime#defaultRuntime()}), but additional instances can be created
+ * to give part of an application its own workers, for example so that
+ * latency-critical work does not queue up behind bulk computation. A finish
+ * scope is bound to a runtime with
+ * {@link edu.rice.pcdp.PCDP#finish(PCDPRuntime, Runnable)}, and all tasks
+ * transitively created inside it execute on that runtime.
+ * <p>
+ * All settings of a runtime are read once, from the {@link RuntimeConfig}
+ * it is created with. Isolated sections only exclude other isolated sections
+ * executing on the same runtime.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class PCDPRuntime {
+
+    /**
+     * Locks used to implement global and object-based isolation.
+     */
+    private final IsolatedManager isolatedManager;
+
+    /**
+     * Count all finish scopes.
+     */
+    final AtomicLong finishCount = new AtomicLong();
+    /**
+     * Count all asynchronous tasks.
+     */
+    final AtomicLong asyncCount = new AtomicLong();
+    /**
+     * Count all future tasks.
+     */
+    final AtomicLong futureCount = new AtomicLong();
+    /**
+     * Count all parallel loop tasks.
+     */
+    final AtomicLong loopTaskCount = new AtomicLong();
+    /**
+     * Count all async and future bodies executed inline instead of as tasks.
+     */
+    final AtomicLong inlinedCount = new AtomicLong();
+
+    /**
+     * The configuration of this runtime. Replaced by an updated copy when the
+     * runtime is resized or its scheduler is replaced.
+     */
+    private volatile RuntimeConfig config;
+    /**
+     * The scheduler executing the tasks of this runtime.
+     */
+    private volatile TaskScheduler scheduler;
+    /**
+     * The utilization-driven resizing policy, or null if elastic resizing is
+     * disabled. Guarded by this.
+     */
+    private ElasticResizer elasticResizer = null;
+
+    /**
+     * Create a runtime configured from the system properties, using the
+     * scheduler selected by the {@link SystemProperty#scheduler} property.
+     *
+     * @param setNumWorkers Number of worker threads.
+     */
+    public PCDPRuntime(final int setNumWorkers) {
+        this(RuntimeConfig.newBuilder().numWorkers(setNumWorkers).build());
+    }
+
+    /**
+     * Create a runtime configured from the system properties, using the
+     * named scheduler: forkjoin, workstealing, serial or virtual.
+     *
+     * @param schedulerName Name of the scheduler to use.
+     * @param setNumWorkers Number of worker threads.
+     */
+    public PCDPRuntime(final String schedulerName, final int setNumWorkers) {
+        this(RuntimeConfig.newBuilder().scheduler(schedulerName)
+                .numWorkers(setNumWorkers).build());
+    }
+
+    /**
+     * Create a runtime with the provided configuration.
+     *
+     * @param setConfig Configuration of the new runtime.
+     */
+    public PCDPRuntime(final RuntimeConfig setConfig) {
+        this.config = setConfig;
+        this.isolatedManager = createIsolatedManager(setConfig);
+        this.scheduler = createScheduler(setConfig);
+    }
+
+    /**
+     * Describe the kind of scheduler selected by a configuration. Two
+     * configurations with the same description can share a scheduler.
+     *
+     * @param config The configuration.
+     * @return The scheduler kind.
+     */
+    private static String schedulerKind(final RuntimeConfig config) {
+        if ("forkjoin".equals(config.scheduler()) && config.asyncMode()) {
+            return "forkjoin-fifo";
+        }
+        return config.scheduler();
+    }
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param config The configuration selecting the scheduler and its number
+     *        of workers.
+     * @return A new scheduler.
+     */
+    private static TaskScheduler createScheduler(final RuntimeConfig config) {
+        final int numWorkers = config.numWorkers();
+        switch (schedulerKind(config)) {
+            case "forkjoin":
+                return new ForkJoinScheduler(numWorkers, false);
+            case "forkjoin-fifo":
+                return new ForkJoinScheduler(numWorkers, true);
+            case "workstealing":
+                return new WorkStealingScheduler(numWorkers);
+            case "serial":
+                return new SerialScheduler();
+            case "virtual":
+                return new VirtualThreadScheduler(numWorkers);
+            default:
+                throw new IllegalStateException(
+                        "Unknown scheduler: " + config.scheduler());
+        }
+    }
+
+    /**
+     * Create a new isolated manager.
+     *
+     * @param config The configuration selecting the implementation of
+     *        isolation.
+     * @return A new isolated manager.
+     */
+    private static IsolatedManager createIsolatedManager(
+            final RuntimeConfig config) {
+        switch (config.isolationMode()) {
+            case "lock":
+                return new IsolatedManager(config.isolatedLocks());
+            case "combining":
+                return new IsolatedManager(config.isolatedLocks(),
+                        combiningSlots(Math.max(config.numWorkers(),
+                            config.elastic() ? config.maxWorkers() : 0)));
+            default:
+                throw new IllegalStateException(
+                        "Unknown isolation mode: " + config.isolationMode());
+        }
+    }
+
+    /**
+     * Get the number of combining slots of an isolated manager executing
+     * global isolation by flat combining.
+     *
+     * @param numWorkers The number of workers of the runtime.
+     * @return Room for every worker, plus threads outside the runtime.
+     */
+    private static int combiningSlots(final int numWorkers) {
+        return 2 * numWorkers;
+    }
+
+    /**
+     * Get the scheduler currently executing the tasks of this runtime.
+     *
+     * @return The current scheduler.
+     */
+    TaskScheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Decide whether a task about to be spawned by the current thread should
+     * rather execute inline, because there already is enough parallel slack
+     * for the workers of this runtime.
+     *
+     * @return true if the task should execute inline.
+     */
+    boolean shouldInline() {
+        final RuntimeConfig currentConfig = config;
+        final int taskDepth = currentConfig.inlineTaskDepth();
+        if (taskDepth > 0 && Runtime.currentTaskDepth() >= taskDepth) {
+            return true;
+        }
+        final int queueDepth = currentConfig.inlineQueueDepth();
+        return queueDepth > 0
+            && scheduler.surplusQueuedTaskCount() > queueDepth;
+    }
+
+    /**
+     * Get the configuration of this runtime, reflecting its current number
+     * of workers and scheduler.
+     *
+     * @return The configuration of this runtime.
+     */
+    public RuntimeConfig config() {
+        return config;
+    }
+
+    /**
+     * Get the locks used to implement isolated on this runtime.
+     *
+     * @return The isolated manager of this runtime.
+     */
+    public IsolatedManager isolatedManager() {
+        return isolatedManager;
+    }
+
+    /**
+     * Get the number of worker threads this runtime was sized to. Parallel
+     * loops use this to decide how finely to split their iterations.
+     *
+     * @return The number of workers.
+     */
+    public int numWorkers() {
+        return config.numWorkers();
+    }
+
+    /**
+     * Change the number of worker threads of this runtime while tasks
+     * continue to execute.
+     *
+     * @param setNumWorkers The new number of workers.
+     */
+    public synchronized void resizeWorkerThreads(final int setNumWorkers) {
+        final RuntimeConfig newConfig =
+            config.toBuilder().numWorkers(setNumWorkers).build();
+        isolatedManager.ensureCombiningSlots(combiningSlots(setNumWorkers));
+        scheduler.resize(setNumWorkers);
+        config = newConfig;
+    }
+
+    /**
+     * Resize this runtime to the number of workers of newConfig, replacing
+     * its scheduler by a new one if newConfig selects a different kind of
+     * scheduler. Replacing the scheduler waits for the old one to terminate,
+     * so no tasks may be executing or pending on this runtime in that case.
+     * Settings other than the scheduler and the number of workers are kept.
+     *
+     * @param newConfig The configuration selecting the scheduler and the
+     *        number of workers to use.
+     * @throws InterruptedException If interrupted while waiting for the old
+     *         scheduler to terminate.
+     * @throws IllegalStateException If the old scheduler did not terminate
+     *         in time. It then remains the scheduler of this runtime, but no
+     *         longer accepts new tasks.
+     */
+    synchronized void reconfigure(final RuntimeConfig newConfig)
+            throws InterruptedException {
+        if (schedulerKind(newConfig).equals(schedulerKind(config))) {
+            resizeWorkerThreads(newConfig.numWorkers());
+            return;
+        }
+
+        final TaskScheduler newScheduler = createScheduler(newConfig);
+
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+            newScheduler.shutdown();
+            throw new IllegalStateException("Cannot replace the scheduler of "
+                    + "a runtime whose tasks are still executing");
+        }
+
+        config = config.toBuilder().scheduler(newConfig.scheduler())
+            .asyncMode(newConfig.asyncMode())
+            .numWorkers(newConfig.numWorkers()).build();
+        scheduler = newScheduler;
+    }
+
+    /**
+     * Resize expected in place, unless it has been replaced by another
+     * scheduler in the meantime. Used by the elastic resizing policy.
+     *
+     * @param expected The scheduler to resize.
+     * @param setNumWorkers The new number of workers.
+     */
+    synchronized void resizeLive(final TaskScheduler expected,
+            final int setNumWorkers) {
+        if (scheduler == expected) {
+            resizeWorkerThreads(setNumWorkers);
+        }
+    }
+
+    /**
+     * Start resizing the worker pool of this runtime based on its
+     * utilization, replacing any previously started policy. The policy
+     * samples the scheduler every {@link RuntimeConfig#elasticPeriodMs()}
+     * milliseconds.
+     *
+     * @param minWorkers Lower bound on the number of workers.
+     * @param maxWorkers Upper bound on the number of workers.
+     */
+    public synchronized void startElasticResizing(final int minWorkers,
+            final int maxWorkers) {
+        final ElasticResizer newResizer = new ElasticResizer(this,
+                minWorkers, maxWorkers, config.elasticPeriodMs());
+        stopElasticResizing();
+        elasticResizer = newResizer;
+        elasticResizer.start();
+    }
+
+    /**
+     * Stop resizing the worker pool of this runtime based on its
+     * utilization. The pool keeps its current size.
+     */
+    public synchronized void stopElasticResizing() {
+        if (elasticResizer != null) {
+            elasticResizer.stop();
+            elasticResizer = null;
+        }
+    }
+
+    /**
+     * Initiate an orderly shutdown of this runtime. Tasks already submitted
+     * still execute, but no new tasks may be created.
+     */
+    public synchronized void shutdown() {
+        stopElasticResizing();
+        scheduler.shutdown();
+    }
+
+    /**
+     * Wait for the worker threads of this runtime to exit after a shutdown.
+     *
+     * @param timeout Maximum time to wait.
+     * @param unit Unit of timeout.
+     * @return true if this runtime terminated, false if the timeout elapsed
+     *         first.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return scheduler.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Get the number of finish scopes created on this runtime.
+     *
+     * @return The number of finish scopes created so far.
+     */
+    public long numFinishes() {
+        return finishCount.get();
+    }
+
+    /**
+     * Get the number of asyncs created on this runtime.
+     *
+     * @return The number of asyncs created so far.
+     */
+    public long numAsyncs() {
+        return asyncCount.get();
+    }
+
+    /**
+     * Get the number of futures created on this runtime.
+     *
+     * @return The number of futures created so far.
+     */
+    public long numFutures() {
+        return futureCount.get();
+    }
+
+    /**
+     * Get the number of parallel loop tasks created on this runtime.
+     *
+     * @return The number of parallel loop tasks created so far.
+     */
+    public long numLoopTasks() {
+        return loopTaskCount.get();
+    }
+
+    /**
+     * Get the number of async and future bodies that executed inline on
+     * this runtime instead of as separate tasks.
+     *
+     * @return The number of inlined tasks so far.
+     */
+    public long numInlinedTasks() {
+        return inlinedCount.get();
+    }
+
+    /**
+     * Print some basic statistics of this runtime.
+     */
+    public void showRuntimeStats() {
+        System.out.println("Runtime Stats (" + Configuration.BUILD_INFO
+                + "): ");
+        System.out.println("   " + config.toString());
+        System.out.println("   " + scheduler.toString());
+        System.out.println("   # finishes = " + numFinishes());
+        System.out.println("   # asyncs = " + numAsyncs());
+        System.out.println("   # futures = " + numFutures());
+        System.out.println("   # loop tasks = " + numLoopTasks());
+        System.out.println("   # inlined tasks = " + numInlinedTasks());
+    }
+}
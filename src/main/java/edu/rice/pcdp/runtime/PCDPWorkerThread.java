@@ -0,0 +1,93 @@
+package edu.rice.pcdp.runtime;
+
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * A ForkJoinPool worker thread carrying its own TaskContext, so that the
+ * runtime can find the current task of a worker without a ThreadLocal lookup.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+final class PCDPWorkerThread extends ForkJoinWorkerThread
+        implements TaskContext.Carrier {
+
+    /**
+     * The live workers of the pool this thread works in.
+     */
+    private final Set<PCDPWorkerThread> poolWorkers;
+    /**
+     * Task context of this thread.
+     */
+    private final TaskContext taskContext = new TaskContext();
+    /**
+     * Number of joins this thread is blocked in. A finish scope waits for
+     * its tasks after it stopped being the current task.
+     */
+    private int joins = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param pool The pool this thread works in.
+     * @param setPoolWorkers The live workers of pool, which this thread
+     *        joins until it terminates.
+     */
+    private PCDPWorkerThread(final ForkJoinPool pool,
+            final Set<PCDPWorkerThread> setPoolWorkers) {
+        super(pool);
+        this.poolWorkers = setPoolWorkers;
+        poolWorkers.add(this);
+    }
+
+    /**
+     * Create a factory for the workers of a pool created by
+     * {@link ForkJoinScheduler}.
+     *
+     * @param poolWorkers Set the live workers of the pool are kept in.
+     * @return A new factory.
+     */
+    static ForkJoinPool.ForkJoinWorkerThreadFactory factory(
+            final Set<PCDPWorkerThread> poolWorkers) {
+        return (pool) -> new PCDPWorkerThread(pool, poolWorkers);
+    }
+
+    /**
+     * Wait for a task to complete on this thread, helping to execute it and
+     * its subtasks.
+     *
+     * @param task The task to join.
+     */
+    void joinTask(final BaseTask task) {
+        joins++;
+        try {
+            task.join();
+        } finally {
+            joins--;
+        }
+    }
+
+    /**
+     * Check whether this thread is executing a task or waiting for one. Only
+     * reliable when called after observing the pool of this thread
+     * quiescent, as workers update the state of their pool after starting
+     * and before finishing a task, and before blocking.
+     *
+     * @return Whether a task is executing on this thread.
+     */
+    boolean isExecutingTask() {
+        return taskContext.currentTask != null || joins > 0;
+    }
+
+    @Override
+    public TaskContext taskContext() {
+        return taskContext;
+    }
+
+    @Override
+    protected void onTermination(final Throwable exception) {
+        poolWorkers.remove(this);
+        super.onTermination(exception);
+    }
+}
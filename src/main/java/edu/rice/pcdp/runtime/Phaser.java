@@ -0,0 +1,616 @@
+package edu.rice.pcdp.runtime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A phaser synchronizes a dynamic set of tasks in phases. Each registered
+ * task is registered in a {@link PhaserMode}: signalling tasks must all
+ * signal before the phaser advances to its next phase, and waiting tasks
+ * block until the phaser has advanced past their current phase. A task
+ * registered in {@link PhaserMode#SIG_WAIT} mode that calls {@link #next()}
+ * therefore behaves as in a barrier, while tasks in SIG and WAIT mode can
+ * be used for point-to-point synchronization, as between a producer and its
+ * consumers.
+ * <p>
+ * The task creating a phaser is registered on it, and tasks spawned with
+ * {@link edu.rice.pcdp.PCDP#asyncPhased} are registered by their parent
+ * before they start, so that the phaser cannot advance without them. A task
+ * is dropped from all of its phasers when it completes.
+ * <p>
+ * Waiting blocks the calling worker thread, and a blocked worker cannot run
+ * the tasks queued behind it, some of which may be the very tasks the phaser
+ * waits for. A task that has been waiting for a while on tasks that have not
+ * started yet therefore compensates for its blocked worker with a spare one,
+ * which runs those tasks one after the other, so that phasers make progress
+ * on any scheduler and number of workers. Each task is handed to at most one
+ * spare worker, and a waiting task starts at most one spare worker per
+ * {@link #RESCUE_DELAY_MS}. This is a fallback: for performance, no more
+ * tasks should take part in a phaser than there are workers to run them.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class Phaser {
+
+    /**
+     * Number of times a waiting task polls the phase before blocking. At a
+     * barrier between tasks that each run on their own worker, the last task
+     * usually arrives within this window, so the others avoid the cost of
+     * parking and unparking their thread. While some signalling tasks have
+     * not started yet, the waiting task yields between polls to let other
+     * workers pick them up.
+     */
+    private static final int SPIN_LIMIT = 1 << 10;
+    /**
+     * Time in milliseconds a blocked task waits for unstarted signalling
+     * tasks to be picked up by a worker, before starting them itself.
+     */
+    private static final long RESCUE_DELAY_MS = 10;
+
+    /**
+     * Protects the phase counters below. A lock is used rather than a monitor
+     * so that waiting virtual threads do not pin their carrier thread.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signalled whenever the phaser advances.
+     */
+    private final Condition advanced = lock.newCondition();
+    /**
+     * Current phase. Written with the lock held.
+     */
+    private volatile int phase = 0;
+    /**
+     * Number of registered tasks that signal.
+     */
+    private int numSignalers = 0;
+    /**
+     * Number of signalling tasks that have not signalled the current phase.
+     */
+    private int pendingSignals = 0;
+    /**
+     * Number of registered signalling tasks that have not started executing
+     * yet. Written with the lock held.
+     */
+    private volatile int unstartedSignalers = 0;
+    /**
+     * The registered signalling tasks that have neither started executing
+     * nor been handed to a spare worker yet, in registration order.
+     */
+    private final Set<BaseTask> unstartedTasks = new LinkedHashSet<>();
+    /**
+     * Number of signals received for later phases from tasks running ahead
+     * of the phaser, indexed by phase.
+     */
+    private final Map<Integer, Integer> earlySignals = new HashMap<>();
+    /**
+     * Accumulators following the phases of this phaser.
+     */
+    private final List<PhaserAccumulator> accumulators = new ArrayList<>();
+
+    /**
+     * Create a phaser and register creator on it in the provided mode.
+     *
+     * @param mode Mode to register creator in.
+     * @param creator The task creating this phaser.
+     */
+    public Phaser(final PhaserMode mode, final BaseTask creator) {
+        if (creator == null) {
+            throw new IllegalStateException(
+                    "A phaser must be created inside a task");
+        }
+        if (mode.signals()) {
+            numSignalers = 1;
+            pendingSignals = 1;
+        }
+        addRegistration(creator, new PhaserRegistration(this, mode, 0, 0));
+    }
+
+    /**
+     * Pair this phaser with the mode a new task should be registered in, for
+     * use with {@link edu.rice.pcdp.PCDP#asyncPhased}.
+     *
+     * @param mode Mode to register the new task in.
+     * @return A phaser-mode pair.
+     */
+    public PhaserPair inMode(final PhaserMode mode) {
+        return new PhaserPair(this, mode);
+    }
+
+    /**
+     * Get the current phase of this phaser, which counts how many times it
+     * has advanced.
+     *
+     * @return The current phase.
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Create an accumulator that combines values put by registered tasks in
+     * each phase of this phaser.
+     *
+     * @param operator The operator to combine values with.
+     * @return A new accumulator.
+     */
+    public PhaserAccumulator accumulator(
+            final PhaserAccumulator.Operator operator) {
+        final PhaserAccumulator accumulator =
+            new PhaserAccumulator(this, operator);
+        lock.lock();
+        try {
+            accumulators.add(accumulator);
+        } finally {
+            lock.unlock();
+        }
+        return accumulator;
+    }
+
+    /**
+     * Signal that the current task has reached the end of its current phase,
+     * without waiting for other tasks. This is a no-op if the current task
+     * does not signal or has already signalled its current phase.
+     */
+    public void signal() {
+        signal(currentRegistration());
+    }
+
+    /**
+     * Wait for the phaser to advance past the current phase of the current
+     * task, signalling first if the task has not signalled that phase yet.
+     * Tasks that do not wait simply move on to their next phase.
+     */
+    public void doWait() {
+        doWait(currentRegistration());
+    }
+
+    /**
+     * Signal and wait, moving the current task to its next phase.
+     */
+    public void next() {
+        doWait(currentRegistration());
+    }
+
+    /**
+     * Drop the registration of the current task on this phaser, so that the
+     * phaser no longer waits for it.
+     */
+    public void drop() {
+        final BaseTask task = Runtime.currentTask();
+        final PhaserRegistration registration = currentRegistration();
+        PhaserRegistration prev = null;
+        PhaserRegistration iter = task.phaserRegistrations;
+        while (iter != registration) {
+            prev = iter;
+            iter = iter.nextOnTask;
+        }
+        if (prev == null) {
+            task.phaserRegistrations = registration.nextOnTask;
+        } else {
+            prev.nextOnTask = registration.nextOnTask;
+        }
+        drop(registration);
+    }
+
+    /**
+     * Signal and then wait on all phasers task is registered on.
+     *
+     * @param task The task moving to its next phase.
+     */
+    public static void nextAll(final BaseTask task) {
+        for (PhaserRegistration r = task.phaserRegistrations; r != null;
+                r = r.nextOnTask) {
+            r.phaser.signal(r);
+        }
+        for (PhaserRegistration r = task.phaserRegistrations; r != null;
+                r = r.nextOnTask) {
+            r.phaser.doWait(r);
+        }
+    }
+
+    /**
+     * Check that a task may register a child on the provided phasers, before
+     * the child is created.
+     *
+     * @param parent The task spawning a child.
+     * @param pairs The phasers and modes to register the child on.
+     * @throws IllegalStateException if parent is not registered on one of
+     *         the phasers.
+     * @throws IllegalArgumentException if a requested mode has capabilities
+     *         that the mode of the parent lacks.
+     */
+    public static void checkChild(final BaseTask parent,
+            final PhaserPair... pairs) {
+        for (final PhaserPair pair : pairs) {
+            final PhaserMode parentMode =
+                pair.phaser().registrationOf(parent).mode;
+            if (!parentMode.covers(pair.mode())) {
+                throw new IllegalArgumentException("Cannot register a task "
+                        + "in mode " + pair.mode() + " from a task in mode "
+                        + parentMode);
+            }
+        }
+    }
+
+    /**
+     * Register a task that has not started yet on phasers its parent is
+     * registered on. The child starts in the same phase as its parent. The
+     * pairs must have been validated with {@link #checkChild}.
+     *
+     * @param parent The task spawning child.
+     * @param child The new task.
+     * @param pairs The phasers and modes to register child on. If empty,
+     *        child is registered on every phaser of its parent, in the same
+     *        mode.
+     */
+    public static void registerChild(final BaseTask parent,
+            final BaseTask child, final PhaserPair... pairs) {
+        if (pairs.length == 0) {
+            for (PhaserRegistration r = parent.phaserRegistrations; r != null;
+                    r = r.nextOnTask) {
+                r.phaser.registerChild(r, r.mode, child);
+            }
+            return;
+        }
+        for (final PhaserPair pair : pairs) {
+            pair.phaser().registerChild(pair.phaser().registrationOf(parent),
+                    pair.mode(), child);
+        }
+    }
+
+    /**
+     * Drop all registrations of a completing task.
+     *
+     * @param task The completing task.
+     */
+    static void dropAll(final BaseTask task) {
+        PhaserRegistration r = task.phaserRegistrations;
+        task.phaserRegistrations = null;
+        while (r != null) {
+            r.phaser.drop(r);
+            r = r.nextOnTask;
+        }
+    }
+
+    /**
+     * Record that a task registered by its parent has started executing.
+     *
+     * @param task The starting task.
+     */
+    static void startAll(final BaseTask task) {
+        for (PhaserRegistration r = task.phaserRegistrations; r != null;
+                r = r.nextOnTask) {
+            r.phaser.start(r, task);
+        }
+    }
+
+    /**
+     * Get the registration of the current task on this phaser.
+     *
+     * @return Registration of the current task.
+     * @throws IllegalStateException if the current task is not registered.
+     */
+    private PhaserRegistration currentRegistration() {
+        final BaseTask task = Runtime.currentTask();
+        if (task == null) {
+            throw new IllegalStateException(
+                    "A phaser can only be used inside a task");
+        }
+        return registrationOf(task);
+    }
+
+    /**
+     * Get the registration of a task on this phaser.
+     *
+     * @param task The task to look up.
+     * @return Registration of task.
+     * @throws IllegalStateException if task is not registered.
+     */
+    private PhaserRegistration registrationOf(final BaseTask task) {
+        for (PhaserRegistration r = task.phaserRegistrations; r != null;
+                r = r.nextOnTask) {
+            if (r.phaser == this) {
+                return r;
+            }
+        }
+        throw new IllegalStateException(
+                "The current task is not registered on this phaser");
+    }
+
+    /**
+     * Add a registration to the list of registrations of a task.
+     *
+     * @param task The registered task.
+     * @param registration The new registration.
+     */
+    private static void addRegistration(final BaseTask task,
+            final PhaserRegistration registration) {
+        registration.nextOnTask = task.phaserRegistrations;
+        task.phaserRegistrations = registration;
+    }
+
+    /**
+     * Register child in the same phase as the task owning parentRegistration.
+     *
+     * @param parentRegistration Registration of the spawning task.
+     * @param mode Mode to register child in.
+     * @param child The new task.
+     */
+    private void registerChild(final PhaserRegistration parentRegistration,
+            final PhaserMode mode, final BaseTask child) {
+        final PhaserRegistration registration = new PhaserRegistration(this,
+                mode, parentRegistration.sigPhase,
+                parentRegistration.waitPhase);
+        if (mode.signals()) {
+            lock.lock();
+            try {
+                numSignalers++;
+                unstartedSignalers++;
+                unstartedTasks.add(child);
+                registration.started = false;
+                child.phased = true;
+                if (registration.sigPhase <= phase) {
+                    pendingSignals++;
+                } else {
+                    // The parent already signalled phases the child now
+                    // counts as having signalled too.
+                    for (int q = phase + 1; q < registration.sigPhase; q++) {
+                        earlySignals.merge(q, 1, Integer::sum);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        addRegistration(child, registration);
+    }
+
+    /**
+     * Record that the task owning a registration has started executing.
+     *
+     * @param registration Registration of the starting task.
+     * @param task The starting task.
+     */
+    private void start(final PhaserRegistration registration,
+            final BaseTask task) {
+        if (registration.started) {
+            return;
+        }
+        registration.started = true;
+        lock.lock();
+        try {
+            unstartedSignalers--;
+            unstartedTasks.remove(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the oldest signalling task that has neither started nor been
+     * handed to a spare worker yet.
+     *
+     * @return The task, or null if there is none.
+     */
+    private BaseTask pollUnstartedTask() {
+        lock.lock();
+        try {
+            final Iterator<BaseTask> iter = unstartedTasks.iterator();
+            if (!iter.hasNext()) {
+                return null;
+            }
+            final BaseTask task = iter.next();
+            iter.remove();
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start a spare worker for the signalling tasks that no worker has picked
+     * up yet, if there are any. The spare worker runs them one after the
+     * other until none are left, and whichever of it and a worker claims a
+     * task first executes it (see {@link BaseTask#claim()}). If a task run by
+     * the spare worker blocks on this phaser, that task starts the next spare
+     * worker in turn.
+     */
+    private void startSpareWorker() {
+        final BaseTask first = pollUnstartedTask();
+        if (first == null) {
+            return;
+        }
+        final Thread thread = new TaskContext.CarrierThread(() -> {
+            for (BaseTask task = first; task != null;
+                    task = pollUnstartedTask()) {
+                task.runOnCurrentThread();
+            }
+        }, "pcdp-phaser-spare");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Signal the current phase of a registration, if it has not been
+     * signalled yet.
+     *
+     * @param registration Registration of the signalling task.
+     */
+    private void signal(final PhaserRegistration registration) {
+        if (!registration.mode.signals()
+                || registration.sigPhase != registration.waitPhase) {
+            return;
+        }
+        final int signalledPhase = registration.sigPhase;
+        registration.sigPhase++;
+        lock.lock();
+        try {
+            if (signalledPhase == phase) {
+                pendingSignals--;
+                advanceWhileSignalled();
+            } else {
+                earlySignals.merge(signalledPhase, 1, Integer::sum);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the phaser to advance past the current phase of a
+     * registration, and move the registration to its next phase.
+     *
+     * @param registration Registration of the waiting task.
+     */
+    private void doWait(final PhaserRegistration registration) {
+        signal(registration);
+        final int waitedPhase = registration.waitPhase;
+        registration.waitPhase++;
+        if (!registration.mode.waits()) {
+            return;
+        }
+        for (int spins = 0; spins < SPIN_LIMIT; spins++) {
+            if (phase > waitedPhase) {
+                return;
+            }
+            if (unstartedSignalers != 0) {
+                Thread.yield();
+            }
+        }
+        final ForkJoinPool.ManagedBlocker blocker =
+            new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    lock.lock();
+                    try {
+                        while (phase <= waitedPhase) {
+                            if (numSignalers == 0) {
+                                // Nobody left to wait for.
+                                advance();
+                            } else if (unstartedSignalers == 0) {
+                                advanced.await();
+                            } else if (!advanced.await(RESCUE_DELAY_MS,
+                                        TimeUnit.MILLISECONDS)
+                                    && unstartedSignalers != 0) {
+                                break;
+                            }
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (phase <= waitedPhase) {
+                        startSpareWorker();
+                        return false;
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return phase > waitedPhase;
+                }
+            };
+        try {
+            if (unstartedSignalers == 0) {
+                // Every task the phaser waits for is already running on a
+                // thread of its own, so blocking this worker cannot keep
+                // them from arriving and the pool need not compensate for
+                // it, which would start a thread at every phase. Tasks
+                // registered from now on are started by block if needed.
+                while (!blocker.isReleasable() && !blocker.block()) {
+                    continue;
+                }
+            } else {
+                ForkJoinPool.managedBlock(blocker);
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        }
+    }
+
+    /**
+     * Remove a registration from this phaser.
+     *
+     * @param registration The registration to remove.
+     */
+    private void drop(final PhaserRegistration registration) {
+        if (!registration.mode.signals()) {
+            return;
+        }
+        lock.lock();
+        try {
+            numSignalers--;
+            if (registration.sigPhase <= phase) {
+                pendingSignals--;
+            } else {
+                for (int q = phase + 1; q < registration.sigPhase; q++) {
+                    earlySignals.merge(q, -1, Integer::sum);
+                }
+            }
+            advanceWhileSignalled();
+            // Waiters may need to advance by themselves now.
+            advanced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a value to an accumulator of this phaser, in the current phase of
+     * the current task.
+     *
+     * @param accumulator The accumulator.
+     * @param value The value to add.
+     */
+    void accumulate(final PhaserAccumulator accumulator,
+            final double value) {
+        final PhaserRegistration registration = currentRegistration();
+        if (!registration.mode.signals()
+                || registration.sigPhase != registration.waitPhase) {
+            throw new IllegalStateException("Values can only be put by "
+                    + "signalling tasks before they signal");
+        }
+        lock.lock();
+        try {
+            accumulator.combine(registration.waitPhase, phase, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Advance for as long as all signalling tasks have signalled the current
+     * phase. Called with the lock held.
+     */
+    private void advanceWhileSignalled() {
+        while (pendingSignals == 0 && numSignalers > 0) {
+            advance();
+        }
+    }
+
+    /**
+     * Move to the next phase and wake up waiting tasks. Called with the lock
+     * held.
+     */
+    private void advance() {
+        final int nextPhase = phase + 1;
+        for (final PhaserAccumulator accumulator : accumulators) {
+            accumulator.advance(nextPhase);
+        }
+        final Integer early = earlySignals.remove(nextPhase);
+        pendingSignals = numSignalers - (early == null ? 0 : early);
+        phase = nextPhase;
+        advanced.signalAll();
+    }
+}
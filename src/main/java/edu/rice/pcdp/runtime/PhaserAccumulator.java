@@ -0,0 +1,142 @@
+package edu.rice.pcdp.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * A reduction performed in step with the phases of a {@link Phaser}. Every
+ * task registered on the phaser may put values into the accumulator during a
+ * phase, and once the phaser advances past that phase the combined value
+ * becomes available through {@link #get()}.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class PhaserAccumulator {
+
+    /**
+     * The operators an accumulator can combine values with.
+     */
+    public enum Operator {
+        /**
+         * Sum of all values.
+         */
+        SUM(0.0, (a, b) -> a + b),
+        /**
+         * Product of all values.
+         */
+        PROD(1.0, (a, b) -> a * b),
+        /**
+         * Smallest of all values.
+         */
+        MIN(Double.POSITIVE_INFINITY, Math::min),
+        /**
+         * Largest of all values.
+         */
+        MAX(Double.NEGATIVE_INFINITY, Math::max);
+
+        /**
+         * Result of combining no values.
+         */
+        private final double identity;
+        /**
+         * Function combining two values.
+         */
+        private final DoubleBinaryOperator combine;
+
+        /**
+         * Constructor.
+         *
+         * @param setIdentity Result of combining no values.
+         * @param setCombine Function combining two values.
+         */
+        Operator(final double setIdentity,
+                final DoubleBinaryOperator setCombine) {
+            this.identity = setIdentity;
+            this.combine = setCombine;
+        }
+    }
+
+    /**
+     * The phaser whose phases this accumulator follows.
+     */
+    private final Phaser phaser;
+    /**
+     * The operator values are combined with.
+     */
+    private final Operator operator;
+    /**
+     * Values combined so far in the current phase of the phaser.
+     */
+    private double current;
+    /**
+     * Values combined for later phases by tasks running ahead of the phaser,
+     * indexed by phase.
+     */
+    private final Map<Integer, Double> early = new HashMap<>();
+    /**
+     * Result of the last completed phase.
+     */
+    private volatile double result;
+
+    /**
+     * Constructor.
+     *
+     * @param setPhaser The phaser whose phases this accumulator follows.
+     * @param setOperator The operator values are combined with.
+     */
+    PhaserAccumulator(final Phaser setPhaser, final Operator setOperator) {
+        this.phaser = setPhaser;
+        this.operator = setOperator;
+        this.current = setOperator.identity;
+        this.result = setOperator.identity;
+    }
+
+    /**
+     * Add a value to the phase the calling task is currently in. The calling
+     * task must be registered on the phaser of this accumulator.
+     *
+     * @param value Value to add.
+     */
+    public void put(final double value) {
+        phaser.accumulate(this, value);
+    }
+
+    /**
+     * Get the combined value of the last phase the phaser advanced past, or
+     * the identity of the operator if the phaser has not advanced yet.
+     *
+     * @return Result of the last completed phase.
+     */
+    public double get() {
+        return result;
+    }
+
+    /**
+     * Combine a value into a phase. Called with the lock of the phaser held.
+     *
+     * @param phase Phase the value belongs to.
+     * @param currentPhase Current phase of the phaser.
+     * @param value Value to combine.
+     */
+    void combine(final int phase, final int currentPhase,
+            final double value) {
+        if (phase == currentPhase) {
+            current = operator.combine.applyAsDouble(current, value);
+        } else {
+            early.merge(phase, value, operator.combine::applyAsDouble);
+        }
+    }
+
+    /**
+     * Publish the result of the current phase and start the next one. Called
+     * with the lock of the phaser held, as the phaser advances.
+     *
+     * @param nextPhase Phase the phaser advances to.
+     */
+    void advance(final int nextPhase) {
+        result = current;
+        final Double earlyValue = early.remove(nextPhase);
+        current = earlyValue == null ? operator.identity : earlyValue;
+    }
+}
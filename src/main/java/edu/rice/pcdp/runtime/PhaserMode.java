@@ -0,0 +1,71 @@
+package edu.rice.pcdp.runtime;
+
+/**
+ * The mode in which a task is registered on a {@link Phaser}, which
+ * determines whether the phaser waits for the task before advancing, and
+ * whether the task waits for the phaser.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public enum PhaserMode {
+    /**
+     * The task signals the phaser but never waits for it, so it can run ahead
+     * of the phases of other tasks.
+     */
+    SIG(true, false),
+    /**
+     * The task waits for the phaser but never signals it, so the phaser
+     * advances without waiting for the task.
+     */
+    WAIT(false, true),
+    /**
+     * The task both signals and waits for the phaser, as in a barrier.
+     */
+    SIG_WAIT(true, true);
+
+    /**
+     * Whether tasks in this mode signal.
+     */
+    private final boolean signals;
+    /**
+     * Whether tasks in this mode wait.
+     */
+    private final boolean waits;
+
+    /**
+     * Constructor.
+     *
+     * @param setSignals Whether tasks in this mode signal.
+     * @param setWaits Whether tasks in this mode wait.
+     */
+    PhaserMode(final boolean setSignals, final boolean setWaits) {
+        this.signals = setSignals;
+        this.waits = setWaits;
+    }
+
+    /**
+     * @return Whether tasks in this mode signal the phaser.
+     */
+    public boolean signals() {
+        return signals;
+    }
+
+    /**
+     * @return Whether tasks in this mode wait for the phaser.
+     */
+    public boolean waits() {
+        return waits;
+    }
+
+    /**
+     * Check whether a task registered in this mode may register a child task
+     * in the provided mode, i.e. whether this mode has all the capabilities
+     * of the other one.
+     *
+     * @param other Mode of the child task.
+     * @return true if this mode covers other.
+     */
+    public boolean covers(final PhaserMode other) {
+        return (signals || !other.signals) && (waits || !other.waits);
+    }
+}
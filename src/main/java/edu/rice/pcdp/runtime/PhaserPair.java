@@ -0,0 +1,43 @@
+package edu.rice.pcdp.runtime;
+
+/**
+ * A phaser together with the mode in which a new task should be registered
+ * on it, as passed to {@link edu.rice.pcdp.PCDP#asyncPhased}.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class PhaserPair {
+    /**
+     * The phaser to register on.
+     */
+    private final Phaser phaser;
+    /**
+     * The mode to register in.
+     */
+    private final PhaserMode mode;
+
+    /**
+     * Constructor.
+     *
+     * @param setPhaser The phaser to register on.
+     * @param setMode The mode to register in.
+     */
+    PhaserPair(final Phaser setPhaser, final PhaserMode setMode) {
+        this.phaser = setPhaser;
+        this.mode = setMode;
+    }
+
+    /**
+     * @return The phaser to register on.
+     */
+    public Phaser phaser() {
+        return phaser;
+    }
+
+    /**
+     * @return The mode to register in.
+     */
+    public PhaserMode mode() {
+        return mode;
+    }
+}
@@ -0,0 +1,54 @@
+package edu.rice.pcdp.runtime;
+
+/**
+ * The registration of a single task on a {@link Phaser}. The registrations of
+ * a task are linked through the registrations themselves, starting at
+ * {@link BaseTask#phaserRegistrations}. A registration is only ever used by
+ * the task it belongs to, so its phase counters are not synchronized.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+final class PhaserRegistration {
+    /**
+     * The phaser the task is registered on.
+     */
+    final Phaser phaser;
+    /**
+     * The mode the task is registered in.
+     */
+    final PhaserMode mode;
+    /**
+     * The next phase this task will signal. The task has signalled all phases
+     * before this one.
+     */
+    int sigPhase;
+    /**
+     * The next phase this task will wait for.
+     */
+    int waitPhase;
+    /**
+     * Whether the task has started executing. False for signalling tasks
+     * registered by their parent until they start.
+     */
+    boolean started = true;
+    /**
+     * The next registration of the same task, or null.
+     */
+    PhaserRegistration nextOnTask = null;
+
+    /**
+     * Constructor.
+     *
+     * @param setPhaser The phaser the task is registered on.
+     * @param setMode The mode the task is registered in.
+     * @param setSigPhase The next phase the task will signal.
+     * @param setWaitPhase The next phase the task will wait for.
+     */
+    PhaserRegistration(final Phaser setPhaser, final PhaserMode setMode,
+            final int setSigPhase, final int setWaitPhase) {
+        this.phaser = setPhaser;
+        this.mode = setMode;
+        this.sigPhase = setSigPhase;
+        this.waitPhase = setWaitPhase;
+    }
+}
@@ -1,12 +1,10 @@
 package edu.rice.pcdp.runtime;
 
 import edu.rice.pcdp.config.Configuration;
+import edu.rice.pcdp.config.RuntimeConfig;
 import edu.rice.pcdp.config.SystemProperty;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * @author Shams Imam (shams@rice.edu)
@@ -21,26 +19,72 @@ public final class Runtime {
     }
 
     /**
-     * For each thread, a stack listing the tasks executing on this thread.
+     * Task context of threads that are not PCDP worker threads, such as the
+     * main thread or virtual threads. Worker threads carry their own context.
      */
-    private static final ThreadLocal<Deque<BaseTask>> threadLocalTaskStack =
-        new ThreadLocal<Deque<BaseTask>>() {
+    private static final ThreadLocal<TaskContext> threadLocalTaskContext =
+        new ThreadLocal<TaskContext>() {
             @Override
-            protected Deque<BaseTask> initialValue() {
-                return new ArrayDeque<>();
+            protected TaskContext initialValue() {
+                return new TaskContext();
             }
         };
 
     /**
-     * The thread pool backing this instance of Runtime.
+     * The runtime instance used by PCDP constructs that are not nested in a
+     * finish scope bound to another runtime.
      */
-    private static ForkJoinPool taskPool = new ForkJoinPool(
-            Configuration.readIntProperty(SystemProperty.numWorkers));
+    private static final PCDPRuntime defaultRuntime = createDefaultRuntime();
 
     /**
-     * A method for altering the number of worker threads used by PCDP at
-     * runtime. It is the programmer's responsibility to ensure that no tasks
-     * are executing or pending on the runtime when this call is made.
+     * Create the default runtime from the system properties.
+     *
+     * @return A new runtime.
+     */
+    private static PCDPRuntime createDefaultRuntime() {
+        final RuntimeConfig config = RuntimeConfig.fromSystemProperties();
+        final PCDPRuntime runtime = new PCDPRuntime(config);
+        if (config.elastic()) {
+            runtime.startElasticResizing(config.minWorkers(),
+                    config.maxWorkers());
+        }
+        return runtime;
+    }
+
+    /**
+     * Get the default runtime instance.
+     *
+     * @return The default runtime.
+     */
+    public static PCDPRuntime defaultRuntime() {
+        return defaultRuntime;
+    }
+
+    /**
+     * Get the runtime that the current task executes on, or the default
+     * runtime when called outside of any task.
+     *
+     * @return The current runtime.
+     */
+    public static PCDPRuntime currentRuntime() {
+        final BaseTask currentTask = currentTask();
+        if (currentTask == null) {
+            return defaultRuntime;
+        }
+        return currentTask.runtime();
+    }
+
+    /**
+     * A method for altering the number of worker threads used by the default
+     * runtime. The current scheduler is resized in place, while tasks
+     * continue to execute.
+     * <p>
+     * If the {@link SystemProperty#scheduler} or
+     * {@link SystemProperty#asyncMode} properties were changed since the
+     * current scheduler was created, a new scheduler of the selected kind is
+     * created instead, so this method can also be used to switch schedulers.
+     * In that case it is the programmer's responsibility to ensure that no
+     * tasks are executing or pending on the runtime when this call is made.
      *
      * @param numWorkers The number of workers to switch to using.
      * @throws InterruptedException An error occurs shutting down the existing
@@ -48,12 +92,55 @@ public final class Runtime {
      */
     public static void resizeWorkerThreads(final int numWorkers)
             throws InterruptedException {
-        taskPool.shutdown();
-        boolean terminated = taskPool.awaitTermination(10, TimeUnit.SECONDS);
-        assert (terminated);
-
+        defaultRuntime.reconfigure(defaultRuntime.config().toBuilder()
+                .scheduler(Configuration.readStringProperty(
+                        SystemProperty.scheduler))
+                .asyncMode(Configuration.readBooleanProperty(
+                        SystemProperty.asyncMode))
+                .numWorkers(numWorkers).build());
         SystemProperty.numWorkers.set(numWorkers);
-        taskPool = new ForkJoinPool(numWorkers);
+    }
+
+    /**
+     * Get the scheduler currently backing the default runtime.
+     *
+     * @return The current scheduler.
+     */
+    static TaskScheduler currentScheduler() {
+        return defaultRuntime.scheduler();
+    }
+
+    /**
+     * Start resizing the worker pool of the default runtime based on its
+     * utilization.
+     *
+     * @param minWorkers Lower bound on the number of workers.
+     * @param maxWorkers Upper bound on the number of workers.
+     * @see PCDPRuntime#startElasticResizing(int, int)
+     */
+    public static void startElasticResizing(final int minWorkers,
+            final int maxWorkers) {
+        defaultRuntime.startElasticResizing(minWorkers, maxWorkers);
+    }
+
+    /**
+     * Stop resizing the worker pool of the default runtime based on its
+     * utilization.
+     */
+    public static void stopElasticResizing() {
+        defaultRuntime.stopElasticResizing();
+    }
+
+    /**
+     * Get the task context of the current thread.
+     * @return Task context of the current thread.
+     */
+    private static TaskContext taskContext() {
+        final Thread currentThread = Thread.currentThread();
+        if (currentThread instanceof TaskContext.Carrier) {
+            return ((TaskContext.Carrier) currentThread).taskContext();
+        }
+        return threadLocalTaskContext.get();
     }
 
     /**
@@ -61,12 +148,16 @@ public final class Runtime {
      * @return Currently executing task.
      */
     public static BaseTask currentTask() {
-        final Deque<BaseTask> taskStack = Runtime.threadLocalTaskStack.get();
-        if (taskStack.isEmpty()) {
-            return null;
-        } else {
-            return taskStack.peek();
-        }
+        return taskContext().currentTask;
+    }
+
+    /**
+     * Get the number of tasks currently executing on the current thread,
+     * i.e. the current task and the tasks it is nested in or helping.
+     * @return Depth of the current thread's task stack.
+     */
+    public static int currentTaskDepth() {
+        return taskContext().depth;
     }
 
     /**
@@ -74,34 +165,82 @@ public final class Runtime {
      * @param task Currently executing task
      */
     public static void pushTask(final BaseTask task) {
-        Runtime.threadLocalTaskStack.get().push(task);
+        taskContext().push(task);
     }
 
     /**
      * Remove the top of the task-tracking stack for the current thread.
      */
     public static void popTask() {
-        Runtime.threadLocalTaskStack.get().pop();
+        taskContext().pop();
+    }
+
+    /**
+     * Run code on the current thread as if it was called from outside of any
+     * task, for example to run user callbacks from within the runtime.
+     * @param body Code to run.
+     */
+    static void runOutsideTasks(final Runnable body) {
+        taskContext().runOutsideTasks(body);
     }
 
     /**
-     * Run the provided task on the thread pool backing this runtime.
+     * Run code on the current thread as part of a task executing on another
+     * thread, which waits for it to complete.
+     * @param task The current task of the other thread, or null.
+     * @param depth The task stack depth of the other thread.
+     * @param body Code to run.
+     */
+    static void runOnBehalfOf(final BaseTask task, final int depth,
+            final Runnable body) {
+        taskContext().runOnBehalfOf(task, depth, body);
+    }
+
+    /**
+     * Decide whether a task spawned by currentTask should execute inline
+     * rather than being submitted, based on the inlining cutoffs of its
+     * runtime (see {@link SystemProperty#inlineQueueDepth} and
+     * {@link SystemProperty#inlineTaskDepth}). Tasks spawned by a task
+     * registered on phasers are never inlined, as their body would then act
+     * on the phaser registrations of currentTask.
+     * @param currentTask Task spawning a new task.
+     * @return true if the new task should execute inline.
+     */
+    public static boolean shouldInline(final BaseTask currentTask) {
+        return currentTask.phaserRegistrations == null
+            && currentTask.runtime().shouldInline();
+    }
+
+    /**
+     * Run the provided task on the runtime it belongs to.
      * @param task Task to make eligible for execution.
      */
     public static void submitTask(final BaseTask task) {
-        taskPool.execute(task);
+        task.runtime().scheduler().execute(task);
+    }
+
+    /**
+     * Wait for the provided task to complete, executing other tasks of its
+     * runtime in the meantime if called from one of its worker threads.
+     * @param task Task to wait on.
+     */
+    public static void joinTask(final BaseTask task) {
+        task.runtime().scheduler().join(task);
+    }
+
+    /**
+     * Execute other tasks until done holds, if called from a worker thread of
+     * a scheduler that requires it before blocking.
+     * @param done Condition the caller is about to block on.
+     */
+    public static void helpUntil(final BooleanSupplier done) {
+        currentRuntime().scheduler().helpUntil(done);
     }
 
     /**
-     * Print some basic runtime statistics.
+     * Print some basic statistics of the default runtime.
      */
     public static void showRuntimeStats() {
-        System.out.println("Runtime Stats (" + Configuration.BUILD_INFO
-                + "): ");
-        System.out.println("   " + taskPool.toString());
-        System.out.println("   # finishes = "
-                + BaseTask.FinishTask.TASK_COUNTER.get());
-        System.out.println("   # asyncs = "
-                + BaseTask.FutureTask.TASK_COUNTER.get());
+        defaultRuntime.showRuntimeStats();
     }
 }
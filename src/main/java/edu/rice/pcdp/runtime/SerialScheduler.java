@@ -0,0 +1,203 @@
+package edu.rice.pcdp.runtime;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A scheduler that executes all tasks on a single worker thread, in a
+ * deterministic order: tasks spawned by the worker are executed in LIFO
+ * order, and tasks submitted from other threads are only picked up once the
+ * worker has no local work left. Because only one thread ever touches the
+ * local task queue, spawning a task does not require any synchronization.
+ * This makes the serial scheduler useful for debugging PCDP programs and for
+ * measuring the single-threaded overhead of the runtime.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class SerialScheduler implements TaskScheduler {
+
+    /**
+     * How long the idle worker waits for external submissions before checking
+     * for shutdown again, in milliseconds.
+     */
+    private static final long IDLE_POLL_MS = 100;
+
+    /**
+     * Tasks spawned by the worker thread. Only accessed by the worker.
+     */
+    private final ArrayDeque<BaseTask> localTasks = new ArrayDeque<>();
+    /**
+     * Number of tasks in localTasks. Only written by the worker, but read by
+     * any thread reporting statistics.
+     */
+    private volatile int localTaskCount = 0;
+    /**
+     * Tasks submitted from outside the worker thread.
+     */
+    private final LinkedBlockingQueue<BaseTask> externalTasks =
+        new LinkedBlockingQueue<>();
+    /**
+     * Number of tasks executed, for runtime statistics.
+     */
+    private final AtomicLong executedCount = new AtomicLong();
+    /**
+     * The single thread executing all tasks.
+     */
+    private final Thread worker;
+    /**
+     * Whether the worker is currently executing a task.
+     */
+    private volatile boolean busy = false;
+    /**
+     * Set once shutdown has been requested.
+     */
+    private volatile boolean shutdown = false;
+
+    /**
+     * Constructor, starts the worker thread.
+     */
+    public SerialScheduler() {
+        this.worker = new TaskContext.CarrierThread(this::runWorker,
+                "pcdp-serial-worker");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Main loop of the worker thread.
+     */
+    private void runWorker() {
+        while (true) {
+            BaseTask task = pollLocalTask();
+            if (task == null) {
+                if (shutdown && externalTasks.isEmpty()) {
+                    return;
+                }
+                try {
+                    task = externalTasks.poll(IDLE_POLL_MS,
+                            TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException ie) {
+                    task = null;
+                }
+            }
+            if (task != null) {
+                busy = true;
+                runTask(task);
+                busy = false;
+            }
+        }
+    }
+
+    /**
+     * Take the most recently spawned local task, on the worker thread.
+     *
+     * @return The task, or null if there are no local tasks.
+     */
+    private BaseTask pollLocalTask() {
+        final BaseTask task = localTasks.poll();
+        if (task != null) {
+            localTaskCount = localTasks.size();
+        }
+        return task;
+    }
+
+    /**
+     * Execute a single task on the worker thread.
+     *
+     * @param task Task to execute.
+     */
+    private void runTask(final BaseTask task) {
+        executedCount.incrementAndGet();
+        task.runOnCurrentThread();
+    }
+
+    @Override
+    public void execute(final BaseTask task) {
+        if (Thread.currentThread() == worker) {
+            localTasks.push(task);
+            localTaskCount = localTasks.size();
+        } else {
+            externalTasks.add(task);
+        }
+    }
+
+    @Override
+    public void join(final BaseTask task) {
+        if (Thread.currentThread() == worker
+                && localTasks.peekFirst() == task) {
+            runTask(pollLocalTask());
+        }
+        helpUntil(task::isDone);
+        task.join();
+    }
+
+    @Override
+    public void helpUntil(final BooleanSupplier done) {
+        if (Thread.currentThread() == worker) {
+            while (!done.getAsBoolean()) {
+                BaseTask next = pollLocalTask();
+                if (next == null) {
+                    try {
+                        next = externalTasks.poll(IDLE_POLL_MS,
+                                TimeUnit.MILLISECONDS);
+                    } catch (final InterruptedException ie) {
+                        next = null;
+                    }
+                }
+                if (next != null) {
+                    runTask(next);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int surplusQueuedTaskCount() {
+        // There is never an idle worker to hand work to, so every local task
+        // is surplus.
+        return Thread.currentThread() == worker ? localTaskCount : 0;
+    }
+
+    @Override
+    public int parallelism() {
+        return 1;
+    }
+
+    @Override
+    public void resize(final int numWorkers) {
+        // Always exactly one worker.
+    }
+
+    @Override
+    public int activeWorkerCount() {
+        return busy ? 1 : 0;
+    }
+
+    @Override
+    public long queuedTaskCount() {
+        return localTaskCount + externalTasks.size();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        worker.join(unit.toMillis(timeout));
+        return !worker.isAlive();
+    }
+
+    @Override
+    public String toString() {
+        return "SerialScheduler[executed = " + executedCount.get()
+            + ", queued = " + localTaskCount
+            + ", submissions = " + externalTasks.size()
+            + (shutdown ? ", shutdown]" : "]");
+    }
+}
@@ -0,0 +1,198 @@
+package edu.rice.pcdp.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+/**
+ * A reentrant mutual exclusion lock for short critical sections, which spins
+ * for a while before parking a thread that finds it held.
+ * <p>
+ * Parking and unparking a thread costs a round trip through the operating
+ * system, which can take longer than the isolated sections this lock
+ * protects. A thread acquiring a held lock therefore first spins, checking
+ * whether it has been released, and only parks if it is still held after a
+ * spin limit. The spin limit of each lock adapts to how it is used: it grows
+ * whenever spinning acquired the lock, and shrinks whenever a thread spun in
+ * vain and parked anyway. On machines with a single processor the holder of
+ * the lock cannot run while another thread spins, so this lock parks
+ * immediately.
+ * <p>
+ * While spinning, threads call Thread.onSpinWait when running on Java 9 or
+ * later. PCDP targets Java 8, so it is looked up reflectively.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class SpinParkLock {
+    /**
+     * Smallest spin limit, so that a lock can learn that spinning pays off
+     * again after a period of long critical sections.
+     */
+    private static final int MIN_SPINS = 16;
+    /**
+     * Spin limit of a new lock.
+     */
+    private static final int INITIAL_SPINS = 128;
+    /**
+     * Largest spin limit.
+     */
+    private static final int MAX_SPINS = 4096;
+    /**
+     * Whether spinning can succeed on this machine at all.
+     */
+    private static final boolean SPIN =
+        java.lang.Runtime.getRuntime().availableProcessors() > 1;
+    /**
+     * Thread.onSpinWait, or null if this JVM does not provide it.
+     */
+    private static final MethodHandle ON_SPIN_WAIT = findOnSpinWait();
+
+    /**
+     * The synchronizer queuing and parking threads once they stop spinning.
+     */
+    private final Sync sync = new Sync();
+    /**
+     * Current spin limit. Updates are not synchronized, as a lost update only
+     * affects how long the next threads spin.
+     */
+    private int spinLimit = INITIAL_SPINS;
+
+    /**
+     * Look up Thread.onSpinWait.
+     *
+     * @return A handle for the method, or null if it does not exist.
+     */
+    private static MethodHandle findOnSpinWait() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Thread.class,
+                    "onSpinWait", MethodType.methodType(void.class));
+        } catch (final ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Acquire this lock, spinning and then parking while another thread
+     * holds it. A thread already holding this lock acquires it again.
+     */
+    public void lock() {
+        if (sync.tryAcquire(1)) {
+            return;
+        }
+        if (SPIN) {
+            final int limit = spinLimit;
+            for (int spins = 0; spins < limit; spins++) {
+                if (sync.isFree() && sync.tryAcquire(1)) {
+                    spinLimit = Math.min(MAX_SPINS, limit << 1);
+                    return;
+                }
+                onSpinWait();
+            }
+            spinLimit = Math.max(MIN_SPINS, limit >> 1);
+        }
+        sync.acquire(1);
+    }
+
+    /**
+     * Release this lock once for every time the calling thread acquired it.
+     *
+     * @throws IllegalMonitorStateException if the calling thread does not
+     *         hold this lock.
+     */
+    public void unlock() {
+        sync.release(1);
+    }
+
+    /**
+     * Check whether the calling thread holds this lock.
+     *
+     * @return true if the calling thread holds this lock.
+     */
+    public boolean isHeldByCurrentThread() {
+        return sync.isHeldExclusively();
+    }
+
+    /**
+     * Get the number of times the calling thread acquired this lock without
+     * releasing it.
+     *
+     * @return The hold count of the calling thread, or 0 if it does not hold
+     *         this lock.
+     */
+    public int getHoldCount() {
+        return sync.isHeldExclusively() ? sync.holdCount() : 0;
+    }
+
+    /**
+     * Hint to the processor that the calling thread is spinning.
+     */
+    private static void onSpinWait() {
+        if (ON_SPIN_WAIT != null) {
+            try {
+                ON_SPIN_WAIT.invokeExact();
+            } catch (final Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
+    /**
+     * Reentrant synchronizer whose state is the hold count of the owning
+     * thread, or 0 if this lock is free.
+     */
+    private static final class Sync extends AbstractQueuedSynchronizer {
+        /**
+         * Serial version, as AbstractQueuedSynchronizer is serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @return Whether no thread holds the lock.
+         */
+        boolean isFree() {
+            return getState() == 0;
+        }
+
+        /**
+         * @return The hold count of the owning thread.
+         */
+        int holdCount() {
+            return getState();
+        }
+
+        @Override
+        protected boolean tryAcquire(final int acquires) {
+            final Thread current = Thread.currentThread();
+            final int state = getState();
+            if (state == 0) {
+                if (compareAndSetState(0, acquires)) {
+                    setExclusiveOwnerThread(current);
+                    return true;
+                }
+            } else if (current == getExclusiveOwnerThread()) {
+                setState(state + acquires);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean tryRelease(final int releases) {
+            if (Thread.currentThread() != getExclusiveOwnerThread()) {
+                throw new IllegalMonitorStateException();
+            }
+            final int state = getState() - releases;
+            if (state == 0) {
+                setExclusiveOwnerThread(null);
+            }
+            setState(state);
+            return state == 0;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return getExclusiveOwnerThread() == Thread.currentThread();
+        }
+    }
+}
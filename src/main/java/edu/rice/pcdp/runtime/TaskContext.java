@@ -0,0 +1,125 @@
+package edu.rice.pcdp.runtime;
+
+/**
+ * The per-thread state used by the runtime to track which task a thread is
+ * currently executing. PCDP worker threads carry their TaskContext as a
+ * plain field, so looking up the current task on a worker does not require a
+ * ThreadLocal lookup. Tasks executing on the same thread form a stack, which
+ * is linked through the tasks themselves so that pushing a task does not
+ * allocate.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+final class TaskContext {
+
+    /**
+     * The task at the top of this thread's task stack, or null.
+     */
+    BaseTask currentTask = null;
+    /**
+     * Number of tasks on this thread's task stack.
+     */
+    int depth = 0;
+
+    /**
+     * Make task the current task of this context.
+     *
+     * @param task Task starting execution on this context's thread.
+     */
+    void push(final BaseTask task) {
+        task.previousOnThread = currentTask;
+        currentTask = task;
+        depth++;
+    }
+
+    /**
+     * Restore the task that was current before the last push.
+     */
+    void pop() {
+        final BaseTask task = currentTask;
+        currentTask = task.previousOnThread;
+        task.previousOnThread = null;
+        depth--;
+    }
+
+    /**
+     * Run body with an empty task stack, as if it was called from outside
+     * of any task, and restore the task stack afterwards.
+     *
+     * @param body Code to run.
+     */
+    void runOutsideTasks(final Runnable body) {
+        runOnBehalfOf(null, 0, body);
+    }
+
+    /**
+     * Run body with the task stack of another thread, so that it executes
+     * as part of the task currently executing on that thread, and restore
+     * the task stack afterwards. task is not linked into the task stack of
+     * this context, as it remains on the stack of its own thread.
+     *
+     * @param task The current task of the other thread, or null.
+     * @param setDepth The task stack depth of the other thread.
+     * @param body Code to run.
+     */
+    void runOnBehalfOf(final BaseTask task, final int setDepth,
+            final Runnable body) {
+        final BaseTask savedTask = currentTask;
+        final int savedDepth = depth;
+        currentTask = task;
+        depth = setDepth;
+        try {
+            body.run();
+        } finally {
+            currentTask = savedTask;
+            depth = savedDepth;
+        }
+    }
+
+    /**
+     * A thread that carries its own TaskContext.
+     */
+    interface Carrier {
+        /**
+         * Get the task context of this thread.
+         *
+         * @return The task context of this thread.
+         */
+        TaskContext taskContext();
+    }
+
+    /**
+     * A plain thread carrying its own TaskContext, for schedulers that manage
+     * their own worker threads.
+     */
+    static class CarrierThread extends Thread implements Carrier {
+        /**
+         * Task context of this thread.
+         */
+        private final TaskContext taskContext = new TaskContext();
+
+        /**
+         * Constructor.
+         *
+         * @param name Name of this thread.
+         */
+        CarrierThread(final String name) {
+            super(name);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param target Body of this thread.
+         * @param name Name of this thread.
+         */
+        CarrierThread(final Runnable target, final String name) {
+            super(target, name);
+        }
+
+        @Override
+        public final TaskContext taskContext() {
+            return taskContext;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package edu.rice.pcdp.runtime;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The interface between the PCDP runtime and the thread pool that executes
+ * its tasks. The runtime only interacts with worker threads through this
+ * interface, so alternative schedulers can be selected at startup (see
+ * {@link edu.rice.pcdp.config.SystemProperty#scheduler}) without changes to
+ * the rest of the runtime.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public interface TaskScheduler {
+
+    /**
+     * Make the provided task eligible for execution. When called from one of
+     * this scheduler's workers, the task should be queued locally to that
+     * worker.
+     *
+     * @param task Task to schedule.
+     */
+    void execute(BaseTask task);
+
+    /**
+     * Block until the provided task has completed. When called from one of
+     * this scheduler's workers, the worker should execute the task itself if
+     * it is the most recent task the worker queued and has not been stolen,
+     * and otherwise execute other tasks while it waits rather than idle.
+     *
+     * @param task Task to wait on.
+     * @throws RuntimeException If the task completed abnormally.
+     */
+    void join(BaseTask task);
+
+    /**
+     * Called by a thread that is about to block until done returns true, for
+     * example in Future.get. When called from one of this scheduler's workers,
+     * the worker should execute other tasks until the condition holds, so
+     * that the task it is waiting on can make progress even if all workers
+     * are blocked. Returns immediately if the calling thread is not a worker,
+     * or if the scheduler has other means of keeping its workers busy, in
+     * which case the caller is expected to block normally.
+     *
+     * @param done Condition being waited on.
+     */
+    void helpUntil(BooleanSupplier done);
+
+    /**
+     * An estimate of how many more tasks the calling worker has queued
+     * locally than there are idle workers that could steal them. Small values
+     * indicate that newly spawned tasks are likely to be executed in parallel.
+     *
+     * @return The surplus of queued tasks of the calling worker.
+     */
+    int surplusQueuedTaskCount();
+
+    /**
+     * Get the number of worker threads of this scheduler.
+     *
+     * @return Target number of workers.
+     */
+    int parallelism();
+
+    /**
+     * Change the number of worker threads of this scheduler while tasks
+     * continue to execute. Tasks that are already queued or running are not
+     * lost: workers that are retired finish their current work first.
+     *
+     * @param numWorkers New target number of workers, must be positive.
+     */
+    void resize(int numWorkers);
+
+    /**
+     * An estimate of the number of workers currently executing tasks.
+     *
+     * @return The number of busy workers.
+     */
+    int activeWorkerCount();
+
+    /**
+     * An estimate of the number of tasks waiting to be picked up by a worker.
+     *
+     * @return The number of queued tasks.
+     */
+    long queuedTaskCount();
+
+    /**
+     * Initiate an orderly shutdown. Previously submitted tasks are still
+     * executed, but the scheduler's threads exit once no work remains.
+     */
+    void shutdown();
+
+    /**
+     * Wait for all worker threads to exit after a shutdown request.
+     *
+     * @param timeout Maximum time to wait.
+     * @param unit Unit of timeout.
+     * @return true if this scheduler terminated, false if the timeout elapsed
+     *         first.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException;
+}
@@ -0,0 +1,165 @@
+package edu.rice.pcdp.runtime;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A scheduler that runs every PCDP task on its own virtual thread. Blocking
+ * operations inside tasks, such as Future.get, waiting on a finish scope,
+ * contended isolated sections, or actor hand-offs, then only park the virtual
+ * thread and release its carrier thread to run other tasks, instead of tying
+ * up (or compensating for) a worker thread.
+ * <p>
+ * Virtual threads require Java 21 or later. PCDP itself targets Java 8, so
+ * the virtual thread executor is looked up reflectively and this scheduler
+ * can only be selected when running on a recent enough JVM. The number of
+ * carrier threads is controlled by the JVM through the
+ * jdk.virtualThreadScheduler.parallelism system property; the number of
+ * workers passed to this scheduler is only used to size parallel loops.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class VirtualThreadScheduler implements TaskScheduler {
+
+    /**
+     * Factory method for virtual thread executors, or null if this JVM does
+     * not support virtual threads.
+     */
+    private static final Method NEW_EXECUTOR = findExecutorFactory();
+
+    /**
+     * The executor starting one virtual thread per task.
+     */
+    private final ExecutorService executor;
+    /**
+     * Number of workers reported to the runtime.
+     */
+    private volatile int numWorkers;
+    /**
+     * Number of tasks started, for runtime statistics.
+     */
+    private final AtomicLong startedCount = new AtomicLong();
+    /**
+     * Number of tasks currently running on a virtual thread.
+     */
+    private final AtomicInteger runningCount = new AtomicInteger();
+
+    /**
+     * Constructor.
+     *
+     * @param setNumWorkers Number of workers reported to the runtime, used to
+     *        size parallel loops.
+     * @throws IllegalStateException If this JVM does not support virtual
+     *         threads.
+     */
+    public VirtualThreadScheduler(final int setNumWorkers) {
+        if (NEW_EXECUTOR == null) {
+            throw new IllegalStateException("The virtual thread scheduler "
+                    + "requires Java 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            this.executor = (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (final ReflectiveOperationException ex) {
+            throw new IllegalStateException(
+                    "Unable to create a virtual thread executor", ex);
+        }
+        this.numWorkers = setNumWorkers;
+    }
+
+    /**
+     * Look up Executors.newVirtualThreadPerTaskExecutor.
+     *
+     * @return The factory method, or null if it does not exist.
+     */
+    private static Method findExecutorFactory() {
+        try {
+            return Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor");
+        } catch (final NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Check whether virtual threads are available on this JVM.
+     *
+     * @return true if this scheduler can be created.
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    @Override
+    public void execute(final BaseTask task) {
+        startedCount.incrementAndGet();
+        executor.execute(() -> {
+            runningCount.incrementAndGet();
+            try {
+                task.runOnCurrentThread();
+            } finally {
+                runningCount.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public void join(final BaseTask task) {
+        task.join();
+    }
+
+    @Override
+    public void helpUntil(final BooleanSupplier done) {
+        // Blocking a virtual thread is cheap, no need to help.
+    }
+
+    @Override
+    public int surplusQueuedTaskCount() {
+        // Every task gets its own thread, there is never a local queue.
+        return 0;
+    }
+
+    @Override
+    public int parallelism() {
+        return numWorkers;
+    }
+
+    @Override
+    public void resize(final int setNumWorkers) {
+        // The JVM manages the carrier threads, only loop sizing changes.
+        this.numWorkers = setNumWorkers;
+    }
+
+    @Override
+    public int activeWorkerCount() {
+        return Math.min(runningCount.get(), numWorkers);
+    }
+
+    @Override
+    public long queuedTaskCount() {
+        // Tasks waiting for a carrier thread are not visible from here.
+        return 0;
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualThreadScheduler[started = " + startedCount.get()
+            + (executor.isShutdown() ? ", shutdown]" : "]");
+    }
+}
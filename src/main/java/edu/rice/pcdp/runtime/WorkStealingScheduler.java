@@ -0,0 +1,458 @@
+package edu.rice.pcdp.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A simple work-stealing scheduler implemented directly on top of Java
+ * threads. Each worker owns a double-ended queue of tasks: it pushes and pops
+ * its own tasks at the head of the queue (LIFO), while idle workers steal from
+ * the tail (FIFO), which tends to hand them the oldest and therefore largest
+ * pieces of work. Tasks submitted from outside the scheduler go to a shared
+ * submission queue. Workers that find no work spin briefly and then park
+ * until new work is signaled.
+ * <p>
+ * Resizing starts new workers or retires existing ones. A retired worker
+ * keeps working, and its queue can still be stolen from, until it finishes
+ * the task it is running. It then hands its remaining local tasks over to the
+ * submission queue and exits.
+ *
+ * @author Max Grossman (jmg3@rice.edu)
+ */
+public final class WorkStealingScheduler implements TaskScheduler {
+
+    /**
+     * Number of times an idle worker re-scans for work before parking.
+     */
+    private static final int SPINS_BEFORE_PARK = 64;
+    /**
+     * Upper bound on how long an idle worker parks before scanning again,
+     * which bounds the cost of a missed wake-up.
+     */
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * How long a worker blocked in join parks when there is no other work to
+     * help with.
+     */
+    private static final long JOIN_PARK_NANOS =
+        TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Counter used to give each scheduler a distinct name in thread names.
+     */
+    private static final AtomicInteger SCHEDULER_COUNTER = new AtomicInteger();
+
+    /**
+     * Identifier of this scheduler, used in thread names.
+     */
+    private final int schedulerId;
+    /**
+     * The worker threads of this scheduler, including retired workers that
+     * have not exited yet. Replaced as a whole when workers start or exit.
+     */
+    private volatile Worker[] workers;
+    /**
+     * Target number of workers, not counting retired workers.
+     */
+    private volatile int parallelism = 0;
+    /**
+     * Index given to the next worker created, used in thread names.
+     */
+    private int nextWorkerIndex = 0;
+    /**
+     * Tasks submitted from threads that are not workers of this scheduler.
+     */
+    private final ConcurrentLinkedQueue<BaseTask> submissions =
+        new ConcurrentLinkedQueue<>();
+    /**
+     * Number of workers currently looking for work or parked.
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+    /**
+     * Number of successful steals, for runtime statistics.
+     */
+    private final AtomicLong stealCount = new AtomicLong();
+    /**
+     * Set once shutdown has been requested.
+     */
+    private volatile boolean shutdown = false;
+
+    /**
+     * Constructor, starts the worker threads.
+     *
+     * @param numWorkers Number of worker threads.
+     */
+    public WorkStealingScheduler(final int numWorkers) {
+        this.schedulerId = SCHEDULER_COUNTER.incrementAndGet();
+        this.workers = new Worker[0];
+        resize(numWorkers);
+    }
+
+    /**
+     * Get the calling thread as a worker of this scheduler.
+     *
+     * @return The calling worker, or null if the calling thread is not a
+     *         worker of this scheduler.
+     */
+    private Worker currentWorker() {
+        final Thread currentThread = Thread.currentThread();
+        if (currentThread instanceof Worker) {
+            final Worker worker = (Worker) currentThread;
+            if (worker.scheduler() == this) {
+                return worker;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void execute(final BaseTask task) {
+        final Worker worker = currentWorker();
+        if (worker != null) {
+            worker.tasks.addFirst(task);
+        } else {
+            submissions.add(task);
+        }
+        signalWork();
+    }
+
+    /**
+     * Wake up a parked worker, if there is one, to pick up new work.
+     */
+    private void signalWork() {
+        if (idleCount.get() == 0) {
+            return;
+        }
+        for (final Worker worker : workers) {
+            if (worker.parked) {
+                LockSupport.unpark(worker);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Find a task for the provided worker to execute: first from its own
+     * queue, then from the shared submissions, then by stealing from a
+     * randomly selected victim.
+     *
+     * @param worker The worker looking for work.
+     * @return A task to execute, or null if none was found.
+     */
+    private BaseTask findTask(final Worker worker) {
+        BaseTask task = worker.tasks.pollFirst();
+        if (task != null) {
+            return task;
+        }
+        task = submissions.poll();
+        if (task != null) {
+            return task;
+        }
+        final Worker[] victims = workers;
+        final int n = victims.length;
+        if (n == 0) {
+            return null;
+        }
+        final int start = worker.nextRandom(n);
+        for (int i = 0; i < n; i++) {
+            final Worker victim = victims[(start + i) % n];
+            if (victim != worker) {
+                task = victim.tasks.pollLast();
+                if (task != null) {
+                    stealCount.incrementAndGet();
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void join(final BaseTask task) {
+        final Worker worker = currentWorker();
+        if (worker != null && worker.tasks.peekFirst() == task
+                && worker.tasks.removeFirstOccurrence(task)) {
+            // Not stolen yet, so run it here rather than wait for it.
+            task.runOnCurrentThread();
+        }
+        helpUntil(task::isDone);
+        task.join();
+    }
+
+    @Override
+    public void helpUntil(final BooleanSupplier done) {
+        final Worker worker = currentWorker();
+        if (worker != null) {
+            while (!done.getAsBoolean()) {
+                final BaseTask next = findTask(worker);
+                if (next != null) {
+                    next.runOnCurrentThread();
+                } else {
+                    LockSupport.parkNanos(this, JOIN_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int surplusQueuedTaskCount() {
+        final Worker worker = currentWorker();
+        if (worker == null || worker.tasks.isEmpty()
+                || idleCount.get() > 0) {
+            return 0;
+        }
+        // Busy peers and local work queued: report one task per worker.
+        return parallelism;
+    }
+
+    @Override
+    public int parallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public synchronized void resize(final int numWorkers) {
+        if (numWorkers <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of workers must be positive, got " + numWorkers);
+        }
+        if (numWorkers > parallelism) {
+            final Worker[] oldWorkers = workers;
+            final int added = numWorkers - parallelism;
+            final Worker[] newWorkers = Arrays.copyOf(oldWorkers,
+                    oldWorkers.length + added);
+            for (int i = oldWorkers.length; i < newWorkers.length; i++) {
+                newWorkers[i] = new Worker(nextWorkerIndex, "pcdp-ws-"
+                        + schedulerId + "-worker-" + nextWorkerIndex);
+                nextWorkerIndex++;
+            }
+            workers = newWorkers;
+            for (int i = oldWorkers.length; i < newWorkers.length; i++) {
+                newWorkers[i].start();
+            }
+        } else {
+            int toRetire = parallelism - numWorkers;
+            final Worker[] current = workers;
+            for (int i = current.length - 1; i >= 0 && toRetire > 0; i--) {
+                final Worker worker = current[i];
+                if (!worker.retired) {
+                    worker.retired = true;
+                    LockSupport.unpark(worker);
+                    toRetire--;
+                }
+            }
+        }
+        parallelism = numWorkers;
+    }
+
+    /**
+     * Remove a retired worker that is about to exit from this scheduler.
+     *
+     * @param worker The exiting worker.
+     */
+    private synchronized void removeWorker(final Worker worker) {
+        final List<Worker> remaining = new ArrayList<>(
+                Arrays.asList(workers));
+        remaining.remove(worker);
+        workers = remaining.toArray(new Worker[0]);
+    }
+
+    @Override
+    public int activeWorkerCount() {
+        return Math.max(Math.min(parallelism,
+                    workers.length - idleCount.get()), 0);
+    }
+
+    @Override
+    public long queuedTaskCount() {
+        long count = submissions.size();
+        for (final Worker worker : workers) {
+            count += worker.tasks.size();
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        for (final Worker worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (final Worker worker : workers) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            }
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkStealingScheduler[parallelism = " + parallelism
+            + ", idle = " + idleCount.get()
+            + ", steals = " + stealCount.get()
+            + ", submissions = " + submissions.size()
+            + (shutdown ? ", shutdown]" : "]");
+    }
+
+    /**
+     * A worker thread of this scheduler.
+     */
+    private final class Worker extends TaskContext.CarrierThread {
+        /**
+         * Tasks owned by this worker. The owner uses the head, thieves the
+         * tail.
+         */
+        private final ConcurrentLinkedDeque<BaseTask> tasks =
+            new ConcurrentLinkedDeque<>();
+        /**
+         * Whether this worker is (about to be) parked waiting for work.
+         */
+        private volatile boolean parked = false;
+        /**
+         * Set when this worker is removed by a resize.
+         */
+        private volatile boolean retired = false;
+        /**
+         * State of the xorshift generator used to select steal victims.
+         */
+        private int randomSeed;
+
+        /**
+         * Constructor.
+         *
+         * @param index Index of this worker.
+         * @param name Name of this thread.
+         */
+        Worker(final int index, final String name) {
+            super(name);
+            this.randomSeed = 0x9E3779B9 * (index + 1);
+            setDaemon(true);
+        }
+
+        /**
+         * Get the scheduler owning this worker.
+         *
+         * @return The scheduler of this worker.
+         */
+        WorkStealingScheduler scheduler() {
+            return WorkStealingScheduler.this;
+        }
+
+        /**
+         * Generate a pseudo-random number in [0, bound).
+         *
+         * @param bound Exclusive upper bound, must be positive.
+         * @return A pseudo-random number.
+         */
+        int nextRandom(final int bound) {
+            int x = randomSeed;
+            x ^= x << 13;
+            x ^= x >>> 17;
+            x ^= x << 5;
+            randomSeed = x;
+            return (x & Integer.MAX_VALUE) % bound;
+        }
+
+        @Override
+        public void run() {
+            while (!retired) {
+                BaseTask task = findTask(this);
+                if (task == null) {
+                    task = awaitWork();
+                    if (task == null) {
+                        break;
+                    }
+                }
+                task.runOnCurrentThread();
+            }
+            if (retired) {
+                handOffLocalTasks();
+                removeWorker(this);
+            }
+        }
+
+        /**
+         * Move any task left in this worker's queue to the submission queue,
+         * so that the remaining workers pick it up after this worker exits.
+         */
+        private void handOffLocalTasks() {
+            BaseTask task = tasks.pollLast();
+            while (task != null) {
+                submissions.add(task);
+                task = tasks.pollLast();
+            }
+            signalWork();
+        }
+
+        /**
+         * Spin, then park, until work becomes available.
+         *
+         * @return A task to execute, or null if this scheduler was shut down
+         *         and no work remains.
+         */
+        private BaseTask awaitWork() {
+            idleCount.incrementAndGet();
+            try {
+                int spins = 0;
+                while (true) {
+                    final BaseTask task = findTask(this);
+                    if (task != null) {
+                        return task;
+                    }
+                    if (shutdown || retired) {
+                        return null;
+                    }
+                    if (spins < SPINS_BEFORE_PARK) {
+                        spins++;
+                        Thread.yield();
+                    } else {
+                        parked = true;
+                        if (!hasVisibleWork()) {
+                            LockSupport.parkNanos(this, PARK_NANOS);
+                        }
+                        parked = false;
+                    }
+                }
+            } finally {
+                idleCount.decrementAndGet();
+            }
+        }
+
+        /**
+         * Check, without removing anything, whether any queue in the
+         * scheduler holds a task.
+         *
+         * @return true if some task is queued.
+         */
+        private boolean hasVisibleWork() {
+            if (!submissions.isEmpty()) {
+                return true;
+            }
+            for (final Worker worker : workers) {
+                if (!worker.tasks.isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package edu.rice.pcdp.arrays;
+
+import edu.rice.pcdp.PCDPArrays;
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the parallel scans of PCDPArrays against sequential scans, on arrays
+ * of sizes around the sequential cutoff.
+ */
+@RunWith(JUnit4.class)
+public class TestPCDPArraysScan {
+
+    private static final int[] SIZES = {
+        0, 1, 2, 100, 16_383, 16_384, 16_385, 100_000, 1_000_003,
+    };
+
+    private PCDPRuntime runtime;
+
+    @Before
+    public void setUp() {
+        runtime = new PCDPRuntime("forkjoin", 4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runtime.shutdown();
+        assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static int[] randomInts(final int n) {
+        final Random random = new Random(n);
+        final int[] array = new int[n];
+        for (int i = 0; i < n; i++) {
+            array[i] = random.nextInt(100);
+        }
+        return array;
+    }
+
+    @Test
+    public void testIntScans() {
+        for (final int n : SIZES) {
+            final int[] inclusive = randomInts(n);
+            final int[] exclusive = inclusive.clone();
+            final int[] expectedInclusive = inclusive.clone();
+            final int[] expectedExclusive = new int[n];
+            for (int i = 1; i < n; i++) {
+                expectedInclusive[i] += expectedInclusive[i - 1];
+                expectedExclusive[i] = expectedInclusive[i - 1];
+            }
+            final int[] total = new int[1];
+
+            finish(runtime, () -> {
+                PCDPArrays.inclusiveScan(inclusive, Integer::sum);
+                total[0] = PCDPArrays.exclusiveScan(exclusive, 0,
+                    Integer::sum);
+            });
+
+            assertArrayEquals(expectedInclusive, inclusive);
+            assertArrayEquals(expectedExclusive, exclusive);
+            assertEquals(n == 0 ? 0 : expectedInclusive[n - 1], total[0]);
+        }
+    }
+
+    @Test
+    public void testLongMaxScan() {
+        for (final int n : SIZES) {
+            final Random random = new Random(n);
+            final long[] array = new long[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = random.nextLong();
+            }
+            final long[] expected = array.clone();
+            for (int i = 1; i < n; i++) {
+                expected[i] = Math.max(expected[i - 1], expected[i]);
+            }
+
+            finish(runtime, () -> {
+                PCDPArrays.inclusiveScan(array, Math::max);
+            });
+
+            assertArrayEquals(expected, array);
+        }
+    }
+
+    @Test
+    public void testDoubleScan() {
+        for (final int n : SIZES) {
+            final double[] array = new double[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = 0.5;
+            }
+            final double[] total = new double[1];
+
+            finish(runtime, () -> {
+                total[0] = PCDPArrays.exclusiveScan(array, 1.0,
+                    (a, b) -> a + b);
+            });
+
+            for (int i = 0; i < n; i++) {
+                assertEquals(1.0 + 0.5 * i, array[i], 0.0);
+            }
+            assertEquals(1.0 + 0.5 * n, total[0], 0.0);
+        }
+    }
+
+    /**
+     * Compose two affine maps x -> m[0] * x + m[1] modulo a prime, first
+     * applying f and then g. Composition is associative but not commutative.
+     */
+    private static long[] compose(final long[] f, final long[] g) {
+        final long p = 1_000_003;
+        return new long[] {f[0] * g[0] % p, (g[0] * f[1] + g[1]) % p};
+    }
+
+    @Test
+    public void testGenericNonCommutativeScan() {
+        for (final int n : SIZES) {
+            final long[][] array = new long[n][];
+            for (int i = 0; i < n; i++) {
+                array[i] = new long[] {i % 7 + 2, i % 11};
+            }
+            final long[][] exclusive = array.clone();
+            final long[][] expected = array.clone();
+            for (int i = 1; i < n; i++) {
+                expected[i] = compose(expected[i - 1], expected[i]);
+            }
+            final long[][] total = new long[1][];
+
+            finish(runtime, () -> {
+                PCDPArrays.inclusiveScan(array,
+                    TestPCDPArraysScan::compose);
+                total[0] = PCDPArrays.exclusiveScan(exclusive,
+                    new long[] {1, 0}, TestPCDPArraysScan::compose);
+            });
+
+            for (int i = 0; i < n; i++) {
+                assertArrayEquals(expected[i], array[i]);
+                assertArrayEquals(i == 0 ? new long[] {1, 0}
+                    : expected[i - 1], exclusive[i]);
+            }
+            assertArrayEquals(n == 0 ? new long[] {1, 0} : expected[n - 1],
+                total[0]);
+        }
+    }
+
+    @Test
+    public void testOutsideFinish() {
+        final int[] array = randomInts(100_000);
+        final int[] expected = array.clone();
+        for (int i = 1; i < expected.length; i++) {
+            expected[i] += expected[i - 1];
+        }
+        PCDPArrays.inclusiveScan(array, Integer::sum);
+        assertArrayEquals(expected, array);
+    }
+}
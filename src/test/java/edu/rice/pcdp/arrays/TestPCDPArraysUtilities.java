@@ -0,0 +1,246 @@
+package edu.rice.pcdp.arrays;
+
+import edu.rice.pcdp.PCDPArrays;
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the parallel sort, fill, copy, map, and filter of PCDPArrays against
+ * their sequential counterparts.
+ */
+@RunWith(JUnit4.class)
+public class TestPCDPArraysUtilities {
+
+    private static final int[] SIZES = {
+        0, 1, 100, 8_192, 8_193, 16_384, 100_000, 300_007,
+    };
+
+    private PCDPRuntime runtime;
+
+    @Before
+    public void setUp() {
+        runtime = new PCDPRuntime("forkjoin", 4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runtime.shutdown();
+        assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSortPrimitives() {
+        for (final int n : SIZES) {
+            final Random random = new Random(n);
+            final int[] ints = new int[n];
+            final long[] longs = new long[n];
+            final double[] doubles = new double[n];
+            for (int i = 0; i < n; i++) {
+                ints[i] = random.nextInt(n / 2 + 1);
+                longs[i] = random.nextLong();
+                doubles[i] = i % 1000 == 0 ? Double.NaN
+                    : (i % 1000 == 1 ? -0.0 : random.nextGaussian());
+            }
+            final int[] expectedInts = ints.clone();
+            final long[] expectedLongs = longs.clone();
+            final double[] expectedDoubles = doubles.clone();
+            Arrays.sort(expectedInts);
+            Arrays.sort(expectedLongs);
+            Arrays.sort(expectedDoubles);
+
+            finish(runtime, () -> {
+                PCDPArrays.sort(ints);
+                PCDPArrays.sort(longs);
+                PCDPArrays.sort(doubles);
+            });
+
+            assertArrayEquals(expectedInts, ints);
+            assertArrayEquals(expectedLongs, longs);
+            assertArrayEquals(expectedDoubles, doubles, 0.0);
+        }
+    }
+
+    @Test
+    public void testSortObjectsIsStable() {
+        for (final int n : SIZES) {
+            final Random random = new Random(n);
+            // Sort pairs by their first component only, so that the second
+            // component, the original position, reveals reordered equal keys.
+            final int[][] pairs = new int[n][];
+            for (int i = 0; i < n; i++) {
+                pairs[i] = new int[] {random.nextInt(100), i};
+            }
+            final int[][] expected = pairs.clone();
+            final Comparator<int[]> byKey = Comparator.comparingInt(
+                    (int[] pair) -> pair[0]);
+            Arrays.sort(expected, byKey);
+
+            finish(runtime, () -> {
+                PCDPArrays.sort(pairs, byKey);
+            });
+
+            for (int i = 0; i < n; i++) {
+                assertArrayEquals(expected[i], pairs[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testSortComparable() {
+        final Integer[] array = new Integer[100_000];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (i * 7919) % array.length;
+        }
+
+        finish(runtime, () -> {
+            PCDPArrays.sort(array);
+        });
+
+        for (int i = 0; i < array.length; i++) {
+            assertEquals(i, array[i].intValue());
+        }
+    }
+
+    @Test
+    public void testSortStaysInRuntime() {
+        final String[] array = new String[200_000];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = Integer.toString(array.length - i);
+        }
+        final AtomicBoolean inCommonPool = new AtomicBoolean(false);
+
+        finish(runtime, () -> {
+            PCDPArrays.sort(array, (a, b) -> {
+                if (ForkJoinTask.getPool() == ForkJoinPool.commonPool()) {
+                    inCommonPool.set(true);
+                }
+                return a.compareTo(b);
+            });
+        });
+
+        assertFalse(inCommonPool.get());
+        for (int i = 1; i < array.length; i++) {
+            assertTrue(array[i - 1].compareTo(array[i]) <= 0);
+        }
+    }
+
+    @Test
+    public void testFillAndCopy() {
+        for (final int n : SIZES) {
+            final long[] src = new long[n];
+            final long[] dest = new long[n + 3];
+            final String[] strings = new String[n];
+
+            finish(runtime, () -> {
+                PCDPArrays.fill(src, 42L);
+                PCDPArrays.fill(strings, "x");
+                PCDPArrays.copy(src, 0, dest, 3, n);
+            });
+
+            for (int i = 0; i < n; i++) {
+                assertEquals(42L, src[i]);
+                assertEquals("x", strings[i]);
+                assertEquals(42L, dest[i + 3]);
+            }
+            assertEquals(0L, dest[0]);
+        }
+    }
+
+    @Test
+    public void testCopyOverlapping() {
+        final int n = 100_000;
+        final int[] array = new int[n + 10];
+        final int[] expected = new int[n + 10];
+        for (int i = 0; i < n; i++) {
+            array[i] = i;
+            expected[i] = i;
+        }
+        System.arraycopy(expected, 0, expected, 10, n);
+
+        finish(runtime, () -> {
+            PCDPArrays.copy(array, 0, array, 10, n);
+        });
+
+        assertArrayEquals(expected, array);
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testCopyOutOfBounds() {
+        finish(runtime, () -> {
+            PCDPArrays.copy(new double[100_000], 1, new double[100_000], 0,
+                100_000);
+        });
+    }
+
+    @Test
+    public void testMap() {
+        for (final int n : SIZES) {
+            final int[] ints = new int[n];
+            final double[] doubles = new double[n];
+            final String[] strings = new String[n];
+            for (int i = 0; i < n; i++) {
+                ints[i] = i;
+                doubles[i] = i;
+                strings[i] = "s";
+            }
+
+            finish(runtime, () -> {
+                PCDPArrays.map(ints, (x) -> x * 2);
+                PCDPArrays.map(doubles, Math::sqrt);
+                PCDPArrays.map(strings, (s) -> s + s);
+            });
+
+            for (int i = 0; i < n; i++) {
+                assertEquals(2 * i, ints[i]);
+                assertEquals(Math.sqrt(i), doubles[i], 0.0);
+                assertEquals("ss", strings[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testFilter() {
+        for (final int n : SIZES) {
+            final long[] longs = new long[n];
+            final Integer[] boxed = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                longs[i] = i;
+                boxed[i] = i;
+            }
+            final long[][] evens = new long[1][];
+            final Integer[][] multiples = new Integer[1][];
+
+            finish(runtime, () -> {
+                evens[0] = PCDPArrays.filter(longs, (x) -> x % 2 == 0);
+                multiples[0] = PCDPArrays.filter(boxed, (x) -> x % 7 == 0);
+            });
+
+            assertEquals((n + 1) / 2, evens[0].length);
+            for (int i = 0; i < evens[0].length; i++) {
+                assertEquals(2L * i, evens[0][i]);
+            }
+            assertEquals((n + 6) / 7, multiples[0].length);
+            for (int i = 0; i < multiples[0].length; i++) {
+                assertEquals(7 * i, multiples[0][i].intValue());
+            }
+        }
+    }
+}
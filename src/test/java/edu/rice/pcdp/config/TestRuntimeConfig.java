@@ -0,0 +1,169 @@
+package edu.rice.pcdp.config;
+
+import edu.rice.pcdp.Actor;
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forasync;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test runtime configuration snapshots and their use by runtimes.
+ */
+@RunWith(JUnit4.class)
+public class TestRuntimeConfig {
+
+    private final List<PCDPRuntime> runtimes = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        SystemProperty.isolatedLocks.set("256");
+        for (final PCDPRuntime runtime : runtimes) {
+            runtime.shutdown();
+            assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private PCDPRuntime newRuntime(final RuntimeConfig config) {
+        final PCDPRuntime runtime = new PCDPRuntime(config);
+        runtimes.add(runtime);
+        return runtime;
+    }
+
+    @Test
+    public void testDefaults() {
+        final RuntimeConfig config = RuntimeConfig.fromSystemProperties();
+        assertEquals(8, config.loopChunksPerWorker());
+        assertEquals(64, config.adaptiveChunksPerWorker());
+        assertEquals(3, config.splitSurplusThreshold());
+        assertEquals(0, config.inlineQueueDepth());
+        assertEquals(0, config.inlineTaskDepth());
+        assertEquals(256, config.isolatedLocks());
+        assertEquals("lock", config.isolationMode());
+        assertEquals(0, config.actorBatchSize());
+        assertFalse(config.elastic());
+    }
+
+    @Test
+    public void testSnapshotIgnoresLaterPropertyChanges() {
+        SystemProperty.isolatedLocks.set("16");
+        final RuntimeConfig config = RuntimeConfig.fromSystemProperties();
+        SystemProperty.isolatedLocks.set("32");
+
+        assertEquals(16, config.isolatedLocks());
+        assertEquals(16, newRuntime(config).isolatedManager().numLocks());
+    }
+
+    @Test
+    public void testBuilderOverrides() {
+        final RuntimeConfig base = RuntimeConfig.newBuilder()
+            .numWorkers(3).scheduler(" WorkStealing ").build();
+        final RuntimeConfig derived = base.toBuilder()
+            .isolatedLocks(8).build();
+
+        assertEquals("workstealing", base.scheduler());
+        assertEquals(3, derived.numWorkers());
+        assertEquals("workstealing", derived.scheduler());
+        assertEquals(8, derived.isolatedLocks());
+        assertEquals(256, base.isolatedLocks());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNumWorkers() {
+        RuntimeConfig.newBuilder().numWorkers(0).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidElasticBounds() {
+        RuntimeConfig.newBuilder().minWorkers(4).maxWorkers(2).build();
+    }
+
+    @Test
+    public void testResizeUpdatesConfig() {
+        final PCDPRuntime runtime = newRuntime(RuntimeConfig.newBuilder()
+                .numWorkers(2).isolatedLocks(8).build());
+        runtime.resizeWorkerThreads(3);
+
+        assertEquals(3, runtime.config().numWorkers());
+        assertEquals(3, runtime.numWorkers());
+        assertEquals(8, runtime.config().isolatedLocks());
+    }
+
+    @Test
+    public void testLoopChunksPerWorker() {
+        final long coarse = countLoopTasks(1);
+        final long fine = countLoopTasks(16);
+        assertTrue(coarse < fine);
+        // One task per chunk, or one less if the calling task runs a chunk.
+        assertTrue(fine >= 2 * 16 - 1);
+    }
+
+    private long countLoopTasks(final int chunksPerWorker) {
+        final PCDPRuntime runtime = newRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin").numWorkers(2)
+                .loopChunksPerWorker(chunksPerWorker).build());
+        finish(runtime, () -> {
+            forasync(0, 9999, (i) -> { });
+        });
+        return runtime.numLoopTasks();
+    }
+
+    @Test
+    public void testActorBatchSize() {
+        final PCDPRuntime runtime = newRuntime(RuntimeConfig.newBuilder()
+                .scheduler("serial").numWorkers(1).actorBatchSize(10)
+                .build());
+        final RecordingActor actor = new RecordingActor();
+
+        finish(runtime, () -> {
+            for (int i = 0; i < 100; i++) {
+                actor.send(i);
+            }
+        });
+
+        assertEquals(100, actor.received.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) actor.received.get(i));
+        }
+        // The first send and one continuation per full batch.
+        assertEquals(10, runtime.numAsyncs());
+    }
+
+    @Test
+    public void testActorBatchSizeWithInlining() {
+        final PCDPRuntime runtime = newRuntime(RuntimeConfig.newBuilder()
+                .scheduler("serial").numWorkers(1).actorBatchSize(10)
+                .inlineTaskDepth(1).build());
+        final RecordingActor actor = new RecordingActor();
+
+        finish(runtime, () -> {
+            for (int i = 0; i < 100; i++) {
+                actor.send(i);
+            }
+        });
+
+        assertEquals(100, actor.received.size());
+        // Continuations are spawned even past the inlining cutoff.
+        assertEquals(10, runtime.numAsyncs());
+        assertEquals(0, runtime.numInlinedTasks());
+    }
+
+    private static final class RecordingActor extends Actor {
+        private final List<Integer> received = new ArrayList<>();
+
+        @Override
+        public void process(final Object msg) {
+            received.add((Integer) msg);
+        }
+    }
+}
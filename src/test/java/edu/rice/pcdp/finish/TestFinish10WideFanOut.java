@@ -0,0 +1,58 @@
+package edu.rice.pcdp.finish;
+
+import edu.rice.pcdp.PCDP;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forasync;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test a single finish waiting on many asyncs spawned concurrently by all
+ * workers.
+ */
+@RunWith(JUnit4.class)
+public class TestFinish10WideFanOut {
+
+    private static final int SPAWNS_PER_TASK = 2000;
+
+    @Test
+    public void testWideFanOut() {
+        final int spawners = 4 * PCDP.numThreads();
+        for (int iter = 0; iter < 20; iter++) {
+            final AtomicInteger count = new AtomicInteger();
+            finish(() -> {
+                forasync(0, spawners - 1, (w) -> {
+                    for (int i = 0; i < SPAWNS_PER_TASK; i++) {
+                        async(() -> {
+                            async(count::incrementAndGet);
+                        });
+                    }
+                });
+            });
+            assertEquals(spawners * SPAWNS_PER_TASK, count.get());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWideFanOutException() {
+        final int spawners = 4 * PCDP.numThreads();
+        finish(() -> {
+            forasync(0, spawners - 1, (w) -> {
+                for (int i = 0; i < SPAWNS_PER_TASK; i++) {
+                    final int index = i;
+                    async(() -> {
+                        if (w == 0 && index == SPAWNS_PER_TASK / 2) {
+                            throw new IllegalStateException("fan-out test");
+                        }
+                    });
+                }
+            });
+        });
+    }
+}
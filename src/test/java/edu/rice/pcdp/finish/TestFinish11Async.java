@@ -0,0 +1,127 @@
+package edu.rice.pcdp.finish;
+
+import edu.rice.pcdp.runtime.MultiException;
+import edu.rice.pcdp.runtime.Runtime;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.finishAsync;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test finish scopes that signal their completion through a future instead
+ * of blocking the caller.
+ */
+@RunWith(JUnit4.class)
+public class TestFinish11Async {
+
+    @Test
+    public void testCompletesAfterAllTasks() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+
+        final CompletableFuture<Void> done = finishAsync(() -> {
+            for (int i = 0; i < 100; i++) {
+                async(() -> {
+                    async(count::incrementAndGet);
+                });
+            }
+            async(() -> {
+                try {
+                    release.await();
+                } catch (final InterruptedException ie) {
+                    throw new RuntimeException(ie);
+                }
+            });
+        });
+
+        // The caller is not blocked, so it can release the scope itself.
+        assertFalse(done.isDone());
+        release.countDown();
+        done.get(10, TimeUnit.SECONDS);
+        assertEquals(100, count.get());
+    }
+
+    @Test
+    public void testSingleException() throws Exception {
+        final CompletableFuture<Void> done = finishAsync(() -> {
+            async(() -> {
+                throw new IllegalArgumentException("finishAsync test");
+            });
+        });
+        try {
+            done.get(10, TimeUnit.SECONDS);
+            fail("Expected an exception");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testMultipleExceptions() throws Exception {
+        final CompletableFuture<Void> done = finishAsync(() -> {
+            for (int i = 0; i < 3; i++) {
+                async(() -> {
+                    throw new IllegalStateException("finishAsync test");
+                });
+            }
+        });
+        try {
+            done.get(10, TimeUnit.SECONDS);
+            fail("Expected an exception");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof MultiException);
+            assertEquals(3, ((MultiException) ex.getCause())
+                    .getExceptions().size());
+        }
+    }
+
+    @Test
+    public void testDependentStagesRunOutsideTasks() throws Exception {
+        final AtomicBoolean outsideTasks = new AtomicBoolean();
+        final AtomicBoolean nestedFinishRan = new AtomicBoolean();
+
+        final CompletableFuture<Void> done = finishAsync(() -> {
+            async(() -> { });
+        }).thenRun(() -> {
+            outsideTasks.set(Runtime.currentTask() == null);
+            finish(() -> {
+                async(() -> nestedFinishRan.set(true));
+            });
+        });
+
+        done.get(10, TimeUnit.SECONDS);
+        assertTrue(outsideTasks.get());
+        assertTrue(nestedFinishRan.get());
+    }
+
+    @Test
+    public void testFromWithinFinish() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CompletableFuture<?>[] inner = new CompletableFuture<?>[1];
+
+        finish(() -> {
+            inner[0] = finishAsync(() -> {
+                for (int i = 0; i < 10; i++) {
+                    async(count::incrementAndGet);
+                }
+            });
+        });
+
+        inner[0].get(10, TimeUnit.SECONDS);
+        assertEquals(10, count.get());
+    }
+}
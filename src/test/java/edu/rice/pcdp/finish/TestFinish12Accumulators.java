@@ -0,0 +1,211 @@
+package edu.rice.pcdp.finish;
+
+import edu.rice.pcdp.DoubleFinishAccumulator;
+import edu.rice.pcdp.IntFinishAccumulator;
+import edu.rice.pcdp.LongFinishAccumulator;
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forasync;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test reductions through accumulators registered with a finish scope.
+ */
+@RunWith(JUnit4.class)
+public class TestFinish12Accumulators {
+
+    private static final int N = 10_000;
+
+    @Test
+    public void testSums() {
+        final IntFinishAccumulator intSum = IntFinishAccumulator.sum();
+        final LongFinishAccumulator longSum = LongFinishAccumulator.sum();
+        final DoubleFinishAccumulator doubleSum =
+            DoubleFinishAccumulator.sum();
+
+        finish(() -> {
+            forasync(1, N, (i) -> {
+                intSum.put(i);
+                longSum.put((long) i * i);
+                doubleSum.put(0.5);
+            });
+        }, intSum, longSum, doubleSum);
+
+        long squares = 0;
+        for (long i = 1; i <= N; i++) {
+            squares += i * i;
+        }
+        assertEquals(N * (N + 1) / 2, intSum.get());
+        assertEquals(squares, longSum.get());
+        assertEquals(N * 0.5, doubleSum.get(), 0.0);
+    }
+
+    @Test
+    public void testMinMaxAny() {
+        final IntFinishAccumulator min = IntFinishAccumulator.min();
+        final LongFinishAccumulator max = LongFinishAccumulator.max();
+        final DoubleFinishAccumulator any = DoubleFinishAccumulator.any();
+
+        finish(() -> {
+            forasync(0, N - 1, (i) -> {
+                min.put(N - i);
+                max.put(i);
+                if (i == 42) {
+                    any.put(i);
+                }
+            });
+        }, min, max, any);
+
+        assertEquals(1, min.get());
+        assertEquals(N - 1, max.get());
+        assertEquals(42.0, any.get(), 0.0);
+    }
+
+    @Test
+    public void testEmptyFinish() {
+        final IntFinishAccumulator min = IntFinishAccumulator.min();
+        finish(() -> { }, min);
+        assertEquals(Integer.MAX_VALUE, min.get());
+    }
+
+    @Test
+    public void testUserDefinedOperator() {
+        final LongFinishAccumulator xor =
+            LongFinishAccumulator.of(0L, (a, b) -> a ^ b);
+
+        finish(() -> {
+            forasync(0, N - 1, (i) -> {
+                xor.put(i);
+            });
+        }, xor);
+
+        long expected = 0;
+        for (long i = 0; i < N; i++) {
+            expected ^= i;
+        }
+        assertEquals(expected, xor.get());
+    }
+
+    @Test
+    public void testNestedFinishes() {
+        final IntFinishAccumulator sum = IntFinishAccumulator.sum();
+
+        finish(() -> {
+            for (int i = 0; i < 10; i++) {
+                async(() -> {
+                    finish(() -> {
+                        for (int j = 0; j < 10; j++) {
+                            async(() -> sum.put(1));
+                        }
+                    });
+                });
+            }
+        }, sum);
+
+        assertEquals(100, sum.get());
+    }
+
+    @Test
+    public void testReuse() {
+        final IntFinishAccumulator sum = IntFinishAccumulator.sum();
+
+        for (int round = 1; round <= 3; round++) {
+            final int value = round;
+            finish(() -> {
+                forasync(1, 100, (i) -> {
+                    sum.put(value);
+                });
+            }, sum);
+            assertEquals(100 * round, sum.get());
+        }
+    }
+
+    @Test
+    public void testGetWhileRunning() {
+        final IntFinishAccumulator sum = IntFinishAccumulator.sum();
+        final AtomicBoolean thrown = new AtomicBoolean(false);
+
+        finish(() -> {
+            sum.put(1);
+            try {
+                sum.get();
+            } catch (final IllegalStateException ise) {
+                thrown.set(true);
+            }
+        }, sum);
+
+        assertTrue(thrown.get());
+        assertEquals(1, sum.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPutOutsideFinish() {
+        final IntFinishAccumulator sum = IntFinishAccumulator.sum();
+        finish(() -> { }, sum);
+        sum.put(1);
+    }
+
+    @Test
+    public void testPutFromSiblingScope() throws InterruptedException {
+        final PCDPRuntime runtime = new PCDPRuntime("forkjoin", 4);
+        final IntFinishAccumulator sum = IntFinishAccumulator.sum();
+        final CountDownLatch opened = new CountDownLatch(1);
+        final CountDownLatch attempted = new CountDownLatch(1);
+        final AtomicBoolean thrown = new AtomicBoolean(false);
+
+        try {
+            finish(runtime, () -> {
+                async(() -> {
+                    finish(() -> {
+                        sum.put(1);
+                        opened.countDown();
+                        await(attempted);
+                    }, sum);
+                });
+                async(() -> {
+                    // The accumulator is registered with a finish this task
+                    // does not belong to.
+                    await(opened);
+                    try {
+                        sum.put(1);
+                    } catch (final IllegalStateException ise) {
+                        thrown.set(true);
+                    }
+                    attempted.countDown();
+                });
+            });
+        } finally {
+            runtime.shutdown();
+            assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertTrue(thrown.get());
+        assertEquals(1, sum.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRegisteredTwice() {
+        final IntFinishAccumulator sum = IntFinishAccumulator.sum();
+        finish(() -> {
+            finish(() -> { }, sum);
+        }, sum);
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (final InterruptedException ie) {
+            throw new IllegalStateException(ie);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package edu.rice.pcdp.forall;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forall;
+import static edu.rice.pcdp.PCDP.forallChunked;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the recursive range splitting used to implement parallel loops.
+ */
+@RunWith(JUnit4.class)
+public class TestForallRangeSplitting {
+
+    @Test
+    public void testLargeRangeVisitsEachIterationOnce() {
+        final int n = 1_000_000;
+        final AtomicIntegerArray visits = new AtomicIntegerArray(n);
+        forall(0, n - 1, (i) -> {
+            visits.incrementAndGet(i);
+        });
+        for (int i = 0; i < n; i++) {
+            assertEquals("iteration " + i, 1, visits.get(i));
+        }
+    }
+
+    @Test
+    public void testUnevenChunks() {
+        final int n = 1_003;
+        for (int chunk : new int[] {1, 2, 3, 7, 64, 1_002, 1_003, 5_000}) {
+            final AtomicIntegerArray visits = new AtomicIntegerArray(n);
+            forallChunked(0, n - 1, chunk, (i) -> {
+                visits.incrementAndGet(i);
+            });
+            for (int i = 0; i < n; i++) {
+                assertEquals("iteration " + i + " with chunk " + chunk, 1,
+                        visits.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptiveChunkingWithSkewedCosts() {
+        final int n = 10_000;
+        final AtomicIntegerArray visits = new AtomicIntegerArray(n);
+        forallChunked(0, n - 1, (i) -> {
+            if (i < 100) {
+                double x = 0.0;
+                for (int j = 0; j < 10_000; j++) {
+                    x += Math.sqrt(j);
+                }
+                assertEquals(false, Double.isNaN(x));
+            }
+            visits.incrementAndGet(i);
+        });
+        for (int i = 0; i < n; i++) {
+            assertEquals("iteration " + i, 1, visits.get(i));
+        }
+    }
+
+    @Test
+    public void testAdaptiveChunkingTinyLoops() {
+        for (int n = 1; n <= 17; n++) {
+            final AtomicIntegerArray visits = new AtomicIntegerArray(n);
+            forallChunked(0, n - 1, (i) -> {
+                visits.incrementAndGet(i);
+            });
+            for (int i = 0; i < n; i++) {
+                assertEquals("iteration " + i + " of " + n, 1,
+                        visits.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncsInLoopBodyJoinEnclosingFinish() {
+        final AtomicInteger count = new AtomicInteger();
+        finish(() -> {
+            forall(0, 999, (i) -> {
+                async(() -> {
+                    count.incrementAndGet();
+                });
+            });
+            assertEquals(1_000, count.get());
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package edu.rice.pcdp.forall;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static edu.rice.pcdp.PCDP.forallReduceDouble;
+import static edu.rice.pcdp.PCDP.forallReduceInt;
+import static edu.rice.pcdp.PCDP.forallReduceLong;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test the primitive-specialized parallel reductions.
+ */
+@RunWith(JUnit4.class)
+public class TestForallReduce {
+
+    private static final int[][] RANGES = {
+        {0, 0}, {0, 1}, {0, 7}, {3, 14}, {13, 100}, {-50, 50}, {0, 100_000},
+    };
+
+    @Test
+    public void testIntSum() {
+        for (final int[] range : RANGES) {
+            int expected = 0;
+            for (int i = range[0]; i <= range[1]; i++) {
+                expected += i;
+            }
+            assertEquals(expected, forallReduceInt(range[0], range[1], 0,
+                        (i) -> i, (a, b) -> a + b));
+        }
+    }
+
+    @Test
+    public void testLongMax() {
+        for (final int[] range : RANGES) {
+            final long expected = (long) range[1] * range[1];
+            assertEquals(expected, forallReduceLong(range[0], range[1],
+                        Long.MIN_VALUE, (i) -> (long) i * Math.abs(i),
+                        Math::max));
+        }
+    }
+
+    @Test
+    public void testDoubleDotProduct() {
+        final int n = 10_000;
+        final double[] x = new double[n];
+        final double[] y = new double[n];
+        double expected = 0.0;
+        for (int i = 0; i < n; i++) {
+            x[i] = i;
+            y[i] = 0.5;
+            expected += x[i] * y[i];
+        }
+
+        assertEquals(expected, forallReduceDouble(0, n - 1, 0.0,
+                    (i) -> x[i] * y[i], (a, b) -> a + b), 0.0);
+    }
+
+    @Test
+    public void testEmptyRange() {
+        assertEquals(7, forallReduceInt(1, 0, 7, (i) -> i, (a, b) -> a + b));
+        assertEquals(7L, forallReduceLong(1, 0, 7L, (i) -> i,
+                    (a, b) -> a + b));
+        assertEquals(7.0, forallReduceDouble(1, 0, 7.0, (i) -> i,
+                    (a, b) -> a + b), 0.0);
+    }
+
+    @Test
+    public void testNonCommutativeCombiner() {
+        // Keeps the leftmost non-identity value, which is associative but not
+        // commutative, so the result depends on combining chunks in order.
+        for (final int[] range : RANGES) {
+            final int first = forallReduceInt(range[0], range[1],
+                    Integer.MIN_VALUE, (i) -> i,
+                    (a, b) -> a == Integer.MIN_VALUE ? b : a);
+            assertEquals(range[0], first);
+        }
+    }
+
+    @Test
+    public void testNested() {
+        final int n = 100;
+        final long total = forallReduceLong(0, n - 1, 0L,
+                (i) -> forallReduceInt(0, i, 0, (j) -> 1, (a, b) -> a + b),
+                (a, b) -> a + b);
+        assertEquals((long) n * (n + 1) / 2, total);
+    }
+}
@@ -0,0 +1,91 @@
+package edu.rice.pcdp.future;
+
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.future;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test that waiting on a future that has not been stolen executes it on the
+ * waiting worker, and that deep recursion through futures does not block
+ * workers.
+ */
+@RunWith(JUnit4.class)
+public class TestFuture5HelpingGet {
+
+    @Test
+    public void testForkJoinRunsUnstolenFutureInline() throws Exception {
+        runsUnstolenFutureInline("forkjoin");
+    }
+
+    @Test
+    public void testWorkStealingRunsUnstolenFutureInline()
+            throws Exception {
+        runsUnstolenFutureInline("workstealing");
+    }
+
+    @Test
+    public void testSerialRunsUnstolenFutureInline() throws Exception {
+        runsUnstolenFutureInline("serial");
+    }
+
+    @Test
+    public void testRecursiveFutures() throws Exception {
+        final PCDPRuntime runtime = new PCDPRuntime(2);
+        try {
+            final int[] result = new int[1];
+            finish(runtime, () -> {
+                result[0] = fib(22);
+            });
+            assertEquals(17711, result[0]);
+        } finally {
+            runtime.shutdown();
+            assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private void runsUnstolenFutureInline(final String scheduler)
+            throws Exception {
+        // With a single worker, nobody can steal the future before get.
+        final PCDPRuntime runtime = new PCDPRuntime(scheduler, 1);
+        try {
+            final Thread[] threads = new Thread[2];
+            finish(runtime, () -> {
+                final Future<Thread> f = future(() -> Thread.currentThread());
+                threads[0] = Thread.currentThread();
+                try {
+                    threads[1] = f.get();
+                } catch (final InterruptedException
+                        | ExecutionException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            assertTrue(threads[0] == threads[1]);
+        } finally {
+            runtime.shutdown();
+            assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static int fib(final int n) {
+        if (n < 2) {
+            return n;
+        }
+        final Future<Integer> left = future(() -> fib(n - 1));
+        final int right = fib(n - 2);
+        try {
+            return left.get() + right;
+        } catch (final InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package edu.rice.pcdp.isolated;
+
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forasyncChunked;
+import static edu.rice.pcdp.PCDP.isolated;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test mutual exclusion between global and object-based isolation.
+ */
+@RunWith(JUnit4.class)
+public class TestIsolated1Global {
+
+    private static final int N = 20_000;
+
+    private PCDPRuntime runtime;
+
+    @Before
+    public void setUp() {
+        runtime = new PCDPRuntime("forkjoin", 4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runtime.shutdown();
+        assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testMixedIsolation() {
+        final Object[] objects = {new Object(), new Object(), new Object()};
+        final long[] counters = new long[objects.length];
+        final long[] total = new long[1];
+        // Number of sections currently inside isolation on each object.
+        final AtomicInteger[] inside = new AtomicInteger[objects.length];
+        for (int i = 0; i < objects.length; i++) {
+            inside[i] = new AtomicInteger();
+        }
+        final AtomicInteger errors = new AtomicInteger();
+
+        finish(runtime, () -> {
+            forasyncChunked(0, N - 1, 16, (i) -> {
+                if (i % 8 == 0) {
+                    isolated(() -> {
+                        for (final AtomicInteger in : inside) {
+                            if (in.get() != 0) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                        total[0]++;
+                    });
+                } else {
+                    final int k = i % objects.length;
+                    isolated(objects[k], () -> {
+                        if (inside[k].incrementAndGet() != 1) {
+                            errors.incrementAndGet();
+                        }
+                        counters[k]++;
+                        inside[k].decrementAndGet();
+                    });
+                }
+            });
+        });
+
+        long sum = total[0];
+        for (final long counter : counters) {
+            sum += counter;
+        }
+        assertEquals(N, sum);
+        assertEquals(N / 8, total[0]);
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testObjectIsolationNestedInGlobal() {
+        final int[] counter = new int[1];
+        finish(runtime, () -> {
+            isolated(() -> {
+                isolated(counter, () -> {
+                    isolated(() -> {
+                        counter[0]++;
+                    });
+                });
+            });
+        });
+        assertEquals(1, counter[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGlobalIsolationNestedInObject() {
+        final Object obj = new Object();
+        finish(runtime, () -> {
+            isolated(obj, () -> {
+                isolated(() -> { });
+            });
+        });
+    }
+}
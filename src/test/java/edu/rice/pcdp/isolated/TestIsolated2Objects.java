@@ -0,0 +1,161 @@
+package edu.rice.pcdp.isolated;
+
+import edu.rice.pcdp.config.RuntimeConfig;
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forasyncChunked;
+import static edu.rice.pcdp.PCDP.isolated;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test object-based isolation on one, two, and any number of objects.
+ */
+@RunWith(JUnit4.class)
+public class TestIsolated2Objects {
+
+    private static final int N = 20_000;
+    private static final int N_ACCOUNTS = 10;
+
+    private PCDPRuntime runtime;
+
+    @Before
+    public void setUp() {
+        // Few locks, so that distinct objects often share one.
+        runtime = new PCDPRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin")
+                .numWorkers(4)
+                .isolatedLocks(4)
+                .build());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runtime.shutdown();
+        assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * An object whose hashCode must not be used for isolation.
+     */
+    private static final class Account {
+        private long balance = 1000;
+
+        @Override
+        public int hashCode() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void testTransfers() {
+        final Account[] accounts = new Account[N_ACCOUNTS];
+        for (int i = 0; i < N_ACCOUNTS; i++) {
+            accounts[i] = new Account();
+        }
+        final AtomicInteger errors = new AtomicInteger();
+
+        finish(runtime, () -> {
+            forasyncChunked(0, N - 1, 16, (i) -> {
+                final Account from = accounts[i % N_ACCOUNTS];
+                final Account to = accounts[(i * 7 + 3) % N_ACCOUNTS];
+                final Account fee = accounts[(i * 3 + 1) % N_ACCOUNTS];
+                if (i % 3 == 0) {
+                    isolated(from, () -> {
+                        from.balance += 1;
+                        from.balance -= 1;
+                    });
+                } else if (i % 3 == 1) {
+                    isolated(from, to, () -> {
+                        from.balance -= 2;
+                        to.balance += 2;
+                    });
+                } else {
+                    // The same object may be passed more than once.
+                    isolated(() -> {
+                        from.balance -= 3;
+                        to.balance += 2;
+                        fee.balance += 1;
+                    }, from, to, fee, from);
+                }
+            });
+            isolated(() -> {
+                long total = 0;
+                for (final Account account : accounts) {
+                    total += account.balance;
+                }
+                if (total != 1000 * N_ACCOUNTS) {
+                    errors.incrementAndGet();
+                }
+            });
+        });
+
+        long total = 0;
+        for (final Account account : accounts) {
+            total += account.balance;
+        }
+        assertEquals(1000L * N_ACCOUNTS, total);
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testMutualExclusion() {
+        final Object[] objects = new Object[N_ACCOUNTS];
+        final AtomicInteger[] inside = new AtomicInteger[N_ACCOUNTS];
+        for (int i = 0; i < N_ACCOUNTS; i++) {
+            objects[i] = new Object();
+            inside[i] = new AtomicInteger();
+        }
+        final AtomicInteger errors = new AtomicInteger();
+
+        finish(runtime, () -> {
+            forasyncChunked(0, N - 1, 16, (i) -> {
+                final int a = i % N_ACCOUNTS;
+                final int b = (i / N_ACCOUNTS) % N_ACCOUNTS;
+                final int c = (i * 7) % N_ACCOUNTS;
+                isolated(() -> {
+                    for (final int k : new int[] {a, b, c}) {
+                        inside[k].incrementAndGet();
+                    }
+                    for (final int k : new int[] {a, b, c}) {
+                        final int expected = (k == a ? 1 : 0)
+                            + (k == b ? 1 : 0) + (k == c ? 1 : 0);
+                        if (inside[k].get() != expected) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    for (final int k : new int[] {a, b, c}) {
+                        inside[k].decrementAndGet();
+                    }
+                }, objects[a], objects[b], objects[c]);
+            });
+        });
+
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testNoObjects() {
+        final int[] counter = new int[1];
+        finish(runtime, () -> {
+            isolated(() -> {
+                counter[0]++;
+            }, new Object[0]);
+        });
+        assertEquals(1, counter[0]);
+    }
+}
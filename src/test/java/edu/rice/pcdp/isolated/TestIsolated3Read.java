@@ -0,0 +1,111 @@
+package edu.rice.pcdp.isolated;
+
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forasyncChunked;
+import static edu.rice.pcdp.PCDP.isolated;
+import static edu.rice.pcdp.PCDP.isolatedRead;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test that read-only isolation observes consistent state while isolated
+ * sections update it.
+ */
+@RunWith(JUnit4.class)
+public class TestIsolated3Read {
+
+    private static final int N = 50_000;
+
+    private PCDPRuntime runtime;
+
+    @Before
+    public void setUp() {
+        runtime = new PCDPRuntime("forkjoin", 4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runtime.shutdown();
+        assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Two fields that isolated sections keep opposite to each other.
+     */
+    private static final class Pair {
+        private long x = 0;
+        private long y = 0;
+    }
+
+    @Test
+    public void testReadsAreConsistent() {
+        final Pair pair = new Pair();
+        final AtomicInteger errors = new AtomicInteger();
+
+        finish(runtime, () -> {
+            forasyncChunked(0, N - 1, 16, (i) -> {
+                if (i % 10 == 0) {
+                    isolated(pair, () -> {
+                        pair.x++;
+                        Thread.yield();
+                        pair.y--;
+                    });
+                } else if (i % 10 == 1) {
+                    isolated(() -> {
+                        pair.x += 2;
+                        pair.y -= 2;
+                    });
+                } else {
+                    final long sum = isolatedRead(pair, () -> pair.x + pair.y);
+                    if (sum != 0) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        });
+
+        assertEquals(0, errors.get());
+        assertEquals(N / 10 * 3, pair.x);
+        assertEquals(-pair.x, pair.y);
+    }
+
+    @Test
+    public void testReadInsideIsolated() {
+        final Pair pair = new Pair();
+        final long[] seen = new long[2];
+
+        finish(runtime, () -> {
+            isolated(pair, () -> {
+                pair.x = 1;
+                seen[0] = isolatedRead(pair, () -> pair.x);
+            });
+            isolated(() -> {
+                pair.x = 2;
+                seen[1] = isolatedRead(pair, () -> pair.x);
+            });
+        });
+
+        assertEquals(1, seen[0]);
+        assertEquals(2, seen[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExceptionIsReported() {
+        final Pair pair = new Pair();
+        finish(runtime, () -> {
+            isolatedRead(pair, () -> {
+                throw new IllegalArgumentException();
+            });
+        });
+    }
+}
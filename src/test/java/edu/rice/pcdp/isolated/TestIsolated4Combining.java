@@ -0,0 +1,227 @@
+package edu.rice.pcdp.isolated;
+
+import edu.rice.pcdp.config.RuntimeConfig;
+import edu.rice.pcdp.runtime.BaseTask;
+import edu.rice.pcdp.runtime.IsolatedManager;
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import edu.rice.pcdp.runtime.Runtime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.finishAsync;
+import static edu.rice.pcdp.PCDP.forasyncChunked;
+import static edu.rice.pcdp.PCDP.isolated;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test global isolation executed by flat combining.
+ */
+@RunWith(JUnit4.class)
+public class TestIsolated4Combining {
+
+    private static final int N = 20_000;
+
+    private PCDPRuntime runtime;
+
+    @Before
+    public void setUp() {
+        runtime = new PCDPRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin")
+                .numWorkers(4)
+                .isolationMode("Combining")
+                .build());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runtime.shutdown();
+        assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCounter() {
+        final long[] counter = new long[1];
+        final Object obj = new Object();
+
+        finish(runtime, () -> {
+            forasyncChunked(0, N - 1, 16, (i) -> {
+                if (i % 4 == 0) {
+                    isolated(obj, () -> {
+                        counter[0]++;
+                    });
+                } else {
+                    isolated(() -> {
+                        final long value = counter[0];
+                        if (i % 64 == 1) {
+                            // Let other workers contend for global isolation.
+                            Thread.yield();
+                        }
+                        counter[0] = value + 1;
+                    });
+                }
+            });
+        });
+
+        assertEquals(N, counter[0]);
+    }
+
+    @Test
+    public void testExceptionsReachSubmitter() {
+        final AtomicInteger caught = new AtomicInteger();
+        final int[] counter = new int[1];
+
+        finish(runtime, () -> {
+            forasyncChunked(0, N - 1, 16, (i) -> {
+                try {
+                    isolated(() -> {
+                        counter[0]++;
+                        if (i % 100 == 0) {
+                            throw new IndexedException(i);
+                        }
+                    });
+                } catch (final IndexedException ex) {
+                    assertEquals(i, ex.index);
+                    caught.incrementAndGet();
+                }
+            });
+        });
+
+        assertEquals(N, counter[0]);
+        assertEquals(N / 100, caught.get());
+    }
+
+    @Test
+    public void testNested() {
+        final int[] counter = new int[1];
+        final Object obj = new Object();
+
+        finish(runtime, () -> {
+            forasyncChunked(0, 999, 16, (i) -> {
+                isolated(() -> {
+                    isolated(obj, () -> {
+                        isolated(() -> {
+                            counter[0]++;
+                        });
+                    });
+                });
+            });
+        });
+
+        assertEquals(1000, counter[0]);
+    }
+
+    @Test
+    public void testHandOver() throws InterruptedException {
+        final IsolatedManager manager = runtime.isolatedManager();
+        final Thread main = Thread.currentThread();
+        final AtomicReference<Thread> executor = new AtomicReference<>();
+        final AtomicReference<Throwable> reported = new AtomicReference<>();
+        final Thread waiter = new Thread(() -> {
+            try {
+                manager.isolated(() -> {
+                    executor.set(Thread.currentThread());
+                    throw new IndexedException(7);
+                });
+            } catch (final Throwable t) {
+                reported.set(t);
+            }
+        });
+
+        manager.isolated(() -> {
+            waiter.start();
+            // The waiter only parks once it has published its block.
+            final long deadline = System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(10);
+            while (waiter.getState() != Thread.State.TIMED_WAITING
+                    && System.nanoTime() < deadline) {
+                Thread.yield();
+            }
+        });
+        waiter.join();
+
+        assertSame(main, executor.get());
+        assertTrue(reported.get() instanceof IndexedException);
+        assertEquals(7, ((IndexedException) reported.get()).index);
+    }
+
+    @Test
+    public void testHandOverRunsInPublishingTask() throws Exception {
+        final IsolatedManager manager = runtime.isolatedManager();
+        final Thread main = Thread.currentThread();
+        final AtomicReference<Thread> publisher = new AtomicReference<>();
+        final AtomicReference<Thread> executor = new AtomicReference<>();
+        final AtomicReference<BaseTask> publishingTask =
+            new AtomicReference<>();
+        final AtomicReference<BaseTask> sectionTask = new AtomicReference<>();
+        final AtomicBoolean asyncRan = new AtomicBoolean(false);
+        final List<CompletableFuture<Void>> scope = new ArrayList<>();
+
+        manager.isolated(() -> {
+            scope.add(finishAsync(runtime, () -> {
+                publishingTask.set(Runtime.currentTask());
+                publisher.set(Thread.currentThread());
+                manager.isolated(() -> {
+                    executor.set(Thread.currentThread());
+                    sectionTask.set(Runtime.currentTask());
+                    // Joins the finish scope of the publishing task.
+                    async(() -> asyncRan.set(true));
+                });
+            }));
+            final long deadline = System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(10);
+            while ((publisher.get() == null
+                        || publisher.get().getState()
+                            != Thread.State.TIMED_WAITING)
+                    && System.nanoTime() < deadline) {
+                Thread.yield();
+            }
+        });
+        scope.get(0).get(10, TimeUnit.SECONDS);
+
+        assertSame(main, executor.get());
+        assertNotNull(publishingTask.get());
+        assertSame(publishingTask.get(), sectionTask.get());
+        assertTrue(asyncRan.get());
+    }
+
+    @Test
+    public void testCounterAfterResize() {
+        runtime.resizeWorkerThreads(16);
+        testCounter();
+        runtime.resizeWorkerThreads(2);
+        testCounter();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownMode() {
+        new PCDPRuntime(RuntimeConfig.newBuilder()
+                .isolationMode("spinning").build());
+    }
+
+    /**
+     * An exception identifying the isolated block that threw it.
+     */
+    private static final class IndexedException extends RuntimeException {
+        private final int index;
+
+        IndexedException(final int setIndex) {
+            this.index = setIndex;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package edu.rice.pcdp.isolated;
+
+import edu.rice.pcdp.runtime.SpinParkLock;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the spin-then-park locks that object-based isolation is striped over.
+ */
+@RunWith(JUnit4.class)
+public class TestIsolated5SpinParkLock {
+
+    private static final int N_THREADS = 4;
+    private static final int N = 20_000;
+
+    @Test
+    public void testReentrancy() {
+        final SpinParkLock lock = new SpinParkLock();
+        assertFalse(lock.isHeldByCurrentThread());
+        assertEquals(0, lock.getHoldCount());
+
+        lock.lock();
+        lock.lock();
+        assertTrue(lock.isHeldByCurrentThread());
+        assertEquals(2, lock.getHoldCount());
+
+        lock.unlock();
+        assertTrue(lock.isHeldByCurrentThread());
+        lock.unlock();
+        assertFalse(lock.isHeldByCurrentThread());
+        assertEquals(0, lock.getHoldCount());
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void testUnlockWithoutHolding() {
+        new SpinParkLock().unlock();
+    }
+
+    @Test
+    public void testMutualExclusion() throws InterruptedException {
+        final SpinParkLock lock = new SpinParkLock();
+        final long[] counter = new long[1];
+        final Thread[] threads = new Thread[N_THREADS];
+        for (int t = 0; t < N_THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < N; i++) {
+                    lock.lock();
+                    try {
+                        final long value = counter[0];
+                        if (i % 256 == 0) {
+                            // Hold the lock long enough for others to park.
+                            Thread.yield();
+                        }
+                        counter[0] = value + 1;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals((long) N_THREADS * N, counter[0]);
+    }
+
+    @Test
+    public void testParksWhileHeld() throws InterruptedException {
+        final SpinParkLock lock = new SpinParkLock();
+        final AtomicBoolean acquired = new AtomicBoolean(false);
+        final Thread waiter = new Thread(() -> {
+            lock.lock();
+            acquired.set(true);
+            lock.unlock();
+        });
+
+        lock.lock();
+        waiter.start();
+        final long deadline = System.nanoTime()
+            + TimeUnit.SECONDS.toNanos(10);
+        while (waiter.getState() != Thread.State.WAITING
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, waiter.getState());
+        assertFalse(acquired.get());
+        lock.unlock();
+
+        waiter.join();
+        assertTrue(acquired.get());
+    }
+}
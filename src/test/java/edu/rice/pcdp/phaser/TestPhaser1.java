@@ -0,0 +1,233 @@
+package edu.rice.pcdp.phaser;
+
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import edu.rice.pcdp.runtime.Phaser;
+import edu.rice.pcdp.runtime.PhaserAccumulator;
+import edu.rice.pcdp.runtime.PhaserMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static edu.rice.pcdp.PCDP.asyncPhased;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.newPhaser;
+import static edu.rice.pcdp.PCDP.next;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test phaser synchronization between tasks, with more tasks than workers.
+ */
+@RunWith(JUnit4.class)
+public class TestPhaser1 {
+
+    private static final int N_TASKS = 8;
+    private static final int N_PHASES = 20;
+
+    private PCDPRuntime runtime;
+
+    @Before
+    public void setUp() {
+        runtime = new PCDPRuntime("forkjoin", 2);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runtime.shutdown();
+        assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBarrier() {
+        final AtomicInteger arrived = new AtomicInteger(0);
+        final AtomicInteger errors = new AtomicInteger(0);
+
+        finish(runtime, () -> {
+            newPhaser(PhaserMode.SIG_WAIT);
+            for (int t = 0; t < N_TASKS; t++) {
+                asyncPhased(() -> {
+                    for (int p = 0; p < N_PHASES; p++) {
+                        arrived.incrementAndGet();
+                        next();
+                        // Every task arrived in this phase before anyone
+                        // left it.
+                        if (arrived.get() < (p + 1) * N_TASKS) {
+                            errors.incrementAndGet();
+                        }
+                        next();
+                    }
+                });
+            }
+        });
+
+        assertEquals(N_TASKS * N_PHASES, arrived.get());
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testSplitPhase() {
+        final AtomicIntegerArray before = new AtomicIntegerArray(N_PHASES);
+        final AtomicInteger errors = new AtomicInteger(0);
+
+        finish(runtime, () -> {
+            final Phaser ph = newPhaser(PhaserMode.SIG_WAIT);
+            for (int t = 0; t < N_TASKS; t++) {
+                asyncPhased(() -> {
+                    for (int p = 0; p < N_PHASES; p++) {
+                        before.incrementAndGet(p);
+                        ph.signal();
+                        // Work overlapped with the synchronization.
+                        ph.signal();
+                        ph.doWait();
+                        if (before.get(p) != N_TASKS) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        });
+
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testProducerConsumer() {
+        final int[] buffer = new int[N_PHASES];
+        final AtomicInteger errors = new AtomicInteger(0);
+
+        finish(runtime, () -> {
+            final Phaser ph = newPhaser(PhaserMode.SIG_WAIT);
+            asyncPhased(() -> {
+                for (int p = 0; p < N_PHASES; p++) {
+                    buffer[p] = p * p;
+                    ph.next();
+                }
+            }, ph.inMode(PhaserMode.SIG));
+            for (int c = 0; c < 3; c++) {
+                asyncPhased(() -> {
+                    for (int p = 0; p < N_PHASES; p++) {
+                        ph.next();
+                        if (buffer[p] != p * p) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }, ph.inMode(PhaserMode.WAIT));
+            }
+            ph.drop();
+        });
+
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testAccumulator() {
+        final double[] sums = new double[N_PHASES];
+
+        finish(runtime, () -> {
+            final Phaser ph = newPhaser(PhaserMode.SIG_WAIT);
+            final PhaserAccumulator sum =
+                ph.accumulator(PhaserAccumulator.Operator.SUM);
+            final PhaserAccumulator max =
+                ph.accumulator(PhaserAccumulator.Operator.MAX);
+            for (int t = 1; t <= N_TASKS; t++) {
+                final int id = t;
+                asyncPhased(() -> {
+                    for (int p = 0; p < N_PHASES; p++) {
+                        sum.put(id * (p + 1));
+                        max.put(id);
+                        ph.next();
+                        if (id == 1) {
+                            sums[p] = sum.get();
+                        }
+                        assertEquals(N_TASKS, max.get(), 0.0);
+                    }
+                });
+            }
+            ph.drop();
+        });
+
+        for (int p = 0; p < N_PHASES; p++) {
+            assertEquals(N_TASKS * (N_TASKS + 1) / 2 * (p + 1), sums[p], 0.0);
+        }
+    }
+
+    @Test
+    public void testUnevenTaskLifetimes() {
+        final AtomicInteger done = new AtomicInteger(0);
+
+        finish(runtime, () -> {
+            final Phaser ph = newPhaser(PhaserMode.SIG_WAIT);
+            for (int t = 0; t < N_TASKS; t++) {
+                final int phases = t * 3;
+                asyncPhased(() -> {
+                    for (int p = 0; p < phases; p++) {
+                        ph.next();
+                    }
+                    done.incrementAndGet();
+                });
+            }
+            // The creating task does not take part in the phases.
+            ph.drop();
+        });
+
+        assertEquals(N_TASKS, done.get());
+    }
+
+    @Test(timeout = 60_000)
+    public void testSpareWorkersOnSerialScheduler()
+            throws InterruptedException {
+        final PCDPRuntime serial = new PCDPRuntime("serial", 1);
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger started = new AtomicInteger(0);
+
+        try {
+            finish(serial, () -> {
+                final Phaser ph = newPhaser(PhaserMode.SIG_WAIT);
+                for (int t = 0; t < N_TASKS; t++) {
+                    asyncPhased(() -> {
+                        started.incrementAndGet();
+                        threads.add(Thread.currentThread());
+                        for (int p = 0; p < N_PHASES; p++) {
+                            next();
+                        }
+                    });
+                }
+                ph.drop();
+            });
+        } finally {
+            serial.shutdown();
+            assertTrue(serial.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        // Every task ran once, on the single worker or on a spare worker.
+        assertEquals(N_TASKS, started.get());
+        assertTrue(threads.size() <= N_TASKS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testModeViolation() {
+        finish(runtime, () -> {
+            final Phaser ph = newPhaser(PhaserMode.WAIT);
+            asyncPhased(() -> { }, ph.inMode(PhaserMode.SIG_WAIT));
+        });
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnregisteredTask() {
+        final Phaser[] ph = new Phaser[1];
+        finish(runtime, () -> {
+            ph[0] = newPhaser(PhaserMode.SIG_WAIT);
+        });
+        finish(runtime, () -> {
+            ph[0].next();
+        });
+    }
+}
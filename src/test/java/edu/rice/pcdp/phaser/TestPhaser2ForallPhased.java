@@ -0,0 +1,170 @@
+package edu.rice.pcdp.phaser;
+
+import edu.rice.pcdp.runtime.PCDPRuntime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forallPhased;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test forallPhased on an iterative stencil, comparing against a sequential
+ * version.
+ */
+@RunWith(JUnit4.class)
+public class TestPhaser2ForallPhased {
+
+    private static final int N = 1000;
+    private static final int N_CHUNKS = 4;
+    private static final int N_STEPS = 50;
+    private static final int N_WORKERS = 2;
+
+    private PCDPRuntime runtime;
+
+    @Before
+    public void setUp() {
+        runtime = new PCDPRuntime("forkjoin", N_WORKERS);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runtime.shutdown();
+        assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStencil() {
+        final double[][] seq = {initialGrid(), new double[N + 2]};
+        for (int step = 0; step < N_STEPS; step++) {
+            final double[] src = seq[step % 2];
+            final double[] dst = seq[(step + 1) % 2];
+            for (int i = 1; i <= N; i++) {
+                dst[i] = (src[i - 1] + src[i + 1]) / 2.0;
+            }
+        }
+
+        final double[][] par = {initialGrid(), new double[N + 2]};
+        final Thread[][] threads = new Thread[N + 1][N_STEPS];
+        finish(runtime, () -> {
+            forallPhased(1, N, N_STEPS, (step, i) -> {
+                final double[] src = par[step % 2];
+                final double[] dst = par[(step + 1) % 2];
+                dst[i] = (src[i - 1] + src[i + 1]) / 2.0;
+                threads[i][step] = Thread.currentThread();
+            });
+        });
+
+        assertArrayEquals(seq[N_STEPS % 2], par[N_STEPS % 2], 0.0);
+        // One persistent task per worker, which stays on its thread.
+        assertEquals(N_WORKERS, runtime.numAsyncs());
+        for (int i = 1; i <= N; i++) {
+            for (int step = 1; step < N_STEPS; step++) {
+                assertTrue(threads[i][step] == threads[i][0]);
+            }
+        }
+    }
+
+    @Test
+    public void testSingleIteration() {
+        final int[] steps = new int[1];
+        finish(runtime, () -> {
+            forallPhased(7, 7, N_STEPS, (step, i) -> {
+                assertEquals(steps[0], 7 * step);
+                steps[0] += i;
+            });
+        });
+        assertEquals(7 * N_STEPS, steps[0]);
+        assertEquals(1, runtime.numAsyncs());
+    }
+
+    @Test
+    public void testStepsAreSeparated() {
+        final int[] done = new int[N];
+        final AtomicInteger violations = new AtomicInteger();
+        finish(runtime, () -> {
+            forallPhased(0, N - 1, N_STEPS, (step, i) -> {
+                // Every iteration has completed the previous step.
+                for (int j = 0; j < N; j += N / 10) {
+                    final int other;
+                    synchronized (done) {
+                        other = done[j];
+                    }
+                    if (other < step) {
+                        violations.incrementAndGet();
+                    }
+                }
+                synchronized (done) {
+                    done[i] = step + 1;
+                }
+            });
+        });
+        assertEquals(0, violations.get());
+    }
+
+    @Test
+    public void testManyIterationsUseOnlyWorkers() {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final int[] counts = new int[N];
+        finish(runtime, () -> {
+            forallPhased(0, N - 1, N_STEPS, (step, i) -> {
+                threads.add(Thread.currentThread());
+                counts[i]++;
+            });
+        });
+        for (int i = 0; i < N; i++) {
+            assertEquals(N_STEPS, counts[i]);
+        }
+        assertEquals(N_WORKERS, runtime.numAsyncs());
+        // No iteration runs on a thread started by the phaser.
+        assertTrue(threads.size() <= N_WORKERS);
+    }
+
+    @Test
+    public void testSerialScheduler() throws InterruptedException {
+        singleWorker("serial");
+    }
+
+    @Test
+    public void testSingleWorkStealingWorker() throws InterruptedException {
+        singleWorker("workstealing");
+    }
+
+    private void singleWorker(final String scheduler)
+            throws InterruptedException {
+        // A single worker runs all iterations in one task, which never waits
+        // for tasks that have not started.
+        final PCDPRuntime single = new PCDPRuntime(scheduler, 1);
+        try {
+            final int[] counts = new int[N_CHUNKS];
+            finish(single, () -> {
+                forallPhased(0, N_CHUNKS - 1, N_STEPS, (step, i) -> {
+                    counts[i]++;
+                });
+            });
+            for (int chunk = 0; chunk < N_CHUNKS; chunk++) {
+                assertEquals(N_STEPS, counts[chunk]);
+            }
+            assertEquals(1, single.numAsyncs());
+        } finally {
+            single.shutdown();
+            assertTrue(single.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static double[] initialGrid() {
+        final double[] grid = new double[N + 2];
+        grid[N + 1] = 1.0;
+        return grid;
+    }
+}
@@ -0,0 +1,205 @@
+package edu.rice.pcdp.runtime;
+
+import edu.rice.pcdp.PCDP;
+import edu.rice.pcdp.config.RuntimeConfig;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Resize the worker pool while tasks are running.
+ */
+@RunWith(JUnit4.class)
+public class TestElasticResizing {
+
+    /**
+     * Upper bound on tests that run tasks while resizing, so that a
+     * regression fails rather than hangs the build.
+     */
+    private static final long TIMEOUT_MS = 60_000;
+
+    private final List<PCDPRuntime> runtimes = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        for (final PCDPRuntime runtime : runtimes) {
+            runtime.shutdown();
+            assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testForkJoinResizeInFlight() {
+        resizeInFlight("forkjoin", 4, 1, 3, 2);
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testWorkStealingResizeInFlight() {
+        resizeInFlight("workstealing", 4, 1, 3, 2);
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testRetiredWorkersExit() throws InterruptedException {
+        final PCDPRuntime runtime = newRuntime("forkjoin", 4);
+        final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+        finish(runtime, () -> {
+            for (int i = 0; i < 100; i++) {
+                async(() -> {
+                    workers.add(Thread.currentThread());
+                    sleep(1);
+                });
+            }
+        });
+
+        // A single resize, with no later one to clean up after it.
+        runtime.resizeWorkerThreads(2);
+        for (final Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(worker.isAlive());
+        }
+    }
+
+    @Test
+    public void testResizeKeepsScheduler() {
+        final PCDPRuntime runtime = newRuntime("workstealing", 2);
+        final TaskScheduler before = runtime.scheduler();
+
+        runtime.resizeWorkerThreads(3);
+        assertTrue(before == runtime.scheduler());
+        assertEquals(3, before.parallelism());
+        assertEquals(3, runtime.numWorkers());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testResizeToZero() {
+        newRuntime("forkjoin", 2).resizeWorkerThreads(0);
+    }
+
+    @Test
+    public void testPolicyGrowsWhenSaturated() {
+        final ElasticResizer resizer = new ElasticResizer(
+                newRuntime("forkjoin", 2), 1, 8, 100);
+        assertEquals(4, resizer.targetWorkers(2, 2, 10));
+        assertEquals(8, resizer.targetWorkers(8, 8, 10));
+        // Busy but nothing queued: leave the pool alone.
+        assertEquals(2, resizer.targetWorkers(2, 2, 0));
+        // Out of bounds pools are brought back within bounds.
+        assertEquals(8, resizer.targetWorkers(16, 0, 0));
+    }
+
+    @Test
+    public void testPolicyShrinksAfterSustainedIdleness() {
+        final ElasticResizer resizer = new ElasticResizer(
+                newRuntime("forkjoin", 2), 2, 8, 100);
+        for (int i = 1; i < ElasticResizer.SHRINK_AFTER_PERIODS; i++) {
+            assertEquals(8, resizer.targetWorkers(8, 1, 0));
+        }
+        assertEquals(4, resizer.targetWorkers(8, 1, 0));
+
+        // A busy sample resets the count.
+        for (int i = 1; i < ElasticResizer.SHRINK_AFTER_PERIODS; i++) {
+            assertEquals(4, resizer.targetWorkers(4, 0, 0));
+        }
+        assertEquals(4, resizer.targetWorkers(4, 4, 0));
+        assertEquals(4, resizer.targetWorkers(4, 0, 0));
+
+        final ElasticResizer bounded = new ElasticResizer(
+                newRuntime("forkjoin", 2), 2, 8, 100);
+        for (int i = 0; i < ElasticResizer.SHRINK_AFTER_PERIODS; i++) {
+            bounded.targetWorkers(2, 0, 0);
+        }
+        assertEquals(2, bounded.targetWorkers(2, 0, 0));
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testElasticPolicyGrowsUnderLoad() {
+        final PCDPRuntime runtime = newRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin")
+                .numWorkers(1)
+                .elasticPeriodMs(10)
+                .build());
+        runtime.startElasticResizing(1, 4);
+
+        final AtomicInteger maxObserved = new AtomicInteger();
+        finish(runtime, () -> {
+            for (int i = 0; i < 50; i++) {
+                async(() -> {
+                    maxObserved.accumulateAndGet(PCDP.numThreads(),
+                            Math::max);
+                    sleep(20);
+                });
+            }
+        });
+        assertTrue(maxObserved.get() > 1);
+    }
+
+    private PCDPRuntime newRuntime(final String scheduler,
+            final int numWorkers) {
+        return newRuntime(RuntimeConfig.newBuilder()
+                .scheduler(scheduler)
+                .numWorkers(numWorkers)
+                .build());
+    }
+
+    private PCDPRuntime newRuntime(final RuntimeConfig config) {
+        final PCDPRuntime runtime = new PCDPRuntime(config);
+        runtimes.add(runtime);
+        return runtime;
+    }
+
+    private void resizeInFlight(final String scheduler, final int... sizes) {
+        final PCDPRuntime runtime = newRuntime(scheduler, 2);
+
+        final int n = 2000;
+        final AtomicInteger count = new AtomicInteger();
+        final Thread resizer = new Thread(() -> {
+            for (final int size : sizes) {
+                sleep(5);
+                runtime.resizeWorkerThreads(size);
+            }
+        });
+
+        finish(runtime, () -> {
+            resizer.start();
+            for (int i = 0; i < n; i++) {
+                final int id = i;
+                async(() -> {
+                    count.incrementAndGet();
+                    if (id % 20 == 0) {
+                        sleep(1);
+                    }
+                });
+            }
+        });
+        try {
+            resizer.join();
+        } catch (final InterruptedException ie) {
+            throw new IllegalStateException(ie);
+        }
+
+        assertEquals(n, count.get());
+        assertEquals(2, runtime.scheduler().parallelism());
+    }
+
+    private static void sleep(final long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package edu.rice.pcdp.runtime;
+
+import edu.rice.pcdp.PCDP;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forallChunked;
+import static edu.rice.pcdp.PCDP.future;
+import static edu.rice.pcdp.PCDP.isolated;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Run finish scopes on runtime instances other than the default one.
+ */
+@RunWith(JUnit4.class)
+public class TestMultipleRuntimes {
+
+    private PCDPRuntime runtime;
+
+    @Before
+    public void setUp() {
+        runtime = new PCDPRuntime("forkjoin", 3);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runtime.shutdown();
+        assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTasksStayOnTheirRuntime() {
+        final AtomicInteger wrongRuntime = new AtomicInteger();
+        final AtomicInteger count = new AtomicInteger();
+
+        finish(runtime, () -> {
+            for (int i = 0; i < 100; i++) {
+                async(() -> {
+                    finish(() -> {
+                        async(() -> {
+                            if (Runtime.currentRuntime() != runtime) {
+                                wrongRuntime.incrementAndGet();
+                            }
+                            count.incrementAndGet();
+                        });
+                    });
+                });
+            }
+            forallChunked(0, 999, (i) -> {
+                if (Runtime.currentRuntime() != runtime) {
+                    wrongRuntime.incrementAndGet();
+                }
+            });
+        });
+
+        assertEquals(100, count.get());
+        assertEquals(0, wrongRuntime.get());
+        assertEquals(200, runtime.numAsyncs());
+        // The outer finish, one per async and one for the forall.
+        assertEquals(102, runtime.numFinishes());
+        assertTrue(runtime.numLoopTasks() > 0);
+    }
+
+    @Test
+    public void testStatsAreSeparate() {
+        final PCDPRuntime defaultRuntime = Runtime.defaultRuntime();
+        final long defaultAsyncs = defaultRuntime.numAsyncs();
+
+        finish(runtime, () -> {
+            for (int i = 0; i < 10; i++) {
+                async(() -> { });
+            }
+        });
+
+        assertEquals(10, runtime.numAsyncs());
+        assertEquals(defaultAsyncs, defaultRuntime.numAsyncs());
+    }
+
+    @Test
+    public void testNestedFinishOnOtherRuntime() {
+        final int[] result = new int[1];
+        final boolean[] onDefault = new boolean[2];
+
+        finish(() -> {
+            onDefault[0] = Runtime.currentRuntime()
+                == Runtime.defaultRuntime();
+            finish(runtime, () -> {
+                final Future<Integer> f = future(() -> PCDP.numThreads());
+                try {
+                    result[0] = f.get();
+                } catch (final InterruptedException
+                        | ExecutionException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            onDefault[1] = Runtime.currentRuntime()
+                == Runtime.defaultRuntime();
+        });
+
+        assertEquals(3, result[0]);
+        assertTrue(onDefault[0]);
+        assertTrue(onDefault[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExceptionsPropagate() {
+        finish(runtime, () -> {
+            async(() -> {
+                throw new IllegalArgumentException("runtime test");
+            });
+        });
+    }
+
+    @Test
+    public void testIsolationIsPerRuntime() {
+        final IsolatedManager[] managers = new IsolatedManager[1];
+        final int[] counter = new int[1];
+
+        finish(runtime, () -> {
+            managers[0] = Runtime.currentRuntime().isolatedManager();
+            for (int i = 0; i < 1000; i++) {
+                async(() -> {
+                    isolated(() -> {
+                        counter[0]++;
+                    });
+                });
+            }
+        });
+
+        assertEquals(1000, counter[0]);
+        assertTrue(managers[0] == runtime.isolatedManager());
+        assertFalse(managers[0] == Runtime.defaultRuntime()
+                .isolatedManager());
+    }
+
+    @Test
+    public void testResizeDoesNotAffectDefault() {
+        final int defaultWorkers = Runtime.defaultRuntime().numWorkers();
+        runtime.resizeWorkerThreads(5);
+
+        final int[] observed = new int[1];
+        finish(runtime, () -> {
+            observed[0] = PCDP.numThreads();
+        });
+
+        assertEquals(5, observed[0]);
+        assertEquals(defaultWorkers, Runtime.defaultRuntime().numWorkers());
+    }
+}
@@ -0,0 +1,208 @@
+package edu.rice.pcdp.runtime;
+
+import edu.rice.pcdp.config.RuntimeConfig;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.forallChunked;
+import static edu.rice.pcdp.PCDP.future;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Run the same workloads on each of the available schedulers.
+ */
+@RunWith(JUnit4.class)
+public class TestSchedulers {
+
+    private final List<PCDPRuntime> runtimes = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        for (final PCDPRuntime runtime : runtimes) {
+            runtime.shutdown();
+            assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testForkJoinLifo() {
+        runWorkloads(newRuntime("forkjoin", 4));
+    }
+
+    @Test
+    public void testForkJoinFifo() {
+        runWorkloads(newRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin")
+                .numWorkers(4)
+                .asyncMode(true)
+                .build()));
+    }
+
+    @Test
+    public void testForkJoinWorkersCarryTaskContext() {
+        final PCDPRuntime runtime = newRuntime("forkjoin", 2);
+
+        final Thread[] worker = new Thread[1];
+        final int[] depth = new int[1];
+        finish(runtime, () -> {
+            worker[0] = Thread.currentThread();
+            finish(() -> {
+                depth[0] = Runtime.currentTaskDepth();
+            });
+        });
+        assertTrue(worker[0] instanceof PCDPWorkerThread);
+        assertEquals(2, depth[0]);
+    }
+
+    @Test
+    public void testWorkStealing() {
+        runWorkloads(newRuntime("workstealing", 4));
+    }
+
+    @Test
+    public void testWorkStealingSingleWorker() {
+        runWorkloads(newRuntime("workstealing", 1));
+    }
+
+    @Test
+    public void testSerial() {
+        runWorkloads(newRuntime("serial", 1));
+    }
+
+    @Test
+    public void testVirtual() {
+        assumeTrue(VirtualThreadScheduler.isSupported());
+        runWorkloads(newRuntime("virtual", 4));
+    }
+
+    @Test
+    public void testVirtualDeepBlockingFutures() {
+        assumeTrue(VirtualThreadScheduler.isSupported());
+        final PCDPRuntime runtime = newRuntime("virtual", 2);
+
+        final int[] result = new int[1];
+        finish(runtime, () -> {
+            result[0] = fib(18);
+        });
+        assertEquals(2584, result[0]);
+    }
+
+    @Test
+    public void testSerialExecutesInSpawnOrder() {
+        final PCDPRuntime runtime = newRuntime("serial", 1);
+
+        final StringBuilder order = new StringBuilder();
+        finish(runtime, () -> {
+            for (int i = 0; i < 5; i++) {
+                final int id = i;
+                async(() -> order.append(id));
+            }
+        });
+        // Local tasks are executed last-in, first-out.
+        assertEquals("43210", order.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownScheduler() {
+        newRuntime("nonexistent", 2);
+    }
+
+    private PCDPRuntime newRuntime(final String scheduler,
+            final int numWorkers) {
+        return newRuntime(RuntimeConfig.newBuilder()
+                .scheduler(scheduler)
+                .numWorkers(numWorkers)
+                .build());
+    }
+
+    private PCDPRuntime newRuntime(final RuntimeConfig config) {
+        final PCDPRuntime runtime = new PCDPRuntime(config);
+        runtimes.add(runtime);
+        return runtime;
+    }
+
+    private void runWorkloads(final PCDPRuntime runtime) {
+        final AtomicInteger count = new AtomicInteger();
+        finish(runtime, () -> {
+            for (int i = 0; i < 100; i++) {
+                async(() -> {
+                    async(count::incrementAndGet);
+                    async(count::incrementAndGet);
+                });
+            }
+        });
+        assertEquals(200, count.get());
+
+        final int[] fib = new int[1];
+        finish(runtime, () -> {
+            fib[0] = fib(10);
+        });
+        assertEquals(55, fib[0]);
+
+        final int n = 100_000;
+        final AtomicInteger sum = new AtomicInteger();
+        finish(runtime, () -> {
+            forallChunked(0, n - 1, (i) -> {
+                sum.incrementAndGet();
+            });
+        });
+        assertEquals(n, sum.get());
+
+        final AtomicInteger mismatches = new AtomicInteger();
+        finish(runtime, () -> {
+            final BaseTask outer = Runtime.currentTask();
+            for (int i = 0; i < 100; i++) {
+                async(() -> {
+                    final BaseTask task = Runtime.currentTask();
+                    if (!(task instanceof BaseTask.AsyncTask)
+                            || task.ief() != outer
+                            || Runtime.currentTaskDepth() < 1) {
+                        mismatches.incrementAndGet();
+                    }
+                });
+            }
+        });
+        assertEquals(0, mismatches.get());
+        assertNull(Runtime.currentTask());
+        assertEquals(0, Runtime.currentTaskDepth());
+
+        boolean caught = false;
+        try {
+            finish(runtime, () -> {
+                async(() -> {
+                    throw new IllegalArgumentException("scheduler test");
+                });
+            });
+        } catch (final IllegalArgumentException ex) {
+            caught = true;
+        }
+        assertTrue(caught);
+    }
+
+    private static int fib(final int n) {
+        if (n < 2) {
+            return n;
+        }
+        final Future<Integer> f1 = future(() -> fib(n - 1));
+        final Future<Integer> f2 = future(() -> fib(n - 2));
+        try {
+            return f1.get() + f2.get();
+        } catch (final InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package edu.rice.pcdp.runtime;
+
+import edu.rice.pcdp.Actor;
+import edu.rice.pcdp.config.RuntimeConfig;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.pcdp.PCDP.async;
+import static edu.rice.pcdp.PCDP.finish;
+import static edu.rice.pcdp.PCDP.future;
+import static edu.rice.pcdp.PCDP.newPhaser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Execute async and future bodies inline once an inlining cutoff is reached.
+ */
+@RunWith(JUnit4.class)
+public class TestTaskInlining {
+
+    private PCDPRuntime runtime;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (runtime != null) {
+            runtime.shutdown();
+            assertTrue(runtime.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testFibWithTaskDepthCutoff() {
+        runtime = new PCDPRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin")
+                .numWorkers(2)
+                .inlineTaskDepth(2)
+                .build());
+
+        final int[] result = new int[1];
+        finish(runtime, () -> {
+            result[0] = fib(12);
+        });
+
+        assertEquals(144, result[0]);
+        // One future per call of fib with n >= 2, spawned or inlined.
+        assertEquals(232, runtime.numFutures() + runtime.numInlinedTasks());
+    }
+
+    @Test
+    public void testQueueDepthCutoffOnSerialScheduler() {
+        // The serial scheduler never has idle workers, so spawns are inlined
+        // once more than one task is queued locally.
+        runtime = new PCDPRuntime(RuntimeConfig.newBuilder()
+                .scheduler("serial")
+                .numWorkers(1)
+                .inlineQueueDepth(1)
+                .build());
+
+        final AtomicInteger count = new AtomicInteger();
+        finish(runtime, () -> {
+            for (int i = 0; i < 100; i++) {
+                async(() -> {
+                    async(count::incrementAndGet);
+                });
+            }
+        });
+
+        assertEquals(100, count.get());
+        assertTrue(runtime.numAsyncs() >= 2);
+        assertTrue(runtime.numInlinedTasks() >= 98);
+        assertEquals(200, runtime.numAsyncs() + runtime.numInlinedTasks());
+    }
+
+    @Test
+    public void testActorActivationNotInlined() {
+        runtime = new PCDPRuntime(RuntimeConfig.newBuilder()
+                .scheduler("serial")
+                .numWorkers(1)
+                .inlineQueueDepth(1)
+                .build());
+
+        final AtomicInteger processed = new AtomicInteger();
+        final Actor actor = new Actor() {
+            @Override
+            public void process(final Object msg) {
+                processed.incrementAndGet();
+            }
+        };
+        final int[] processedAtSend = new int[1];
+        finish(runtime, () -> {
+            // Queue enough tasks locally to reach the cutoff.
+            for (int i = 0; i < 3; i++) {
+                async(() -> { });
+            }
+            actor.send("msg");
+            processedAtSend[0] = processed.get();
+        });
+
+        assertEquals(0, processedAtSend[0]);
+        assertEquals(1, processed.get());
+    }
+
+    @Test
+    public void testPhasedTaskSpawnsNotInlined() {
+        runtime = new PCDPRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin")
+                .numWorkers(2)
+                .inlineTaskDepth(1)
+                .build());
+
+        final AtomicInteger count = new AtomicInteger();
+        finish(runtime, () -> {
+            newPhaser(PhaserMode.SIG_WAIT);
+            for (int i = 0; i < 10; i++) {
+                async(count::incrementAndGet);
+            }
+        });
+
+        assertEquals(10, count.get());
+        assertEquals(0, runtime.numInlinedTasks());
+    }
+
+    @Test
+    public void testFinishWaitsForInlinedAndSpawnedTasks() {
+        runtime = new PCDPRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin")
+                .numWorkers(2)
+                .inlineTaskDepth(2)
+                .build());
+
+        final AtomicInteger count = new AtomicInteger();
+        finish(runtime, () -> {
+            for (int i = 0; i < 10; i++) {
+                async(() -> {
+                    for (int j = 0; j < 10; j++) {
+                        async(() -> {
+                            sleep(1);
+                            count.incrementAndGet();
+                        });
+                    }
+                });
+            }
+        });
+
+        assertEquals(100, count.get());
+        assertEquals(110, runtime.numAsyncs() + runtime.numInlinedTasks());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInlinedAsyncExceptionReachesFinish() {
+        runtime = new PCDPRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin")
+                .numWorkers(2)
+                .inlineTaskDepth(1)
+                .build());
+
+        final boolean[] afterAsync = new boolean[1];
+        try {
+            finish(runtime, () -> {
+                async(() -> {
+                    throw new IllegalArgumentException("inline test");
+                });
+                afterAsync[0] = true;
+            });
+        } finally {
+            // The exception is reported by finish, not by async.
+            assertTrue(afterAsync[0]);
+        }
+    }
+
+    @Test
+    public void testInlinedFutureException() throws InterruptedException {
+        runtime = new PCDPRuntime(RuntimeConfig.newBuilder()
+                .scheduler("forkjoin")
+                .numWorkers(2)
+                .inlineTaskDepth(1)
+                .build());
+
+        final Throwable[] cause = new Throwable[1];
+        finish(runtime, () -> {
+            final Future<Integer> f = future(() -> {
+                throw new IllegalStateException("inline test");
+            });
+            try {
+                f.get();
+            } catch (final ExecutionException ex) {
+                cause[0] = ex.getCause();
+            } catch (final InterruptedException ie) {
+                throw new RuntimeException(ie);
+            }
+        });
+
+        assertTrue(cause[0] instanceof IllegalStateException);
+        assertEquals(1, runtime.numInlinedTasks());
+    }
+
+    private static void sleep(final long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int fib(final int n) {
+        if (n < 2) {
+            return n;
+        }
+        final Future<Integer> left = future(() -> fib(n - 1));
+        final int right = fib(n - 2);
+        try {
+            return left.get() + right;
+        } catch (final InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}